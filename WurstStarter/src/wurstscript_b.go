@@ -51,13 +51,22 @@ func main() {
 	// send finished sign
 	fmt.Fprintf(conn, "<<<<\n")
 	
-    status, err := bufio.NewReader(conn).ReadString('\n')
+    reader := bufio.NewReader(conn)
+    status, err := reader.ReadString('\n')
     if err != nil {
 		 fmt.Println("Could not read from server Server...")
 		 os.Exit(2)
 		 return
 	}
     fmt.Print("Status = '", status, "'")
+    // print errors, warnings and run times sent after the status
+    for {
+    	line, err := reader.ReadString('\n')
+    	fmt.Print(line)
+    	if err != nil {
+    		break
+    	}
+    }
     err = conn.Close()
     if err != nil {
     	fmt.Println("Could not close connection...")
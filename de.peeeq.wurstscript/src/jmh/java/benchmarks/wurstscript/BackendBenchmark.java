@@ -0,0 +1,128 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.intermediatelang.optimizer.*;
+import de.peeeq.wurstscript.jassAst.JassProg;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.translation.imoptimizer.GlobalsInliner;
+import de.peeeq.wurstscript.translation.imoptimizer.ImInliner;
+import de.peeeq.wurstscript.translation.imoptimizer.ImOptimizer;
+import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.UselessFunctionCallsRemover;
+import de.peeeq.wurstscript.translation.imtojass.ImToJassTranslator;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the optimizations on the intermediate language and the translation to Jass.
+ * <p>
+ * The optimizations modify the program, so each invocation works on a freshly translated program.
+ * The program is only lowered to the form expected by the optimizations, so that the passes have work to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BackendBenchmark {
+
+    @Param({BenchmarkProject.SYNTHETIC, BenchmarkProject.STDLIB})
+    public String project;
+
+    private BenchmarkProject benchmarkProject;
+
+    @Setup(Level.Trial)
+    public void loadProject() throws IOException {
+        benchmarkProject = BenchmarkProject.load(project);
+    }
+
+    @State(Scope.Thread)
+    public static class TranslatedProgram {
+        WurstCompilerJassImpl compiler;
+
+        @Setup(Level.Invocation)
+        public void prepare(BackendBenchmark b) {
+            compiler = b.benchmarkProject.newCompiler();
+            BenchmarkProject.translateToLoweredIm(compiler);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pass {
+        @Param({"SimpleRewrites", "ConstantAndCopyPropagation", "UselessFunctionCallsRemover", "GlobalsInliner",
+                "BranchMerger", "TempMerger", "LocalMerger"})
+        public String pass;
+
+        OptimizerPass optimizerPass;
+
+        @Setup(Level.Trial)
+        public void createPass() {
+            optimizerPass = createOptimizerPass(pass);
+        }
+    }
+
+    static OptimizerPass createOptimizerPass(String name) {
+        switch (name) {
+            case "SimpleRewrites":
+                return new SimpleRewrites();
+            case "ConstantAndCopyPropagation":
+                return new ConstantAndCopyPropagation();
+            case "UselessFunctionCallsRemover":
+                return new UselessFunctionCallsRemover();
+            case "GlobalsInliner":
+                return new GlobalsInliner();
+            case "BranchMerger":
+                return new BranchMerger();
+            case "TempMerger":
+                return new TempMerger();
+            case "LocalMerger":
+                return new LocalMerger();
+            default:
+                throw new IllegalArgumentException("Unknown optimizer pass " + name);
+        }
+    }
+
+    @Benchmark
+    public int optimizerPass(TranslatedProgram program, Pass pass) {
+        return pass.optimizerPass.optimize(program.compiler.getImTranslator());
+    }
+
+    @Benchmark
+    public void inliner(TranslatedProgram program) {
+        new ImInliner(program.compiler.getImTranslator()).doInlining();
+    }
+
+    @Benchmark
+    public void localOptimizations(TranslatedProgram program) {
+        new ImOptimizer(new TimeTaker.Default(), program.compiler.getImTranslator()).localOptimizations();
+    }
+
+    @Benchmark
+    public JassProg translateToJass(TranslatedProgram program) {
+        ImTranslator tr = program.compiler.getImTranslator();
+        tr.calculateCallRelationsAndUsedVariables();
+        return new ImToJassTranslator(tr.getImProg(), tr.getCalledFunctions(), tr.getMainFunc(), tr.getConfFunc()).translate();
+    }
+
+    @State(Scope.Thread)
+    public static class JassProgram {
+        JassProg prog;
+
+        @Setup(Level.Trial)
+        public void prepare(BackendBenchmark b) {
+            WurstCompilerJassImpl compiler = b.benchmarkProject.newCompiler();
+            BenchmarkProject.translateToJass(compiler);
+            prog = compiler.getProg();
+        }
+    }
+
+    @Benchmark
+    public String printJass(JassProgram program) {
+        return new JassPrinter(true, program.prog).printProg();
+    }
+}
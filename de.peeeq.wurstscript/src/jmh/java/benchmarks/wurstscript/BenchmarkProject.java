@@ -0,0 +1,120 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import tests.wurstscript.tests.StdLib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The inputs used by the benchmarks and helpers to run the compiler pipeline up to a certain step.
+ */
+public class BenchmarkProject {
+
+    /**
+     * the project names which can be used as a benchmark parameter
+     */
+    public static final String SYNTHETIC = "synthetic";
+    public static final String STDLIB = "stdlib";
+
+    private static final File baseFolder = new File("./temp/benchmarks");
+    private static final int SYNTHETIC_PACKAGES = 200;
+
+    private final File[] inputs;
+
+    private BenchmarkProject(File[] inputs) {
+        this.inputs = inputs;
+    }
+
+    public static BenchmarkProject load(String name) throws IOException {
+        File commonJ = copyResource("common.j");
+        File blizzardJ = copyResource("blizzard.j");
+        File folder;
+        switch (name) {
+            case SYNTHETIC:
+                folder = SyntheticProject.write(new File(baseFolder, "synthetic"), SYNTHETIC_PACKAGES);
+                break;
+            case STDLIB:
+                folder = new File(StdLib.getLib());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark project " + name);
+        }
+        return new BenchmarkProject(new File[]{commonJ, blizzardJ, folder});
+    }
+
+    private static File copyResource(String name) throws IOException {
+        File target = new File(baseFolder, name);
+        Files.createDirectories(baseFolder.toPath());
+        try (InputStream in = BenchmarkProject.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IOException("Could not find resource " + name);
+            }
+            Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    /**
+     * creates a compiler with all inputs loaded
+     *
+     * @param args additional compiler arguments
+     */
+    public WurstCompilerJassImpl newCompiler(String... args) {
+        WurstGui gui = new WurstGuiCliImpl();
+        // the parse cache would skip most of the parsing work
+        RunArgs runArgs = new RunArgs("-noParseCache").with(args);
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
+        compiler.loadFiles(inputs);
+        return compiler;
+    }
+
+    public static WurstModel parse(WurstCompilerJassImpl compiler) {
+        WurstModel model = compiler.parseFiles();
+        assertNoErrors(compiler, "parsing");
+        return model;
+    }
+
+    public static WurstModel parseAndCheck(WurstCompilerJassImpl compiler) {
+        WurstModel model = parse(compiler);
+        compiler.checkProg(model);
+        assertNoErrors(compiler, "type checking");
+        return model;
+    }
+
+    /**
+     * runs the pipeline until the intermediate program is lowered to the form expected by the optimizations
+     * and the translation to Jass, without running the optimizations
+     */
+    public static void translateToLoweredIm(WurstCompilerJassImpl compiler) {
+        WurstModel model = parseAndCheck(compiler);
+        compiler.translateProgToIm(model);
+        compiler.lowerProg();
+        assertNoErrors(compiler, "translation");
+    }
+
+    /**
+     * runs the pipeline until the program is translated to Jass.
+     * The compiler arguments determine which optimizations are done.
+     */
+    public static void translateToJass(WurstCompilerJassImpl compiler) {
+        WurstModel model = parseAndCheck(compiler);
+        compiler.translateProgToIm(model);
+        compiler.transformProgToJass();
+        assertNoErrors(compiler, "translation");
+    }
+
+    private static void assertNoErrors(WurstCompilerJassImpl compiler, String phase) {
+        WurstGui gui = compiler.getErrorHandler().getGui();
+        if (gui.getErrorCount() > 0) {
+            throw new RuntimeException("Errors during " + phase + ":\n" + gui.getErrors());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for type checking and the translation to the intermediate language.
+ * Parsing is measured by {@link ParseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FrontendBenchmark {
+
+    @Param({BenchmarkProject.SYNTHETIC, BenchmarkProject.STDLIB})
+    public String project;
+
+    private BenchmarkProject benchmarkProject;
+
+    @Setup(Level.Trial)
+    public void loadProject() throws IOException {
+        benchmarkProject = BenchmarkProject.load(project);
+    }
+
+    // a freshly parsed model for each invocation, because type checking computes and caches the attributes
+    @State(Scope.Thread)
+    public static class ParsedModel {
+        WurstCompilerJassImpl compiler;
+        WurstModel model;
+
+        @Setup(Level.Invocation)
+        public void prepare(FrontendBenchmark b) {
+            compiler = b.benchmarkProject.newCompiler();
+            model = BenchmarkProject.parse(compiler);
+        }
+    }
+
+    @Benchmark
+    public WurstModel check(ParsedModel parsed) {
+        parsed.compiler.checkProg(parsed.model);
+        return parsed.model;
+    }
+
+    // a freshly checked model for each invocation, so that the translation does not use attributes
+    // computed by the previous invocation
+    @State(Scope.Thread)
+    public static class CheckedModel {
+        WurstCompilerJassImpl compiler;
+        WurstModel model;
+
+        @Setup(Level.Invocation)
+        public void prepare(FrontendBenchmark b) {
+            compiler = b.benchmarkProject.newCompiler();
+            model = BenchmarkProject.parseAndCheck(compiler);
+        }
+    }
+
+    @Benchmark
+    public ImProg translateToIm(CheckedModel checked) {
+        ImTranslator translator = new ImTranslator(checked.model, false, new RunArgs());
+        return translator.translateProg();
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.languageserver.requests.RunTests;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the unit tests of the standard library with the interpreter.
+ * <p>
+ * The engine parameter selects between evaluating the intermediate language directly ("tree")
+ * and compiling each function to closures first ("closures").
+ * Running the compiletime functions modifies the program, so each invocation works on a freshly translated program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({"tree", "closures"})
+    public String engine;
+
+    private BenchmarkProject benchmarkProject;
+
+    @Setup(Level.Trial)
+    public void loadProject() throws IOException {
+        benchmarkProject = BenchmarkProject.load(BenchmarkProject.STDLIB);
+    }
+
+    @State(Scope.Thread)
+    public static class TranslatedProgram {
+        WurstCompilerJassImpl compiler;
+        ImProg imProg;
+
+        @Setup(Level.Invocation)
+        public void prepare(InterpreterBenchmark b) {
+            compiler = "closures".equals(b.engine)
+                ? b.benchmarkProject.newCompiler("-runcompiletimefunctions", "-closureInterpreter")
+                : b.benchmarkProject.newCompiler("-runcompiletimefunctions");
+            WurstModel model = BenchmarkProject.parseAndCheck(compiler);
+            imProg = compiler.translateProgToIm(model);
+        }
+    }
+
+    @Benchmark
+    public RunTests.TestResult runStdlibTests(TranslatedProgram p) {
+        RunTests runTests = new RunTests(Optional.empty(), 0, 0, Optional.empty()) {
+            @Override
+            protected void print(String message) {
+                // only measure the interpreter
+            }
+        };
+        RunTests.TestResult result = runTests.runTests(p.compiler.getImTranslator(), p.imProg, Optional.empty(), Optional.empty());
+        if (result.getPassedTests() < result.getTotalTests()) {
+            throw new RuntimeException("Tests failed: " + result.getPassedTests() + " / " + result.getTotalTests());
+        }
+        return result;
+    }
+}
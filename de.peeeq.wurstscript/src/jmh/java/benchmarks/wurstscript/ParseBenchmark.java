@@ -0,0 +1,46 @@
+package benchmarks.wurstscript;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.ast.WurstModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing with different numbers of parser threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({BenchmarkProject.SYNTHETIC, BenchmarkProject.STDLIB})
+    public String project;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private BenchmarkProject benchmarkProject;
+
+    // a fresh compiler for each invocation, because parsing modifies the compiler state
+    private WurstCompilerJassImpl compiler;
+
+    @Setup(Level.Trial)
+    public void loadProject() throws IOException {
+        benchmarkProject = BenchmarkProject.load(project);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        compiler = benchmarkProject.newCompiler("-parseThreads", String.valueOf(threads));
+    }
+
+    @Benchmark
+    public WurstModel parse() {
+        return BenchmarkProject.parse(compiler);
+    }
+}
@@ -0,0 +1,123 @@
+package benchmarks.wurstscript;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates a large Wurst project for benchmarks.
+ * <p>
+ * The generated code only depends on the number of packages, so all benchmark runs
+ * use exactly the same input. Each package imports some earlier packages and contains
+ * classes, interfaces, closures, tuples, loops and calls into the imported packages.
+ */
+public class SyntheticProject {
+
+    private static final int FUNCTIONS_PER_PACKAGE = 8;
+
+    /**
+     * writes the project to the given folder and returns the folder
+     */
+    public static File write(File folder, int packages) throws IOException {
+        Files.createDirectories(folder.toPath());
+        writeFile(new File(folder, "Wurst.wurst"), "package Wurst\n");
+        for (int i = 0; i < packages; i++) {
+            writeFile(new File(folder, "Gen" + i + ".wurst"), generatePackage(i));
+        }
+        return folder;
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String generatePackage(int i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package Gen").append(i).append("\n");
+        if (i > 0) {
+            sb.append("import Gen").append(i - 1).append("\n");
+        }
+        if (i > 1) {
+            sb.append("import Gen").append(i / 2).append("\n");
+        }
+        sb.append("\n");
+
+        sb.append("public tuple vec").append(i).append("(real x, real y)\n\n");
+
+        sb.append("public function vecAdd").append(i).append("(vec").append(i).append(" a, vec").append(i)
+                .append(" b) returns vec").append(i).append("\n");
+        sb.append("    return vec").append(i).append("(a.x + b.x, a.y + b.y)\n\n");
+
+        sb.append("public interface Shape").append(i).append("\n");
+        sb.append("    function area() returns real\n\n");
+
+        sb.append("public interface IntFun").append(i).append("\n");
+        sb.append("    function apply(int x) returns int\n\n");
+
+        sb.append("public class Rect").append(i).append(" implements Shape").append(i).append("\n");
+        sb.append("    real w\n");
+        sb.append("    real h\n");
+        sb.append("    construct(real w, real h)\n");
+        sb.append("        this.w = w\n");
+        sb.append("        this.h = h\n");
+        sb.append("    function area() returns real\n");
+        sb.append("        return w * h\n\n");
+
+        sb.append("public class Circle").append(i).append(" implements Shape").append(i).append("\n");
+        sb.append("    real r\n");
+        sb.append("    construct(real r)\n");
+        sb.append("        this.r = r\n");
+        sb.append("    function area() returns real\n");
+        sb.append("        return 3.14 * r * r\n\n");
+
+        for (int j = 0; j < FUNCTIONS_PER_PACKAGE; j++) {
+            sb.append("public function sum").append(i).append("_").append(j).append("(int n) returns int\n");
+            sb.append("    var s = 0\n");
+            sb.append("    for k = 0 to n\n");
+            sb.append("        if k mod 3 == 0\n");
+            sb.append("            s += k * ").append(j + 1).append("\n");
+            sb.append("        else if k mod 3 == 1\n");
+            sb.append("            s -= k\n");
+            sb.append("        else\n");
+            sb.append("            s = s + ").append(j).append(" - k div 2\n");
+            if (i > 0) {
+                sb.append("    s += sum").append(i - 1).append("_").append(j).append("(n div 2)\n");
+            }
+            sb.append("    return s\n\n");
+        }
+
+        sb.append("function useShapes").append(i).append("() returns real\n");
+        sb.append("    let rect = new Rect").append(i).append("(2.0, 3.0)\n");
+        sb.append("    let circle = new Circle").append(i).append("(1.5)\n");
+        sb.append("    Shape").append(i).append(" s = rect\n");
+        sb.append("    var total = s.area()\n");
+        sb.append("    s = circle\n");
+        sb.append("    total += s.area()\n");
+        sb.append("    destroy rect\n");
+        sb.append("    destroy circle\n");
+        sb.append("    return total\n\n");
+
+        sb.append("function useClosures").append(i).append("() returns int\n");
+        sb.append("    IntFun").append(i).append(" f = x -> x * 2 + ").append(i).append("\n");
+        sb.append("    let r = f.apply(3)\n");
+        sb.append("    destroy f\n");
+        sb.append("    return r\n\n");
+
+        sb.append("function useTuples").append(i).append("() returns real\n");
+        sb.append("    var v = vec").append(i).append("(1.0, 2.0)\n");
+        sb.append("    for k = 1 to 5\n");
+        sb.append("        v = vecAdd").append(i).append("(v, vec").append(i).append("(k * 1.0, 0.5))\n");
+        sb.append("    return v.x + v.y\n\n");
+
+        sb.append("init\n");
+        sb.append("    var total = 0\n");
+        for (int j = 0; j < FUNCTIONS_PER_PACKAGE; j++) {
+            sb.append("    total += sum").append(i).append("_").append(j).append("(10)\n");
+        }
+        sb.append("    total += useClosures").append(i).append("()\n");
+        sb.append("    if useShapes").append(i).append("() + useTuples").append(i).append("() > total\n");
+        sb.append("        total = 0\n");
+        return sb.toString();
+    }
+}
@@ -1,8 +1,8 @@
 package de.peeeq.wurstio;
 
+import com.google.common.io.Files;
 import de.peeeq.wurstio.languageserver.requests.RunTests;
 import de.peeeq.wurstio.mpq.MpqEditor;
-import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.WurstModel;
@@ -18,8 +18,9 @@ import org.eclipse.jdt.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.function.Supplier;
 
 /**
  *
@@ -31,20 +32,59 @@ public class CompilationProcess {
     private final TimeTaker timeTaker;
 
     public CompilationProcess(WurstGui gui, RunArgs runArgs) {
+        this(gui, runArgs, runArgs.isMeasureTimes() ? new TimeTaker.Recording() : new TimeTaker.Default());
+    }
+
+    public CompilationProcess(WurstGui gui, RunArgs runArgs, TimeTaker timeTaker) {
         this.gui = gui;
         this.runArgs = runArgs;
-        if (runArgs.isMeasureTimes()) {
-            this.timeTaker = new TimeTaker.Recording();
-        } else {
-            this.timeTaker = new TimeTaker.Default();
-        }
+        this.timeTaker = timeTaker;
     }
 
-    @Nullable CharSequence doCompilation(@Nullable MpqEditor mpqEditor) throws IOException {
+    @Nullable File doCompilation(@Nullable MpqEditor mpqEditor) throws IOException {
         return doCompilation(mpqEditor, null);
     }
 
-    @Nullable CharSequence doCompilation(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder) throws IOException {
+    @Nullable File doCompilation(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder) throws IOException {
+        return doCompilation(mpqEditor, projectFolder, null);
+    }
+
+    /**
+     * @param model the model to compile, or null to parse the input files given in the arguments
+     * @return the file containing the compiled map script, or null if there were errors
+     */
+    @Nullable File doCompilation(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder, @Nullable WurstModel model) throws IOException {
+        try {
+            return compile(mpqEditor, projectFolder, model);
+        } finally {
+            writeProfileTrace();
+        }
+    }
+
+    /**
+     * writes the recorded phases to the trace file, if requested.
+     * Errors are only logged, so that they do not hide an exception thrown by the compilation.
+     */
+    private void writeProfileTrace() {
+        String profileTrace = runArgs.getProfileTrace();
+        if (profileTrace == null || !(timeTaker instanceof TimeTaker.Recording)) {
+            return;
+        }
+        File traceFile = new File(profileTrace);
+        try {
+            if (traceFile.getAbsoluteFile().getParentFile() != null) {
+                traceFile.getAbsoluteFile().getParentFile().mkdirs();
+            }
+            try (Writer writer = Files.newWriter(traceFile, StandardCharsets.UTF_8)) {
+                ((TimeTaker.Recording) timeTaker).writeChromeTrace(writer);
+            }
+            WLogger.info("Wrote profile trace to " + traceFile.getAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            WLogger.warning("Could not write profile trace to " + traceFile.getAbsolutePath(), e);
+        }
+    }
+
+    private @Nullable File compile(@Nullable MpqEditor mpqEditor, @Nullable File projectFolder, @Nullable WurstModel parsedModel) throws IOException {
         WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(timeTaker, projectFolder, gui, mpqEditor, runArgs);
         gui.sendProgress("Check input map");
         if (mpqEditor != null && !mpqEditor.canWrite()) {
@@ -52,11 +92,17 @@ public class CompilationProcess {
                     "Please supply a valid .w3x input map that can be opened in the world editor.");
         }
 
-        for (String file : runArgs.getFiles()) {
-            compiler.loadFiles(file);
+        WurstModel model;
+        if (parsedModel != null) {
+            compiler.setMapFile(Optional.ofNullable(runArgs.getMapFile()).map(File::new));
+            model = parsedModel;
+        } else {
+            for (String file : runArgs.getFiles()) {
+                compiler.loadFiles(file);
+            }
+            model = timeTaker.measure("parse files",
+                compiler::parseFiles);
         }
-        WurstModel model = timeTaker.measure("parse files",
-            compiler::parseFiles);
 
         if (gui.getErrorCount() > 0) {
             return null;
@@ -100,12 +146,10 @@ public class CompilationProcess {
         gui.sendProgress("Printing Jass");
 
         JassPrinter printer = new JassPrinter(withSpace, jassProg);
-        CharSequence mapScript = timeTaker.measure("Print Jass",
-            (Supplier<String>) printer::printProg);
 
-        // output to file
+        // print directly to the output file
         File outputMapscript = timeTaker.measure("Print Jass",
-                () -> writeMapscript(mapScript));
+                () -> writeMapscript(printer));
 
         if (!runArgs.isDisablePjass()) {
             boolean pjassError = timeTaker.measure("Run PJass",
@@ -113,7 +157,7 @@ public class CompilationProcess {
             if (pjassError) return null;
         }
         timeTaker.printReport();
-        return mapScript;
+        return outputMapscript;
     }
 
     private boolean runPjass(File outputMapscript) {
@@ -136,7 +180,7 @@ public class CompilationProcess {
         return false;
     }
 
-    private File writeMapscript(CharSequence mapScript) {
+    private File writeMapscript(JassPrinter printer) {
         gui.sendProgress("Writing output file");
         File outputMapscript;
         if (runArgs.getOutFile() != null) {
@@ -145,8 +189,8 @@ public class CompilationProcess {
             outputMapscript = new File("./temp/output.j");
         }
         outputMapscript.getParentFile().mkdirs();
-        try {
-            FileUtils.write(mapScript, outputMapscript);
+        try (Writer writer = Files.newWriter(outputMapscript, StandardCharsets.UTF_8)) {
+            printer.printProg(writer);
             return outputMapscript;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -158,7 +202,7 @@ public class CompilationProcess {
         // tests
         gui.sendProgress("Running tests");
         System.out.println("Running tests");
-        RunTests runTests = new RunTests(Optional.empty(), 0, 0, Optional.empty(), testTimeout) {
+        RunTests runTests = new RunTests(Optional.empty(), 0, 0, Optional.empty(), testTimeout, runArgs.getTestThreads()) {
             @Override
             protected void print(String message) {
                 out.print(message);
@@ -1,14 +1,13 @@
 package de.peeeq.wurstio;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import de.peeeq.wurstio.intermediateLang.interpreter.CompiletimeNatives;
 import de.peeeq.wurstio.intermediateLang.interpreter.ProgramStateIO;
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
-import de.peeeq.wurstio.jassinterpreter.providers.HashtableProvider;
+import de.peeeq.wurstio.jassinterpreter.providers.HashtableStore;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.ast.Element;
@@ -18,6 +17,7 @@ import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.intermediatelang.*;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILStackFrame;
+import de.peeeq.wurstscript.intermediatelang.interpreter.InterpreterProfiler;
 import de.peeeq.wurstscript.intermediatelang.interpreter.LocalState;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
 import de.peeeq.wurstscript.intermediatelang.optimizer.FunctionSplitter;
@@ -34,6 +34,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -85,6 +86,10 @@ public class CompiletimeFunctionRunner {
         this.translator = tr;
         this.imProg = imProg;
         globalState = new ProgramStateIO(mapFile, mpqEditor, gui, imProg, true);
+        globalState.setUseClosureCompiler(tr.getRunArgs().isClosureInterpreter());
+        if (tr.getRunArgs().getProfileInterpreter() != null) {
+            globalState.setProfiler(new InterpreterProfiler());
+        }
         this.interpreter = new ILInterpreter(imProg, gui, mapFile, globalState);
 
         interpreter.addNativeProvider(new CompiletimeNatives(globalState));
@@ -222,6 +227,7 @@ public class CompiletimeFunctionRunner {
         try {
             ProgramState globalState = interpreter.getGlobalState();
             globalState.setLastStatement(cte);
+            globalState.resetSteps(translator.getRunArgs().getStepLimit());
             globalState.resetStackframes();
             globalState.pushStackframe(cte, cte.attrTrace().attrErrorPos());
             LocalState localState = new LocalState();
@@ -315,9 +321,8 @@ public class CompiletimeFunctionRunner {
             ImExpr init;
 
             Object obj = a.getObj();
-            if (obj instanceof ArrayListMultimap) {
-                @SuppressWarnings("unchecked")
-                ArrayListMultimap<HashtableProvider.KeyPair, Object> map = (ArrayListMultimap<HashtableProvider.KeyPair, Object>) obj;
+            if (obj instanceof HashtableStore) {
+                HashtableStore map = (HashtableStore) obj;
                 ImType type = TypesHelper.imHashTable();
                 ImVar res = JassIm.ImVar(trace, type, type + "_compiletime", false);
                 imProg.getGlobals().add(res);
@@ -407,20 +412,18 @@ public class CompiletimeFunctionRunner {
      * Stores a hashtable value in a compiletime expression
      * by generating the respective native calls
      */
-    private ImExpr constantToExprHashtable(Element trace, ImVar htVar, IlConstHandle handle, ArrayListMultimap<HashtableProvider.KeyPair, Object> map) {
+    private ImExpr constantToExprHashtable(Element trace, ImVar htVar, IlConstHandle handle, HashtableStore map) {
         WPos errorPos = trace.attrErrorPos();
         // we have to collect all values after all compiletime functions have run, so use delayedActions
         delayedActions.add(() -> {
-            for (Map.Entry<HashtableProvider.KeyPair, Object> entry : map.entries()) {
-                HashtableProvider.KeyPair key = entry.getKey();
-                Object v = entry.getValue();
+            map.forEach((parentKey, childKey, v) -> {
                 if (v instanceof ILconstInt) {
                     ILconstInt iv = (ILconstInt) v;
                     ImFunction SaveInteger = findNative("SaveInteger", errorPos);
                     addCompiletimeStateInit(JassIm.ImFunctionCall(trace, SaveInteger, JassIm.ImTypeArguments(), JassIm.ImExprs(
                             JassIm.ImVarAccess(htVar),
-                            JassIm.ImIntVal(key.getParentkey()),
-                            JassIm.ImIntVal(key.getChildkey()),
+                            JassIm.ImIntVal(parentKey),
+                            JassIm.ImIntVal(childKey),
                             JassIm.ImIntVal(iv.getVal())
                     ), false, CallType.NORMAL));
                 } else if (v instanceof ILconstReal) {
@@ -428,8 +431,8 @@ public class CompiletimeFunctionRunner {
                     ImFunction SaveReal = findNative("SaveReal", errorPos);
                     addCompiletimeStateInit(JassIm.ImFunctionCall(trace, SaveReal, JassIm.ImTypeArguments(), JassIm.ImExprs(
                             JassIm.ImVarAccess(htVar),
-                            JassIm.ImIntVal(key.getParentkey()),
-                            JassIm.ImIntVal(key.getChildkey()),
+                            JassIm.ImIntVal(parentKey),
+                            JassIm.ImIntVal(childKey),
                             JassIm.ImRealVal("" + iv.getVal())
                     ), false, CallType.NORMAL));
                 } else if (v instanceof ILconstString) {
@@ -437,8 +440,8 @@ public class CompiletimeFunctionRunner {
                     ImFunction SaveStr = findNative("SaveStr", errorPos);
                     addCompiletimeStateInit(JassIm.ImFunctionCall(trace, SaveStr, JassIm.ImTypeArguments(), JassIm.ImExprs(
                             JassIm.ImVarAccess(htVar),
-                            JassIm.ImIntVal(key.getParentkey()),
-                            JassIm.ImIntVal(key.getChildkey()),
+                            JassIm.ImIntVal(parentKey),
+                            JassIm.ImIntVal(childKey),
                             JassIm.ImStringVal(iv.getVal())
                     ), false, CallType.NORMAL));
                 } else if (v instanceof ILconstBool) {
@@ -446,8 +449,8 @@ public class CompiletimeFunctionRunner {
                     ImFunction SaveBoolean = findNative("SaveBoolean", errorPos);
                     addCompiletimeStateInit(JassIm.ImFunctionCall(trace, SaveBoolean, JassIm.ImTypeArguments(), JassIm.ImExprs(
                         JassIm.ImVarAccess(htVar),
-                        JassIm.ImIntVal(key.getParentkey()),
-                        JassIm.ImIntVal(key.getChildkey()),
+                        JassIm.ImIntVal(parentKey),
+                        JassIm.ImIntVal(childKey),
                         JassIm.ImBoolVal(iv.getVal())
                     ), false, CallType.NORMAL));
                 } else if (v instanceof ILconstNull) {
@@ -455,7 +458,7 @@ public class CompiletimeFunctionRunner {
                 } else {
                     throw new CompileError(errorPos, "Unsupported value stored in HashMap: " + v + " // " + v.getClass().getSimpleName());
                 }
-            }
+            });
         });
 
         // we already return the expr and fill out stmts in delayedActions (see above)
@@ -483,6 +486,7 @@ public class CompiletimeFunctionRunner {
                     interpreter.getGlobalState().setLastStatement(f.getBody().get(0));
                 }
                 WLogger.info("running " + functionFlag + " function " + f.getName());
+                interpreter.getGlobalState().resetSteps(translator.getRunArgs().getStepLimit());
                 interpreter.runVoidFunc(f, null);
                 successTests.add(f);
             } catch (TestSuccessException e) {
@@ -520,4 +524,22 @@ public class CompiletimeFunctionRunner {
         interpreter.getGlobalState().setOutStream(printStream);
     }
 
+    /**
+     * Writes the measurements of the interpreter, when profiling was enabled with -profileInterpreter.
+     */
+    public void writeProfile() {
+        String profileFile = translator.getRunArgs().getProfileInterpreter();
+        InterpreterProfiler profiler = globalState.getProfiler();
+        if (profileFile == null || profiler == null) {
+            return;
+        }
+        File file = new File(profileFile);
+        try {
+            profiler.writeFiles(file);
+            WLogger.info("Wrote interpreter profile to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            WLogger.warning("Could not write interpreter profile to " + file.getAbsolutePath(), e);
+        }
+    }
+
 }
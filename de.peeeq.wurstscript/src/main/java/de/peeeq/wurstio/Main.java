@@ -1,6 +1,5 @@
 package de.peeeq.wurstio;
 
-import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import config.WurstProjectConfig;
 import config.WurstProjectConfigData;
@@ -14,8 +13,10 @@ import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.map.importer.ImportFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstio.utils.W3InstallationData;
 import de.peeeq.wurstscript.*;
+import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
@@ -108,68 +109,8 @@ public class Main {
             }
 
             try {
-                WurstProjectConfigData projectConfig = null;
-                Path buildDir = null;
-                Optional<Path> target = Optional.empty();
-                String workspaceroot = runArgs.getWorkspaceroot();
-                if (runArgs.isBuild() && runArgs.getInputmap() != null && workspaceroot != null) {
-                    Path root = Paths.get(workspaceroot);
-                    Path inputMap = root.resolve(runArgs.getInputmap());
-                    projectConfig = WurstProjectConfig.INSTANCE.loadProject(root.resolve(FILE_NAME));
-
-                    if (java.nio.file.Files.exists(inputMap) && projectConfig != null) {
-                        buildDir = root.resolve("_build");
-                        java.nio.file.Files.createDirectories(buildDir);
-                        target = Optional.of(buildDir.resolve(projectConfig.getBuildMapData().getFileName() + ".w3x"));
-                        java.nio.file.Files.copy(inputMap, target.get(), StandardCopyOption.REPLACE_EXISTING);
-                        runArgs.setMapFile(target.get().toAbsolutePath().toString());
-                    }
-                }
-
-                String mapFilePath = runArgs.getMapFile();
-
-                RunArgs compileArgs = runArgs;
-                if (workspaceroot != null) {
-                    WLogger.info("workspaceroot: " + workspaceroot);
-                    List<String> argList = new LinkedList<>(asList(args));
-                    List<String> argsList = getCompileArgs(WFile.create(workspaceroot));
-                    WLogger.info("workspaceroot: " + (argsList == null));
-                    argList.addAll(argsList);
-                    compileArgs = new RunArgs(argList);
-                }
-                CompilationProcess compilationProcess = new CompilationProcess(gui, compileArgs);
-                @Nullable CharSequence compiledScript;
-
-                if (mapFilePath != null && workspaceroot != null) {
-                    try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(Optional.of(new File(mapFilePath)))) {
-                        File projectFolder = Paths.get(workspaceroot).toFile();
-                        compiledScript = compilationProcess.doCompilation(mpqEditor, projectFolder);
-                        if (compiledScript != null) {
-                            gui.sendProgress("Writing to map");
-                            mpqEditor.deleteFile("war3map.j");
-                            byte[] war3map = compiledScript.toString().getBytes(Charsets.UTF_8);
-                            mpqEditor.insertFile("war3map.j", war3map);
-                        }
-                        ImportFile.importFilesFromImportDirectory(projectFolder, mpqEditor);
-                    }
-                } else {
-                    compiledScript = compilationProcess.doCompilation(null);
-                }
-
-                if (compiledScript != null) {
-                    File scriptFile = new File("compiled.j.txt");
-                    Files.write(compiledScript.toString().getBytes(Charsets.UTF_8), scriptFile);
-
-                    if (projectConfig != null && target.isPresent()) {
-                        ProjectConfigBuilder.apply(projectConfig, target.get().toFile(), scriptFile, buildDir.toFile(),
-                            runArgs, new W3InstallationData());
-
-                        WLogger.info("map build success");
-                        System.out.println("Build succeeded. Output file: <" + target.get().toAbsolutePath() + ">");
-                    }
-                }
-
-                gui.sendProgress("Finished!");
+                TimeTaker timeTaker = runArgs.isMeasureTimes() ? new TimeTaker.Recording() : new TimeTaker.Default();
+                compile(args, runArgs, gui, timeTaker, null, new File("compiled.j.txt"));
             } catch (AbortCompilationException e) {
                 gui.showInfoMessage(e.getMessage());
             }
@@ -201,6 +142,79 @@ public class Main {
         }
     }
 
+    /**
+     * Compiles the input files or the project given in the arguments and writes the map script, the map and,
+     * when building a project, the build map.
+     *
+     * @param model      the model to compile, or null to parse the input files
+     * @param scriptFile the file where the compiled map script is written
+     */
+    public static void compile(String[] args, RunArgs runArgs, WurstGui gui, TimeTaker timeTaker,
+                               @Nullable WurstModel model, File scriptFile) throws Exception {
+        WurstProjectConfigData projectConfig = null;
+        Path buildDir = null;
+        Optional<Path> target = Optional.empty();
+        String workspaceroot = runArgs.getWorkspaceroot();
+        if (runArgs.isBuild() && runArgs.getInputmap() != null && workspaceroot != null) {
+            Path root = Paths.get(workspaceroot);
+            Path inputMap = root.resolve(runArgs.getInputmap());
+            projectConfig = WurstProjectConfig.INSTANCE.loadProject(root.resolve(FILE_NAME));
+
+            if (java.nio.file.Files.exists(inputMap) && projectConfig != null) {
+                buildDir = root.resolve("_build");
+                java.nio.file.Files.createDirectories(buildDir);
+                target = Optional.of(buildDir.resolve(projectConfig.getBuildMapData().getFileName() + ".w3x"));
+                java.nio.file.Files.copy(inputMap, target.get(), StandardCopyOption.REPLACE_EXISTING);
+                runArgs.setMapFile(target.get().toAbsolutePath().toString());
+            }
+        }
+
+        String mapFilePath = runArgs.getMapFile();
+
+        RunArgs compileArgs = runArgs;
+        if (workspaceroot != null) {
+            WLogger.info("workspaceroot: " + workspaceroot);
+            List<String> argList = new LinkedList<>(asList(args));
+            List<String> argsList = getCompileArgs(WFile.create(workspaceroot));
+            WLogger.info("workspaceroot: " + (argsList == null));
+            argList.addAll(argsList);
+            compileArgs = new RunArgs(argList);
+        }
+        CompilationProcess compilationProcess = new CompilationProcess(gui, compileArgs, timeTaker);
+        @Nullable File compiledScript;
+
+        if (mapFilePath != null && workspaceroot != null) {
+            try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(Optional.of(new File(mapFilePath)))) {
+                File projectFolder = Paths.get(workspaceroot).toFile();
+                compiledScript = compilationProcess.doCompilation(mpqEditor, projectFolder, model);
+                if (compiledScript != null) {
+                    gui.sendProgress("Writing to map");
+                    mpqEditor.deleteFile("war3map.j");
+                    mpqEditor.insertFile("war3map.j", compiledScript);
+                }
+                ImportFile.importFilesFromImportDirectory(projectFolder, mpqEditor);
+            }
+        } else {
+            compiledScript = compilationProcess.doCompilation(null, null, model);
+        }
+
+        if (compiledScript != null) {
+            if (!FileUtils.sameFile(compiledScript, scriptFile)) {
+                Files.copy(compiledScript, scriptFile);
+            }
+
+            if (projectConfig != null && target.isPresent()) {
+                ProjectConfigBuilder.apply(projectConfig, target.get().toFile(), scriptFile, buildDir.toFile(),
+                    runArgs, new W3InstallationData());
+
+                WLogger.info("map build success");
+                System.out.println("Build succeeded. Output file: <" + target.get().toAbsolutePath() + ">");
+            }
+        }
+
+        gui.sendProgress("Finished!");
+    }
+
     private static void logStartup(String[] args) {
         // VM Arguments
         RuntimeMXBean runtimeMxBean = ManagementFactory.getRuntimeMXBean();
@@ -1,9 +1,14 @@
 package de.peeeq.wurstio;
 
+import com.google.gson.stream.JsonWriter;
+import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.utils.Utils;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
 import java.util.function.Supplier;
 
 /**
@@ -23,6 +28,12 @@ public interface TimeTaker {
 
     void endPhase();
 
+    /**
+     * adds the given number to a counter of the current measurement (for example the number of changes done by an optimization)
+     */
+    default void addCount(String counter, long count) {
+    }
+
     void printReport();
 
 
@@ -47,64 +58,228 @@ public interface TimeTaker {
         }
     }
 
+    /**
+     * Records nested spans with wall-clock time, allocated bytes and counters.
+     * <p>
+     * The report accumulates all spans with the same name and nesting.
+     * The individual spans can be exported in the Chrome trace event format
+     * (viewable in chrome://tracing or https://ui.perfetto.dev) with {@link #writeChromeTrace(Writer)}.
+     * <p>
+     * Allocated bytes are only measured for the thread running the measured code, so allocations
+     * of worker threads (for example when parsing in parallel) are not included.
+     */
     class Recording implements TimeTaker {
-        private int nesting = 0;
-        private String currentPhaseDescription;
-        private long currentPhaseStart;
-        private Map<String, Long> accumulatedTimes = new LinkedHashMap<>();
+        private final long recordingStart = System.nanoTime();
+        private final Deque<Span> openSpans = new ArrayDeque<>();
+        private final List<Span> finishedSpans = new ArrayList<>();
+        private final Map<String, Accumulated> accumulated = new LinkedHashMap<>();
+        private final AllocationCounter allocationCounter = new AllocationCounter();
+        private Span currentPhase;
 
-        public <T> T measure(String name, Supplier<T> f) {
-            name = withNesting(name);
-            nesting++;
-            accumulatedTimes.putIfAbsent(name, 0L);
-            long time = System.currentTimeMillis();
-            T result = f.get();
-            long duration = System.currentTimeMillis() - time;
-            reportDuration(name, duration);
-            nesting--;
-            return result;
-        }
-
-        private String withNesting(String name) {
-            return Utils.repeat(' ', nesting) + name;
+        private static class Span {
+            private final String name;
+            private final int nesting;
+            private final long start;
+            private final long startAllocated;
+            private final Map<String, Long> counts = new LinkedHashMap<>();
+            private long duration;
+            private long allocated;
+
+            Span(String name, int nesting, long start, long startAllocated) {
+                this.name = name;
+                this.nesting = nesting;
+                this.start = start;
+                this.startAllocated = startAllocated;
+            }
         }
 
-        private void reportDuration(String name, long duration) {
-            accumulatedTimes.put(name, accumulatedTimes.getOrDefault(name, 0L) + duration);
+        private static class Accumulated {
+            private long duration;
+            private long allocated;
+            private int invocations;
+            private final Map<String, Long> counts = new LinkedHashMap<>();
         }
 
+        @Override
+        public <T> T measure(String name, Supplier<T> f) {
+            Span span = startSpan(name);
+            try {
+                return f.get();
+            } finally {
+                finishSpansUntil(span);
+            }
+        }
 
         @Override
         public void beginPhase(String description) {
-            if (currentPhaseDescription != null) {
+            if (currentPhase != null) {
                 endPhase();
             }
-            description = withNesting(description);
-            nesting++;
-            accumulatedTimes.putIfAbsent(description, 0L);
-            currentPhaseDescription = description;
-            currentPhaseStart = System.currentTimeMillis();
+            currentPhase = startSpan(description);
         }
 
         @Override
         public void endPhase() {
-            if (currentPhaseDescription == null) {
+            Span phase = currentPhase;
+            if (phase == null) {
                 return;
             }
-            long duration = System.currentTimeMillis() - currentPhaseStart;
-            reportDuration(currentPhaseDescription, duration);
-            nesting--;
-            currentPhaseDescription = null;
+            currentPhase = null;
+            finishSpansUntil(phase);
+        }
+
+        @Override
+        public void addCount(String counter, long count) {
+            Span span = openSpans.peek();
+            if (span != null) {
+                span.counts.merge(counter, count, Long::sum);
+            }
+        }
+
+        private Span startSpan(String name) {
+            // reserve the entry, so that the report is ordered by the first start of a span
+            accumulated.computeIfAbsent(withNesting(name, openSpans.size()), n -> new Accumulated());
+            Span span = new Span(name, openSpans.size(), System.nanoTime(), allocationCounter.allocatedBytes());
+            openSpans.push(span);
+            return span;
+        }
+
+        /**
+         * finishes the given span and all spans started inside of it
+         */
+        private void finishSpansUntil(Span span) {
+            if (!openSpans.contains(span)) {
+                return;
+            }
+            while (true) {
+                Span s = openSpans.pop();
+                finishSpan(s);
+                if (s == span) {
+                    return;
+                }
+            }
+        }
+
+        private void finishSpan(Span span) {
+            span.duration = System.nanoTime() - span.start;
+            span.allocated = allocationCounter.allocatedBytes() - span.startAllocated;
+            finishedSpans.add(span);
+            Accumulated acc = accumulated.computeIfAbsent(withNesting(span.name, span.nesting), n -> new Accumulated());
+            acc.duration += span.duration;
+            acc.allocated += span.allocated;
+            acc.invocations++;
+            span.counts.forEach((k, v) -> acc.counts.merge(k, v, Long::sum));
+            if (span == currentPhase) {
+                currentPhase = null;
+            }
+        }
+
+        private static String withNesting(String name, int nesting) {
+            return Utils.repeat(' ', nesting) + name;
         }
 
         @Override
         public void printReport() {
             System.out.println("#############################");
             System.out.println("Run times:");
-            for (Map.Entry<String, Long> e : accumulatedTimes.entrySet()) {
-                System.out.println(e.getKey() + ": " + e.getValue() + "ms");
+            for (String line : getReport()) {
+                System.out.println(line);
             }
         }
 
+        /**
+         * returns one line with the accumulated run time for each measurement
+         */
+        public List<String> getReport() {
+            List<String> report = new ArrayList<>();
+            for (Map.Entry<String, Accumulated> e : accumulated.entrySet()) {
+                Accumulated acc = e.getValue();
+                StringBuilder line = new StringBuilder();
+                line.append(e.getKey()).append(": ")
+                        .append(String.format(Locale.US, "%.3fms", acc.duration / 1e6));
+                if (allocationCounter.isSupported()) {
+                    line.append(String.format(Locale.US, ", %.1fMB allocated", acc.allocated / 1e6));
+                }
+                if (acc.invocations > 1) {
+                    line.append(", ").append(acc.invocations).append(" times");
+                }
+                acc.counts.forEach((k, v) -> line.append(", ").append(k).append(": ").append(v));
+                report.add(line.toString());
+            }
+            return report;
+        }
+
+        /**
+         * writes all finished spans as complete events in the Chrome trace event format
+         */
+        public void writeChromeTrace(Writer out) throws IOException {
+            JsonWriter json = new JsonWriter(out);
+            json.setIndent(" ");
+            json.beginObject();
+            json.name("displayTimeUnit").value("ms");
+            json.name("traceEvents").beginArray();
+            List<Span> spans = new ArrayList<>(finishedSpans);
+            spans.sort(Comparator.comparingLong((Span s) -> s.start).thenComparingInt(s -> s.nesting));
+            for (Span span : spans) {
+                json.beginObject();
+                json.name("name").value(span.name);
+                json.name("cat").value("compiler");
+                json.name("ph").value("X");
+                // timestamps are given in microseconds
+                json.name("ts").value((span.start - recordingStart) / 1e3);
+                json.name("dur").value(span.duration / 1e3);
+                json.name("pid").value(1);
+                json.name("tid").value(1);
+                json.name("args").beginObject();
+                if (allocationCounter.isSupported()) {
+                    json.name("allocatedBytes").value(span.allocated);
+                }
+                for (Map.Entry<String, Long> c : span.counts.entrySet()) {
+                    json.name(c.getKey()).value(c.getValue());
+                }
+                json.endObject();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        }
+    }
+
+    /**
+     * Measures the bytes allocated by the current thread, if the JVM supports it.
+     */
+    class AllocationCounter {
+        private final com.sun.management.ThreadMXBean bean;
+
+        AllocationCounter() {
+            com.sun.management.ThreadMXBean b = null;
+            try {
+                ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                    b = (com.sun.management.ThreadMXBean) threadMXBean;
+                    if (!b.isThreadAllocatedMemorySupported()) {
+                        b = null;
+                    } else if (!b.isThreadAllocatedMemoryEnabled()) {
+                        b.setThreadAllocatedMemoryEnabled(true);
+                    }
+                }
+            } catch (UnsupportedOperationException | SecurityException | NoClassDefFoundError e) {
+                WLogger.info("Cannot measure allocated memory: " + e);
+                b = null;
+            }
+            this.bean = b;
+        }
+
+        boolean isSupported() {
+            return bean != null;
+        }
+
+        long allocatedBytes() {
+            if (bean == null) {
+                return 0;
+            }
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
     }
 }
@@ -3,13 +3,16 @@ package de.peeeq.wurstio;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.*;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.languageserver.requests.RequestFailedException;
 import de.peeeq.wurstio.map.importer.ImportFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
+import de.peeeq.wurstio.parsecache.ParseCache;
 import de.peeeq.wurstio.utils.FileReading;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.*;
+import de.peeeq.wurstscript.ParallelParser.ParsedUnit;
 import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.ast.Element;
 import de.peeeq.wurstscript.attributes.CompilationUnitInfo;
@@ -38,6 +41,7 @@ import org.jetbrains.annotations.NotNull;
 import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import static de.peeeq.wurstio.CompiletimeFunctionRunner.FunctionFlagToRun.CompiletimeFunctions;
@@ -109,6 +113,7 @@ public class WurstCompilerJassImpl implements WurstCompiler {
             ctr.setInjectObjects(runArgs.isInjectObjects());
             ctr.setOutputStream(new PrintStream(System.err));
             ctr.run();
+            ctr.writeProfile();
         }
 
         if (gui.getErrorCount() > 0) {
@@ -225,30 +230,50 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         // parse all the files:
         List<CompilationUnit> compilationUnits = new NotNullList<>();
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                // ignore dirs
-            } else if (file.getName().endsWith(".w3x") || file.getName().endsWith(".w3m")) {
-                CompilationUnit r = processMap(file);
-                if (r != null) {
-                    compilationUnits.add(r);
+        try (ParallelParser parallelParser = new ParallelParser(runArgs.getParseThreads())) {
+            // start parsing all source files, results are taken in file order below
+            Queue<Future<ParsedUnit>> parseJobs = new ArrayDeque<>();
+            boolean commonJSeen = hasCommonJ;
+            for (File file : files) {
+                if (file.isDirectory() || file.getName().endsWith(".w3x") || file.getName().endsWith(".w3m")) {
+                    continue;
                 }
-            } else {
                 if (file.getName().endsWith("common.j")) {
-                    hasCommonJ = true;
+                    commonJSeen = true;
                 }
-                compilationUnits.add(parseFile(file));
+                parseJobs.add(submitParseFile(parallelParser, file, commonJSeen, null));
+            }
+            List<Future<ParsedUnit>> otherInputJobs = new ArrayList<>();
+            for (Entry<String, Reader> in : otherInputs.entrySet()) {
+                boolean l_hasCommonJ = commonJSeen;
+                otherInputJobs.add(parallelParser.submit((p, g) -> parse(p, in.getKey(), in.getValue(), l_hasCommonJ)));
             }
-        }
-        for (Entry<String, Reader> in : otherInputs.entrySet()) {
-            compilationUnits.add(parse(in.getKey(), in.getValue()));
-        }
 
-        try {
-            addImportedLibs(compilationUnits);
-        } catch (CompileError e) {
-            gui.sendError(e);
-            return null;
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    // ignore dirs
+                } else if (file.getName().endsWith(".w3x") || file.getName().endsWith(".w3m")) {
+                    CompilationUnit r = processMap(file);
+                    if (r != null) {
+                        compilationUnits.add(r);
+                    }
+                } else {
+                    if (file.getName().endsWith("common.j")) {
+                        hasCommonJ = true;
+                    }
+                    compilationUnits.add(takeParsedFile(parallelParser, file, parseJobs.remove()));
+                }
+            }
+            for (Future<ParsedUnit> job : otherInputJobs) {
+                compilationUnits.add(parallelParser.take(job, errorHandler));
+            }
+
+            try {
+                addImportedLibs(compilationUnits, parallelParser);
+            } catch (CompileError e) {
+                gui.sendError(e);
+                return null;
+            }
         }
 
         if (errorHandler.getErrorCount() > 0)
@@ -281,15 +306,62 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
     }
 
-    private void addImportedLibs(List<CompilationUnit> compilationUnits) {
+    private void addImportedLibs(List<CompilationUnit> compilationUnits, ParallelParser parallelParser) {
+        Map<File, Future<ParsedUnit>> prefetched = prefetchImportedLibs(compilationUnits, parallelParser);
         addImportedLibs(compilationUnits, file -> {
-            CompilationUnit lib = parseFile(file);
+            Future<ParsedUnit> job = prefetched.remove(file);
+            if (job == null) {
+                job = submitParseFile(parallelParser, file, hasCommonJ, getParseCache());
+            }
+            CompilationUnit lib = takeParsedFile(parallelParser, file, job);
             lib.getCuInfo().setFile(file.getAbsolutePath());
             compilationUnits.add(lib);
             return lib;
         });
     }
 
+    /**
+     * Starts parsing all lib files which are transitively imported by the given compilation units.
+     * The imports are resolved level by level, so that all files of one level are parsed concurrently.
+     * The results are consumed by {@link #addImportedLibs(List, Function)}, which still decides
+     * which libs are actually added and reports errors in a deterministic order.
+     */
+    private Map<File, Future<ParsedUnit>> prefetchImportedLibs(List<CompilationUnit> compilationUnits, ParallelParser parallelParser) {
+        Map<File, Future<ParsedUnit>> result = new LinkedHashMap<>();
+        @Nullable ParseCache parseCache = getParseCache();
+        Set<String> packages = new HashSet<>();
+        List<WImport> imports = new ArrayList<>();
+        for (CompilationUnit c : compilationUnits) {
+            for (WPackage p : c.getPackages()) {
+                packages.add(p.getName());
+                imports.addAll(p.getImports());
+            }
+        }
+        while (!imports.isEmpty()) {
+            List<Future<ParsedUnit>> level = new ArrayList<>();
+            for (WImport imp : imports) {
+                File file = getLibs().get(imp.getPackagename());
+                if (file != null && !packages.contains(imp.getPackagename()) && !result.containsKey(file)) {
+                    Future<ParsedUnit> job = submitParseFile(parallelParser, file, hasCommonJ, parseCache);
+                    result.put(file, job);
+                    level.add(job);
+                }
+            }
+            imports = new ArrayList<>();
+            for (Future<ParsedUnit> job : level) {
+                CompilationUnit lib = parallelParser.peek(job);
+                if (lib == null) {
+                    continue;
+                }
+                for (WPackage p : lib.getPackages()) {
+                    packages.add(p.getName());
+                    imports.addAll(p.getImports());
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * this method scans for unsatisfied imports and tries to find them in the lib-path
      */
@@ -401,7 +473,19 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         checker.checkProg(model, toCheck);
     }
 
-    public JassProg transformProgToJass() {
+    /**
+     * Lowers the intermediate program to the form used by the local optimizations and the translation to Jass:
+     * without generics, classes, tuples, multi arrays, function references and cyclic functions, and flattened.
+     * Inlining is part of the lowering, if enabled.
+     */
+    public void lowerProg() {
+        lowerProg(new ImOptimizer(timeTaker, getImTranslator()));
+    }
+
+    /**
+     * @return the next stage number for debug output
+     */
+    private int lowerProg(ImOptimizer optimizer) {
         ImTranslator imTranslator2 = getImTranslator();
         ImProg imProg2 = getImProg();
         imTranslator2.assertProperties();
@@ -434,8 +518,6 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
         imTranslator2.assertProperties();
 
-        ImOptimizer optimizer = new ImOptimizer(timeTaker, imTranslator2);
-
         // inliner
         if (runArgs.isInline()) {
             beginPhase(5, "inlining");
@@ -472,6 +554,13 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         getImTranslator().assertProperties(AssertProperty.NOTUPLES, AssertProperty.FLAT);
 
         printDebugImProg("./test-output/im " + stage++ + "_flat.im");
+        return stage;
+    }
+
+    public JassProg transformProgToJass() {
+        ImTranslator imTranslator2 = getImTranslator();
+        ImOptimizer optimizer = new ImOptimizer(timeTaker, imTranslator2);
+        int stage = lowerProg(optimizer);
 
         if (runArgs.isLocalOptimizations()) {
             beginPhase(10, "local optimizations");
@@ -696,24 +785,61 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         parsedFiles.add(file);
 
         gui.sendProgress("Parsing File " + file.getName());
+        return parseFile(parser, gui, file, hasCommonJ, null);
+    }
+
+    private Future<ParsedUnit> submitParseFile(ParallelParser parallelParser, File file, boolean hasCommonJ, @Nullable ParseCache parseCache) {
+        if (file.isDirectory()) {
+            throw new Error("Is a directory: " + file);
+        }
+        return parallelParser.submit((p, g) -> parseFile(p, g, file, hasCommonJ, parseCache));
+    }
+
+    /**
+     * The parse cache is only used for lib files (stdlib and dependencies), which rarely change.
+     */
+    private @Nullable ParseCache getParseCache() {
+        File folder = projectFolder;
+        if (folder == null || runArgs.isNoParseCache()) {
+            return null;
+        }
+        return ParseCache.forProject(folder);
+    }
+
+    private CompilationUnit takeParsedFile(ParallelParser parallelParser, File file, Future<ParsedUnit> job) {
+        parsedFiles.add(file);
+        gui.sendProgress("Parsing File " + file.getName());
+        return parallelParser.take(job, errorHandler);
+    }
+
+    private static CompilationUnit parseFile(WurstParser parser, WurstGui gui, File file, boolean hasCommonJ, @Nullable ParseCache parseCache) {
         String source = file.getAbsolutePath();
         try (Reader reader = FileReading.getFileReader(file)) {
+            if (parseCache != null) {
+                String contents = CharStreams.toString(reader);
+                return parseCache.parse(source, contents, hasCommonJ, parser.getErrorHandler(),
+                        () -> parse(parser, source, new StringReader(contents), hasCommonJ));
+            }
             // scanning
-            return parse(source, reader);
+            return parse(parser, source, reader, hasCommonJ);
 
         } catch (CompileError e) {
             gui.sendError(e);
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (FileNotFoundException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "File not found."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         } catch (IOException e) {
             gui.sendError(new CompileError(new WPos(source, LineOffsets.dummy, 0, 0), "Could not read file."));
-            return emptyCompilationUnit();
+            return parser.emptyCompilationUnit();
         }
     }
 
     public CompilationUnit parse(String fileName, Reader reader) {
+        return parse(parser, fileName, reader, hasCommonJ);
+    }
+
+    private static CompilationUnit parse(WurstParser parser, String fileName, Reader reader, boolean hasCommonJ) {
         if (fileName.endsWith(".j")) {
             return parser.parseJass(reader, fileName, hasCommonJ);
         }
@@ -723,10 +849,6 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         return parser.parse(reader, fileName, hasCommonJ);
     }
 
-    private CompilationUnit emptyCompilationUnit() {
-        return parser.emptyCompilationUnit();
-    }
-
     public @Nullable JassProg getProg() {
         return prog;
     }
@@ -802,8 +924,16 @@ public class WurstCompilerJassImpl implements WurstCompiler {
     }
 
     public LuaCompilationUnit transformProgToLua() {
+        ImProg prog = getImProg();
+        ImAttrType.setTranslatingToLua(prog, true);
+        try {
+            return translateProgToLua();
+        } finally {
+            ImAttrType.setTranslatingToLua(prog, false);
+        }
+    }
 
-        ImAttrType.setWurstClassType(null);
+    private LuaCompilationUnit translateProgToLua() {
         int stage;
         if (runArgs.isNoDebugMessages()) {
             beginPhase(3, "remove debug messages");
@@ -858,8 +988,6 @@ public class WurstCompilerJassImpl implements WurstCompiler {
         }
         beginPhase(13, "translate to lua");
         LuaTranslator luaTranslator = new LuaTranslator(imProg, imTranslator);
-        LuaCompilationUnit luaCode = luaTranslator.translate();
-        ImAttrType.setWurstClassType(TypesHelper.imInt());
-        return luaCode;
+        return luaTranslator.translate();
     }
 }
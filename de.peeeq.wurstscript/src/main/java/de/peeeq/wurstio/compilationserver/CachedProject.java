@@ -0,0 +1,114 @@
+package de.peeeq.wurstio.compilationserver;
+
+import com.google.common.io.Files;
+import de.peeeq.wurstio.Main;
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstio.languageserver.BufferManager;
+import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.ModelManagerImpl;
+import de.peeeq.wurstio.languageserver.ModelSnapshot;
+import de.peeeq.wurstio.languageserver.WFile;
+import de.peeeq.wurstio.languageserver.requests.MapRequest;
+import de.peeeq.wurstio.mpq.MpqEditor;
+import de.peeeq.wurstio.mpq.MpqEditorFactory;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A project which is compiled by the compilation server.
+ * <p>
+ * The parsed compilation units of the project and its dependencies stay in memory between requests.
+ * For each request only the files which changed on disk are parsed again.
+ * <p>
+ * A project must only be compiled by one request at a time.
+ */
+class CachedProject {
+    private final File projectFolder;
+    private final ModelManager modelManager;
+    private boolean built = false;
+
+    CachedProject(File projectFolder) {
+        this.projectFolder = projectFolder;
+        this.modelManager = new ModelManagerImpl(projectFolder, new BufferManager());
+    }
+
+    synchronized void compile(String[] args, RunArgs runArgs, WurstGui gui, TimeTaker timeTaker) throws Exception {
+        timeTaker.measure("Update model", () -> {
+            extractMapScript(runArgs);
+            if (built) {
+                modelManager.syncWithDisk();
+            } else {
+                modelManager.buildProject();
+                built = true;
+            }
+        });
+
+        // type errors are reported when compiling the model, the changed files were not type checked yet
+        List<CompileError> parseErrors = modelManager.getParseErrors();
+        if (!parseErrors.isEmpty()) {
+            for (CompileError compileError : parseErrors) {
+                gui.sendError(compileError);
+            }
+            return;
+        }
+
+        File buildDir = new File(projectFolder, "_build");
+        buildDir.mkdirs();
+        String[] compileArgs = args;
+        RunArgs compileRunArgs = runArgs;
+        if (runArgs.getOutFile() == null) {
+            // do not use the working directory of the server, which is shared by all projects
+            compileArgs = Arrays.copyOf(args, args.length + 2);
+            compileArgs[args.length] = "-out";
+            compileArgs[args.length + 1] = new File(buildDir, "output.j").getAbsolutePath();
+            compileRunArgs = new RunArgs(compileArgs);
+        }
+        try (ModelSnapshot snapshot = modelManager.snapshot()) {
+            MapRequest.purgeUnimportedFiles(snapshot.getModel(), WFile.create(projectFolder));
+            Main.compile(compileArgs, compileRunArgs, gui, timeTaker, snapshot.getModel(), new File(buildDir, "compiled.j.txt"));
+        }
+    }
+
+    /**
+     * Writes the script of the input map to the wurst folder, like the compiler does when parsing the map.
+     */
+    private void extractMapScript(RunArgs runArgs) {
+        if (runArgs.isNoExtractMapScript()) {
+            return;
+        }
+        @Nullable String inputMap = runArgs.getInputmap();
+        File map = inputMap != null ? new File(projectFolder, inputMap)
+            : runArgs.getMapFile() != null ? new File(runArgs.getMapFile()) : null;
+        if (map == null || !map.exists()) {
+            return;
+        }
+        try (MpqEditor mpqEditor = MpqEditorFactory.getEditor(Optional.of(map))) {
+            if (!mpqEditor.hasFile("war3map.j")) {
+                return;
+            }
+            byte[] script = mpqEditor.extractFile("war3map.j");
+            if (new String(script, StandardCharsets.UTF_8).startsWith(JassPrinter.WURST_COMMENT_RAW)) {
+                WLogger.info("map has already been compiled with wurst, using war3map.j from wurst folder");
+                return;
+            }
+            File wurstFolder = new File(projectFolder, "wurst");
+            wurstFolder.mkdirs();
+            File existingScript = new File(wurstFolder, "war3map.j");
+            if (!existingScript.exists() || !Arrays.equals(Files.toByteArray(existingScript), script)) {
+                Files.write(script, existingScript);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not extract war3map.j from " + map, e);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package de.peeeq.wurstio.compilationserver;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import de.peeeq.wurstio.Main;
+import de.peeeq.wurstio.TimeTaker;
+import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.attributes.CompileError;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
 import org.eclipse.jdt.annotation.Nullable;
 
 import javax.swing.*;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
@@ -15,29 +23,52 @@ import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+/**
+ * Compiles projects for clients connecting on a local socket.
+ * <p>
+ * A client sends the command line arguments, one per line, followed by a line "<<<<".
+ * The server answers with a status line ("ok" or "error"), followed by the errors, the warnings
+ * and the run time of each compilation phase.
+ * <p>
+ * Projects (requests with a workspace root) are kept in memory between requests, so that only changed files
+ * have to be parsed again. Projects which were not used for some time are dropped.
+ * Different projects are compiled concurrently, requests for the same project run one at a time.
+ */
 public class WurstServer {
     private static final int portNumber = 27425;
 
     private volatile boolean stopped;
     private Consumer<String> printer = System.out::println;
     private @Nullable ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Cache<File, CachedProject> projects = CacheBuilder.newBuilder()
+            .maximumSize(8)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    // requests without a workspace root write their output relative to the working directory of the server
+    private final Object workingDirLock = new Object();
 
     public void start() {
-        try (ServerSocket serverSocket = new ServerSocket(portNumber, 1, InetAddress.getLoopbackAddress())) {
+        try (ServerSocket serverSocket = new ServerSocket(portNumber, 50, InetAddress.getLoopbackAddress())) {
             this.serverSocket = serverSocket;
             println("Server started.");
             while (!stopped) {
-                handleRequest(serverSocket);
-                // clean up after request
-                System.gc();
+                Socket s = serverSocket.accept();
+                executor.submit(() -> handleRequest(s));
             }
-            println("Server stopped.");
         } catch (IOException e) {
-            println("Server had a problem: " + e.getMessage());
-            WLogger.severe(e);
+            if (!stopped) {
+                println("Server had a problem: " + e.getMessage());
+                WLogger.severe(e);
+            }
         } finally {
+            println("Server stopped.");
+            executor.shutdown();
             System.out.println("end start #################");
         }
     }
@@ -62,8 +93,8 @@ public class WurstServer {
         }
     }
 
-    private void handleRequest(ServerSocket sock) {
-        try (Socket s = sock.accept();
+    private void handleRequest(Socket socket) {
+        try (Socket s = socket;
              PrintWriter out = new PrintWriter(s.getOutputStream(), true);
              BufferedReader in = new BufferedReader(new InputStreamReader(
                      s.getInputStream()))) {
@@ -82,10 +113,18 @@ public class WurstServer {
                 stop();
                 return;
             }
-            wurstMain(args);
+            String[] array = args.toArray(new String[0]);
+            RunArgs runArgs = new RunArgs(array);
+            String workspaceroot = runArgs.getWorkspaceroot();
+            if (workspaceroot == null) {
+                synchronized (workingDirLock) {
+                    Main.main(array);
+                }
+                out.println("ok");
+            } else {
+                compileProject(new File(workspaceroot).getCanonicalFile(), array, runArgs, out);
+            }
             println("Server finished compilation in " + (System.currentTimeMillis() - time) + "ms");
-
-            out.println("ok");
         } catch (SocketTimeoutException e) {
             // expected exception
         } catch (IOException e) {
@@ -94,9 +133,31 @@ public class WurstServer {
         }
     }
 
-    private void wurstMain(final List<String> args) {
-        String[] array = args.toArray(new String[0]);
-        Main.main(array);
+    private void compileProject(File projectFolder, String[] args, RunArgs runArgs, PrintWriter out) {
+        WurstGui gui = new WurstGuiCliImpl();
+        TimeTaker.Recording timeTaker = new TimeTaker.Recording();
+        String failure = null;
+        try {
+            CachedProject project = projects.get(projectFolder, () -> new CachedProject(projectFolder));
+            project.compile(args, runArgs, gui, timeTaker);
+        } catch (Throwable t) {
+            WLogger.severe(t);
+            failure = "Compilation failed: " + t;
+        }
+        out.println(failure == null && gui.getErrorCount() == 0 ? "ok" : "error");
+        if (failure != null) {
+            out.println(failure);
+        }
+        for (CompileError err : gui.getErrorList()) {
+            out.println(err);
+        }
+        for (CompileError err : gui.getWarningList()) {
+            out.println(err);
+        }
+        out.println("Run times:");
+        for (String line : timeTaker.getReport()) {
+            out.println(line);
+        }
     }
 
 
@@ -20,6 +20,14 @@ public class CompiletimeNatives extends ReflectionBasedNativeProvider implements
         this.globalState = globalState;
     }
 
+    @Override
+    public NativesProvider forState(ProgramState state) {
+        if (state instanceof ProgramStateIO) {
+            return new CompiletimeNatives((ProgramStateIO) state);
+        }
+        return this;
+    }
+
 
     private ILconstTuple makeKey(String key) {
         return new ILconstTuple(new ILconstString(key));
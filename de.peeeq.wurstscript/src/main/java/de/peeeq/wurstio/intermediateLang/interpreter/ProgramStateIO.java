@@ -15,7 +15,6 @@ import org.eclipse.jdt.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
@@ -28,7 +27,6 @@ public class ProgramStateIO extends ProgramState {
     private final Map<ObjectFileType, ObjectFile> dataStoreMap = Maps.newLinkedHashMap();
     private int id = 0;
     private final Map<String, ObjectDefinition> objDefinitions = Maps.newLinkedHashMap();
-    private PrintStream outStream = System.err;
     private @Nullable WTS trigStrings = null;
     private final Optional<File> mapFile;
 
@@ -38,6 +36,25 @@ public class ProgramStateIO extends ProgramState {
         this.mpqEditor = mpqEditor;
     }
 
+    /**
+     * Creates a fork, which starts with the object definitions of the given state.
+     * Object definitions created in the fork are not visible in the original state.
+     */
+    private ProgramStateIO(ProgramStateIO original, WurstGui gui) {
+        super(original, gui);
+        this.mapFile = original.mapFile;
+        this.mpqEditor = original.mpqEditor;
+        this.dataStoreMap.putAll(original.dataStoreMap);
+        this.objDefinitions.putAll(original.objDefinitions);
+        this.id = original.id;
+        this.trigStrings = original.trigStrings;
+    }
+
+    @Override
+    protected ProgramState newFork(ProgramState environment) {
+        return new ProgramStateIO(this, environment.getGui());
+    }
+
     @Override
     public void setLastStatement(ImStmt s) {
         lastStatement = s;
@@ -247,16 +264,6 @@ public class ProgramStateIO extends ProgramState {
         return folder;
     }
 
-    @Override
-    public PrintStream getOutStream() {
-        return outStream;
-    }
-
-    @Override
-    public void setOutStream(PrintStream os) {
-        outStream = os;
-    }
-
 
 }
 
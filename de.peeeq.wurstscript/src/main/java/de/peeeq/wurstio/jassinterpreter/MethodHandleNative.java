@@ -0,0 +1,86 @@
+package de.peeeq.wurstio.jassinterpreter;
+
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.intermediatelang.ILconstNull;
+import de.peeeq.wurstscript.intermediatelang.interpreter.LinkedNative;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Calls a native implemented by a Java method through a method handle.
+ * <p>
+ * The method is resolved once when linking, so a call only checks the types of the arguments.
+ * Calls with unexpected arguments are passed to the fallback, which reports the error.
+ */
+class MethodHandleNative implements LinkedNative {
+    private final MethodHandle handle;
+    private final Class<?>[] parameterTypes;
+    private final boolean nullAsJavaNull;
+    private final LinkedNative fallback;
+
+    private MethodHandleNative(MethodHandle handle, Class<?>[] parameterTypes, boolean nullAsJavaNull, LinkedNative fallback) {
+        this.handle = handle;
+        this.parameterTypes = parameterTypes;
+        this.nullAsJavaNull = nullAsJavaNull;
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param receiver       the object on which the method is called
+     * @param nullAsJavaNull pass ILconstNull as Java null to parameters, which do not accept ILconstNull
+     * @param fallback       used for calls with unexpected arguments
+     */
+    static LinkedNative link(Object receiver, Method method, boolean nullAsJavaNull, LinkedNative fallback) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return fallback;
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return fallback;
+        }
+        handle = handle.bindTo(receiver)
+                .asSpreader(Object[].class, method.getParameterCount())
+                .asType(MethodType.methodType(ILconst.class, Object[].class));
+        return new MethodHandleNative(handle, method.getParameterTypes(), nullAsJavaNull, fallback);
+    }
+
+    @Override
+    public ILconst invoke(ILconst[] args) throws NoSuchNativeException {
+        if (args.length != parameterTypes.length) {
+            return fallback.invoke(args);
+        }
+        boolean hasJavaNull = false;
+        for (int i = 0; i < args.length; i++) {
+            if (!parameterTypes[i].isInstance(args[i])) {
+                if (nullAsJavaNull && args[i] instanceof ILconstNull) {
+                    hasJavaNull = true;
+                } else {
+                    return fallback.invoke(args);
+                }
+            }
+        }
+        Object[] callArgs = args;
+        if (hasJavaNull) {
+            callArgs = args.clone();
+            for (int i = 0; i < callArgs.length; i++) {
+                if (!parameterTypes[i].isInstance(callArgs[i])) {
+                    callArgs[i] = null;
+                }
+            }
+        }
+        try {
+            return (ILconst) handle.invokeExact(callArgs);
+        } catch (Error | InterpreterException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new Error(e);
+        }
+    }
+}
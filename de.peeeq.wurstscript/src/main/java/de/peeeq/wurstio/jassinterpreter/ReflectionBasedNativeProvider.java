@@ -2,8 +2,10 @@ package de.peeeq.wurstio.jassinterpreter;
 
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
+import de.peeeq.wurstscript.intermediatelang.interpreter.LinkedNative;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
@@ -61,6 +63,31 @@ public abstract class ReflectionBasedNativeProvider implements NativesProvider {
         throw new NoSuchNativeException(msg);
     }
 
+    @Override
+    public @Nullable LinkedNative link(String funcname, int argCount) {
+        boolean found = false;
+        Method candidate = null;
+        int candidates = 0;
+        for (Method method : this.getClass().getMethods()) {
+            if (method.getName().equals(funcname)) {
+                found = true;
+                if (method.getParameterCount() == argCount) {
+                    candidate = method;
+                    candidates++;
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        LinkedNative dynamic = args -> invoke(funcname, args);
+        if (candidate == null || candidates > 1) {
+            // overloaded natives are selected by the types of the arguments on each call
+            return dynamic;
+        }
+        return MethodHandleNative.link(this, candidate, false, dynamic);
+    }
+
     @Override
     public void setOutStream(PrintStream outStream) {
         this.outStream = outStream;
@@ -5,9 +5,11 @@ import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstNull;
 import de.peeeq.wurstscript.intermediatelang.interpreter.AbstractInterpreter;
+import de.peeeq.wurstscript.intermediatelang.interpreter.LinkedNative;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
 import de.peeeq.wurstscript.intermediatelang.interpreter.NoSuchNativeException;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
@@ -104,6 +106,15 @@ public class ReflectionNativeProvider implements NativesProvider {
         }
     }
 
+    @Override
+    public @Nullable LinkedNative link(String funcname, int argCount) {
+        NativeJassFunction candidate = methodMap.get(funcname);
+        if (candidate == null) {
+            return null;
+        }
+        return MethodHandleNative.link(candidate.getProvider(), candidate.getMethod(), true, args -> invoke(funcname, args));
+    }
+
     @Override
     public void setOutStream(PrintStream outStream) {
 
@@ -19,4 +19,8 @@ public class DestructableMock {
         this.scale = scale;
         this.variation = variation;
     }
+
+    public DestructableMock copy() {
+        return new DestructableMock(objectId, x, y, face, scale, variation);
+    }
 }
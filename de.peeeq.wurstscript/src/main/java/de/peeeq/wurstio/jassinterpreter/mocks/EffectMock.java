@@ -14,4 +14,10 @@ public class EffectMock {
         this.x = x;
         this.y = y;
     }
+
+    public EffectMock copy() {
+        EffectMock res = new EffectMock(modelPath, x, y);
+        res.z = z;
+        return res;
+    }
 }
@@ -93,4 +93,10 @@ public class ImageMock {
         this.posY = y;
         this.posZ = z;
     }
+
+    public ImageMock copy() {
+        ImageMock res = new ImageMock(file, sizeX, sizeY, sizeZ, posX, posY, posZ, originX, originY, originZ, imageType);
+        res.shown = shown;
+        return res;
+    }
 }
@@ -19,4 +19,10 @@ public class ItemMock {
     public void setVisible(ILconstBool visible) {
         this.visible = visible;
     }
+
+    public ItemMock copy() {
+        ItemMock res = new ItemMock(id, x, y);
+        res.visible = visible;
+        return res;
+    }
 }
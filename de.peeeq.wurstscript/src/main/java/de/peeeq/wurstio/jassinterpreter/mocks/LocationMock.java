@@ -14,4 +14,8 @@ public class LocationMock {
     public void move(ILconstReal x, ILconstReal y) {
         // TODO
     }
+
+    public LocationMock copy() {
+        return new LocationMock(x, y);
+    }
 }
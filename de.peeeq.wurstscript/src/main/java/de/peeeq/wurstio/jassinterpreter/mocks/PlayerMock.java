@@ -11,4 +11,10 @@ public class PlayerMock {
     public PlayerMock(ILconstInt p) {
         this.id = p;
     }
+
+    public PlayerMock copy() {
+        PlayerMock res = new PlayerMock(id);
+        res.playerColor = playerColor;
+        return res;
+    }
 }
@@ -22,4 +22,8 @@ public class RectMock {
     public double getHeight() {
         return maxy.getVal() - miny.getVal();
     }
+
+    public RectMock copy() {
+        return new RectMock(minx, miny, maxx, maxy);
+    }
 }
@@ -1,8 +1,19 @@
 package de.peeeq.wurstio.jassinterpreter.mocks;
 
 import java.util.ArrayList;
+import java.util.function.UnaryOperator;
 
 public class RegionMock {
     public ArrayList<RectMock> cells = new ArrayList<>();
 
+    /**
+     * @param copyRect copies the cells, so that rects shared with rect handles stay shared
+     */
+    public RegionMock copy(UnaryOperator<RectMock> copyRect) {
+        RegionMock res = new RegionMock();
+        for (RectMock cell : cells) {
+            res.cells.add(copyRect.apply(cell));
+        }
+        return res;
+    }
 }
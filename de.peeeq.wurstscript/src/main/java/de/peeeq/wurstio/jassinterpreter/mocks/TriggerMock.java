@@ -1,12 +1,14 @@
 package de.peeeq.wurstio.jassinterpreter.mocks;
 
 import com.google.common.collect.Lists;
+import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstBool;
 import de.peeeq.wurstscript.intermediatelang.ILconstFuncRef;
 import de.peeeq.wurstscript.intermediatelang.IlConstHandle;
 import de.peeeq.wurstscript.intermediatelang.interpreter.AbstractInterpreter;
 
 import java.util.ArrayList;
+import java.util.function.UnaryOperator;
 
 public class TriggerMock {
 
@@ -36,4 +38,16 @@ public class TriggerMock {
     public void clearConditions() {
         conditions.clear();
     }
+
+    /**
+     * @param copyHandle copies the handles of the conditions
+     */
+    public TriggerMock copy(UnaryOperator<ILconst> copyHandle) {
+        TriggerMock res = new TriggerMock();
+        for (IlConstHandle condition : conditions) {
+            res.conditions.add((IlConstHandle) copyHandle.apply(condition));
+        }
+        res.actions.addAll(actions);
+        return res;
+    }
 }
@@ -1,9 +1,12 @@
 package de.peeeq.wurstio.jassinterpreter.mocks;
 
+import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstInt;
 import de.peeeq.wurstscript.intermediatelang.ILconstReal;
 import de.peeeq.wurstscript.intermediatelang.IlConstHandle;
 
+import java.util.function.UnaryOperator;
+
 public class UnitMock {
     public IlConstHandle owner;
     public ILconstInt unitid;
@@ -18,4 +21,11 @@ public class UnitMock {
         this.y = y;
         this.face = face;
     }
+
+    /**
+     * @param copyHandle copies the handle of the owner
+     */
+    public UnitMock copy(UnaryOperator<ILconst> copyHandle) {
+        return new UnitMock((IlConstHandle) copyHandle.apply(owner), unitid, x, y, face);
+    }
 }
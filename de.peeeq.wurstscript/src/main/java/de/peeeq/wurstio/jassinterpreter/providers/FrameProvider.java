@@ -24,7 +24,7 @@ public class FrameProvider extends Provider {
     public void BlzFrameSetSize(IlConstHandle frame, ILconstReal width, ILconstReal height) {
     }
 
-    static class FrameHandle {
+    public static class FrameHandle {
     }
 
 
@@ -1,51 +1,17 @@
 package de.peeeq.wurstio.jassinterpreter.providers;
 
-import com.google.common.collect.ArrayListMultimap;
 import de.peeeq.wurstio.jassinterpreter.Implements;
+import de.peeeq.wurstio.jassinterpreter.providers.HashtableStore.Slot;
 import de.peeeq.wurstscript.intermediatelang.*;
 import de.peeeq.wurstscript.intermediatelang.interpreter.AbstractInterpreter;
 
-import java.util.Objects;
-
 public class HashtableProvider extends Provider {
     public HashtableProvider(AbstractInterpreter interpreter) {
         super(interpreter);
     }
 
-    public static class KeyPair {
-        private final int parentkey;
-        private final int childkey;
-
-        KeyPair(int parentkey, int childkey) {
-            this.parentkey = parentkey;
-            this.childkey = childkey;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            KeyPair keyPair = (KeyPair) o;
-            return parentkey == keyPair.parentkey &&
-                    childkey == keyPair.childkey;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(parentkey, childkey);
-        }
-
-        public int getParentkey() {
-            return parentkey;
-        }
-
-        public int getChildkey() {
-            return childkey;
-        }
-    }
-
     public IlConstHandle InitHashtable() {
-        return new IlConstHandle(NameProvider.getRandomName("ht"), ArrayListMultimap.create());
+        return new IlConstHandle(NameProvider.getRandomName("ht"), new HashtableStore());
     }
 
     @Implements(funcNames = {"SaveInteger", "SaveStr", "SaveReal", "SaveBoolean", "SavePlayerHandle", "SaveWidgetHandle", "SaveDestructableHandle",
@@ -58,27 +24,27 @@ public class HashtableProvider extends Provider {
             "SaveHashtableHandle",
     })
     public void Save(IlConstHandle ht, ILconstInt key1, ILconstInt key2, ILconst value) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        KeyPair keyPair = new KeyPair(key1.getVal(), key2.getVal());
-        deleteIfPresent(map, keyPair, value.getClass());
-        map.put(keyPair, value);
+        store(ht).save(key1.getVal(), key2.getVal(), value);
     }
 
     public ILconstInt LoadInteger(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return haveSaved(ht, key1, key2, ILconstInt.class) ? load(ht, key1, key2, ILconstInt.class) : ILconstInt.create(0);
+        ILconstInt v = load(ht, key1, key2, Slot.INTEGER);
+        return v != null ? v : ILconstInt.create(0);
     }
 
     public ILconstReal LoadReal(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return haveSaved(ht, key1, key2, ILconstReal.class) ? load(ht, key1, key2, ILconstReal.class) : new ILconstReal(0);
+        ILconstReal v = load(ht, key1, key2, Slot.REAL);
+        return v != null ? v : new ILconstReal(0);
     }
 
     public ILconstString LoadStr(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return  haveSaved(ht, key1, key2, ILconstString.class) ? load(ht, key1, key2, ILconstString.class) : new ILconstString("");
+        ILconstString v = load(ht, key1, key2, Slot.STRING);
+        return v != null ? v : new ILconstString("");
     }
 
     public ILconstBool LoadBoolean(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return haveSaved(ht, key1, key2, ILconstBool.class) ? load(ht, key1, key2, ILconstBool.class) : ILconstBool.FALSE;
+        ILconstBool v = load(ht, key1, key2, Slot.BOOLEAN);
+        return v != null ? v : ILconstBool.FALSE;
     }
 
     @Implements(funcNames = {"LoadPlayerHandle", "LoadWidgetHandle", "LoadDestructableHandle", "LoadItemHandle", "LoadUnitHandle", "LoadAbilityHandle",
@@ -89,115 +55,71 @@ public class HashtableProvider extends Provider {
             "LoadLightningHandle", "LoadImageHandle", "LoadUbersplatHandle", "LoadRegionHandle", "LoadFogStateHandle", "LoadFogModifierHandle",
             "LoadHashtableHandle"})
     public IlConstHandle LoadHandle(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return load(ht, key1, key2, IlConstHandle.class);
+        return load(ht, key1, key2, Slot.HANDLE);
     }
 
     public void FlushParentHashtable(IlConstHandle ht) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        map.clear();
+        store(ht).clear();
     }
 
     public void FlushChildHashtable(IlConstHandle ht, ILconstInt parentKey) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        map.entries().removeIf(entry -> entry.getKey().parentkey == parentKey.getVal());
+        store(ht).flushChild(parentKey.getVal());
     }
 
     public void RemoveSavedInteger(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        removeSaved(ht, key1, key2, ILconstInt.class);
+        removeSaved(ht, key1, key2, Slot.INTEGER);
     }
 
     public void RemoveSavedReal(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        removeSaved(ht, key1, key2, ILconstReal.class);
+        removeSaved(ht, key1, key2, Slot.REAL);
     }
 
     public void RemoveSavedBoolean(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        removeSaved(ht, key1, key2, ILconstBool.class);
+        removeSaved(ht, key1, key2, Slot.BOOLEAN);
     }
 
     public void RemoveSavedString(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        removeSaved(ht, key1, key2, ILconstString.class);
+        removeSaved(ht, key1, key2, Slot.STRING);
     }
 
     public void RemoveSavedHandle(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        removeSaved(ht, key1, key2, IlConstHandle.class);
+        removeSaved(ht, key1, key2, Slot.HANDLE);
     }
 
     public ILconstBool HaveSavedString(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return ILconstBool.instance(haveSaved(ht, key1, key2, ILconstString.class));
+        return ILconstBool.instance(haveSaved(ht, key1, key2, Slot.STRING));
     }
 
     public ILconstBool HaveSavedInteger(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return ILconstBool.instance(haveSaved(ht, key1, key2, ILconstInt.class));
+        return ILconstBool.instance(haveSaved(ht, key1, key2, Slot.INTEGER));
     }
 
     public ILconstBool HaveSavedReal(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return ILconstBool.instance(haveSaved(ht, key1, key2, ILconstReal.class));
+        return ILconstBool.instance(haveSaved(ht, key1, key2, Slot.REAL));
     }
 
     public ILconstBool HaveSavedBoolean(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return ILconstBool.instance(haveSaved(ht, key1, key2, ILconstBool.class));
+        return ILconstBool.instance(haveSaved(ht, key1, key2, Slot.BOOLEAN));
     }
 
     public ILconstBool HaveSavedHandle(IlConstHandle ht, ILconstInt key1, ILconstInt key2) {
-        return ILconstBool.instance(haveSaved(ht, key1, key2, IlConstHandle.class));
-    }
-
-    private <T> T load(IlConstHandle ht, ILconstInt key1, ILconstInt key2, Class<T> clazz) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        KeyPair keyPair = new KeyPair(key1.getVal(), key2.getVal());
-        if (hasValueOfType(map, keyPair, clazz)) {
-            return getValueOfType(map, keyPair, clazz);
-        }
-        return null;
-    }
-
-    private <T> void removeSaved(IlConstHandle ht, ILconstInt key1, ILconstInt key2, T type) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        KeyPair keyPair = new KeyPair(key1.getVal(), key2.getVal());
-        deleteIfPresent(map, keyPair, type);
-    }
-
-    private <T> boolean haveSaved(IlConstHandle ht, ILconstInt key1, ILconstInt key2, Class<T> clazz) {
-        @SuppressWarnings("unchecked")
-        ArrayListMultimap<KeyPair, Object> map = (ArrayListMultimap<KeyPair, Object>) ht.getObj();
-        KeyPair keyPair = new KeyPair(key1.getVal(), key2.getVal());
-        return hasValueOfType(map, keyPair, clazz);
-    }
-
-    private static <T> T getValueOfType(ArrayListMultimap<KeyPair, Object> map, KeyPair key, Class<T> clazz) {
-        for (Object o : map.get(key)) {
-            if (o.getClass() == clazz) {
-                return (T) o;
-            }
-        }
-        return null;
-    }
-
-    private static <T> boolean hasValueOfType(ArrayListMultimap<KeyPair, Object> map, KeyPair key, Class<T> type) {
-        for (Object o : map.get(key)) {
-            if (o.getClass() == type) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static <T> void deleteIfPresent(ArrayListMultimap<KeyPair, Object> map, KeyPair key, T type) {
-        Object toRemove = null;
-        for (Object o : map.get(key)) {
-            if (o.getClass() == type) {
-                toRemove = o;
-                break;
-            }
-        }
-        if (toRemove != null) {
-            if(!map.remove(key, toRemove)) {
-                throw new Error("object was found but not deleted");
-            }
-        }
+        return ILconstBool.instance(haveSaved(ht, key1, key2, Slot.HANDLE));
+    }
+
+    private static HashtableStore store(IlConstHandle ht) {
+        return (HashtableStore) ht.getObj();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T load(IlConstHandle ht, ILconstInt key1, ILconstInt key2, Slot slot) {
+        return (T) store(ht).load(key1.getVal(), key2.getVal(), slot);
+    }
+
+    private static void removeSaved(IlConstHandle ht, ILconstInt key1, ILconstInt key2, Slot slot) {
+        store(ht).remove(key1.getVal(), key2.getVal(), slot);
+    }
+
+    private static boolean haveSaved(IlConstHandle ht, ILconstInt key1, ILconstInt key2, Slot slot) {
+        return store(ht).contains(key1.getVal(), key2.getVal(), slot);
     }
 }
@@ -0,0 +1,227 @@
+package de.peeeq.wurstio.jassinterpreter.providers;
+
+import de.peeeq.wurstscript.intermediatelang.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * The contents of a hashtable in the interpreter.
+ * <p>
+ * Like in Jass, each pair of keys has a separate slot for integers, reals, booleans, strings and handles.
+ * Values are stored in two levels of hash maps with int keys (parent key, then child key),
+ * so saving, loading and removing a value and flushing a parent key take constant time.
+ */
+public final class HashtableStore {
+
+    public enum Slot {
+        INTEGER, REAL, BOOLEAN, STRING, HANDLE,
+        /** null values and other values, which do not belong to a typed slot */
+        OTHER;
+
+        private static final Slot[] VALUES = values();
+
+        public static Slot of(ILconst value) {
+            if (value instanceof ILconstInt) {
+                return INTEGER;
+            } else if (value instanceof ILconstReal) {
+                return REAL;
+            } else if (value instanceof ILconstBool) {
+                return BOOLEAN;
+            } else if (value instanceof ILconstString) {
+                return STRING;
+            } else if (value instanceof IlConstHandle) {
+                return HANDLE;
+            }
+            return OTHER;
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(int parentKey, int childKey, ILconst value);
+    }
+
+    private final IntMap<IntMap<ILconst[]>> parents = new IntMap<>();
+
+    public void save(int parentKey, int childKey, ILconst value) {
+        IntMap<ILconst[]> children = parents.get(parentKey);
+        if (children == null) {
+            children = new IntMap<>();
+            parents.put(parentKey, children);
+        }
+        ILconst[] slots = children.get(childKey);
+        if (slots == null) {
+            slots = new ILconst[Slot.VALUES.length];
+            children.put(childKey, slots);
+        }
+        slots[Slot.of(value).ordinal()] = value;
+    }
+
+    public @Nullable ILconst load(int parentKey, int childKey, Slot slot) {
+        IntMap<ILconst[]> children = parents.get(parentKey);
+        if (children == null) {
+            return null;
+        }
+        ILconst[] slots = children.get(childKey);
+        return slots == null ? null : slots[slot.ordinal()];
+    }
+
+    public boolean contains(int parentKey, int childKey, Slot slot) {
+        return load(parentKey, childKey, slot) != null;
+    }
+
+    public void remove(int parentKey, int childKey, Slot slot) {
+        IntMap<ILconst[]> children = parents.get(parentKey);
+        if (children == null) {
+            return;
+        }
+        ILconst[] slots = children.get(childKey);
+        if (slots == null) {
+            return;
+        }
+        slots[slot.ordinal()] = null;
+        for (ILconst v : slots) {
+            if (v != null) {
+                return;
+            }
+        }
+        children.remove(childKey);
+        if (children.isEmpty()) {
+            parents.remove(parentKey);
+        }
+    }
+
+    /**
+     * Removes all values stored under the given parent key.
+     */
+    public void flushChild(int parentKey) {
+        parents.remove(parentKey);
+    }
+
+    public void clear() {
+        parents.clear();
+    }
+
+    /**
+     * Calls the consumer for each stored value.
+     */
+    public void forEach(EntryConsumer consumer) {
+        parents.forEach((parentKey, children) ->
+            children.forEach((childKey, slots) -> {
+                for (ILconst v : slots) {
+                    if (v != null) {
+                        consumer.accept(parentKey, childKey, v);
+                    }
+                }
+            }));
+    }
+
+    /**
+     * Returns a new store with the same keys and the given copies of the values.
+     */
+    public HashtableStore copy(UnaryOperator<ILconst> copyValue) {
+        HashtableStore res = new HashtableStore();
+        forEach((parentKey, childKey, v) -> res.save(parentKey, childKey, copyValue.apply(v)));
+        return res;
+    }
+
+    private interface IntMapConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    /**
+     * A hash map from int keys to non-null values using open addressing with linear probing.
+     */
+    private static final class IntMap<V> {
+        private int[] keys = new int[8];
+        private @Nullable Object[] values = new Object[8];
+        private int size;
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int indexOf(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (values[i] == null || keys[i] == key) {
+                    return i;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable V get(int key) {
+            return (V) values[indexOf(key)];
+        }
+
+        void put(int key, V value) {
+            int i = indexOf(key);
+            if (values[i] == null) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize(keys.length * 2);
+                    i = indexOf(key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        void remove(int key) {
+            int i = indexOf(key);
+            if (values[i] == null) {
+                return;
+            }
+            values[i] = null;
+            size--;
+            // move following entries of the probe sequence into the gap
+            int mask = keys.length - 1;
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int ideal = mix(keys[j]) & mask;
+                boolean reachable = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+                if (!reachable) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            keys = new int[8];
+            values = new Object[8];
+            size = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(IntMapConsumer<V> consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                Object v = values[i];
+                if (v != null) {
+                    consumer.accept(keys[i], (V) v);
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[capacity];
+            values = new Object[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int j = indexOf(oldKeys[i]);
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+}
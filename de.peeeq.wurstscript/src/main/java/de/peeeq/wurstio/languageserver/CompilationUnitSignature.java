@@ -0,0 +1,109 @@
+package de.peeeq.wurstio.languageserver;
+
+import com.google.common.collect.ImmutableList;
+import de.peeeq.wurstscript.ast.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The part of a compilation unit which is visible to other compilation units:
+ * a copy of the compilation unit without the bodies of functions, constructors and init blocks,
+ * together with the names used in each removed body.
+ * <p>
+ * Module bodies are kept, because modules are expanded into the classes using them.
+ * The used names are kept, because checks in other packages (like the init order and
+ * the usage of global variables during initialization) depend on the functions and variables used by a body.
+ * <p>
+ * When a change does not modify the signature, compilation units importing the changed
+ * compilation unit do not have to be checked again.
+ */
+class CompilationUnitSignature {
+    private final List<Element> elements;
+    private final List<Set<String>> usedNames;
+
+    private CompilationUnitSignature(List<Element> elements, List<Set<String>> usedNames) {
+        this.elements = elements;
+        this.usedNames = usedNames;
+    }
+
+    static CompilationUnitSignature of(CompilationUnit cu) {
+        ImmutableList.Builder<Element> elements = ImmutableList.builder();
+        List<Set<String>> usedNames = new ArrayList<>();
+        for (int i = 0; i < cu.size(); i++) {
+            Element copy = cu.get(i).copy();
+            removeBodies(copy, usedNames);
+            elements.add(copy);
+        }
+        return new CompilationUnitSignature(elements.build(), usedNames);
+    }
+
+    private static void removeBodies(Element e, List<Set<String>> usedNames) {
+        if (e instanceof ModuleDef) {
+            // module bodies are copied into the classes using the module
+            return;
+        } else if (e instanceof FuncDef) {
+            removeBody(((FuncDef) e).getBody(), usedNames);
+        } else if (e instanceof ExtensionFuncDef) {
+            removeBody(((ExtensionFuncDef) e).getBody(), usedNames);
+        } else if (e instanceof ConstructorDef) {
+            removeBody(((ConstructorDef) e).getBody(), usedNames);
+        } else if (e instanceof OnDestroyDef) {
+            removeBody(((OnDestroyDef) e).getBody(), usedNames);
+        } else if (e instanceof InitBlock) {
+            removeBody(((InitBlock) e).getBody(), usedNames);
+        }
+        if (e instanceof Expr) {
+            // expressions outside of bodies (like initial values of global variables) can determine types
+            return;
+        }
+        for (int i = 0; i < e.size(); i++) {
+            removeBodies(e.get(i), usedNames);
+        }
+    }
+
+    private static void removeBody(WStatements body, List<Set<String>> usedNames) {
+        Set<String> names = new TreeSet<>();
+        collectUsedNames(body, names);
+        usedNames.add(names);
+        body.clear();
+    }
+
+    /**
+     * collects the names of all functions, variables and classes used in the given element
+     */
+    private static void collectUsedNames(Element e, Set<String> names) {
+        if (e instanceof FuncRef) {
+            names.add("call " + ((FuncRef) e).getFuncName());
+        } else if (e instanceof NameRef) {
+            NameRef ref = (NameRef) e;
+            boolean isWrite = ref.getParent() instanceof StmtSet
+                    && ((StmtSet) ref.getParent()).getUpdatedExpr() == ref;
+            names.add((isWrite ? "write " : "read ") + ref.getVarName());
+        } else if (e instanceof ExprNewObject) {
+            names.add("new " + ((ExprNewObject) e).getTypeName());
+        } else if (e instanceof ExprDestroy) {
+            names.add("destroy");
+        } else if (e instanceof ExprBinary) {
+            // binary operators can be overloaded by functions
+            names.add("op " + ((ExprBinary) e).getOp());
+        }
+        for (int i = 0; i < e.size(); i++) {
+            collectUsedNames(e.get(i), names);
+        }
+    }
+
+    boolean matches(CompilationUnitSignature other) {
+        if (elements.size() != other.elements.size()) {
+            return false;
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            if (!elements.get(i).structuralEquals(other.elements.get(i))) {
+                return false;
+            }
+        }
+        return usedNames.equals(other.usedNames);
+    }
+}
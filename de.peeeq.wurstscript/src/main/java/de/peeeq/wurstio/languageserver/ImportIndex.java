@@ -0,0 +1,91 @@
+package de.peeeq.wurstio.languageserver;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WImport;
+import de.peeeq.wurstscript.ast.WPackage;
+
+import java.util.*;
+
+/**
+ * A reverse index of the imports in the model: for each package name it stores the imports referring to it.
+ * <p>
+ * The index is updated whenever a compilation unit is replaced, so the compilation units affected
+ * by a change can be found without scanning the whole model.
+ */
+class ImportIndex {
+
+    /**
+     * an import of a package in a compilation unit
+     */
+    private static class ImportEdge {
+        private final CompilationUnit cu;
+        private final String importingPackage;
+        private final boolean isPublic;
+
+        ImportEdge(CompilationUnit cu, String importingPackage, boolean isPublic) {
+            this.cu = cu;
+            this.importingPackage = importingPackage;
+            this.isPublic = isPublic;
+        }
+    }
+
+    // the imported package names of each file
+    private final SetMultimap<WFile, String> importedPackages = HashMultimap.create();
+    // the imports referring to each package name
+    private final SetMultimap<String, ImportEdge> importsOf = HashMultimap.create();
+    private final Map<WFile, CompilationUnit> compilationUnits = new HashMap<>();
+
+    /**
+     * updates the index after the compilation unit of the given file was added or replaced
+     */
+    void update(WFile file, CompilationUnit cu) {
+        remove(file);
+        compilationUnits.put(file, cu);
+        for (WPackage p : cu.getPackages()) {
+            for (WImport imp : p.getImports()) {
+                String imported = imp.getPackagenameId().getName();
+                importedPackages.put(file, imported);
+                importsOf.put(imported, new ImportEdge(cu, p.getName(), imp.getIsPublic()));
+            }
+        }
+    }
+
+    /**
+     * removes the compilation unit of the given file from the index
+     */
+    void remove(WFile file) {
+        CompilationUnit old = compilationUnits.remove(file);
+        for (String imported : importedPackages.removeAll(file)) {
+            importsOf.get(imported).removeIf(edge -> edge.cu == old);
+        }
+    }
+
+    void clear() {
+        importedPackages.clear();
+        importsOf.clear();
+        compilationUnits.clear();
+    }
+
+    /**
+     * Returns all compilation units which import one of the given packages,
+     * either directly or through a chain of public imports.
+     */
+    Set<CompilationUnit> importingCompilationUnits(Collection<String> packageNames) {
+        Set<CompilationUnit> result = new LinkedHashSet<>();
+        // packages which export one of the given packages
+        Set<String> exporting = new HashSet<>(packageNames);
+        Deque<String> todo = new ArrayDeque<>(exporting);
+        while (!todo.isEmpty()) {
+            String p = todo.pop();
+            for (ImportEdge edge : importsOf.get(p)) {
+                result.add(edge.cu);
+                if (edge.isPublic && exporting.add(edge.importingPackage)) {
+                    todo.push(edge.importingPackage);
+                }
+            }
+        }
+        return result;
+    }
+}
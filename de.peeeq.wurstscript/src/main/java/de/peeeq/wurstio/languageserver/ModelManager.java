@@ -1,7 +1,6 @@
 package de.peeeq.wurstio.languageserver;
 
 import de.peeeq.wurstscript.ast.CompilationUnit;
-import de.peeeq.wurstscript.ast.ModuleInstanciations;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.attributes.CompileError;
 import org.eclipse.jdt.annotation.Nullable;
@@ -29,6 +28,12 @@ public interface ModelManager {
 
     void syncCompilationUnit(WFile changedFilePath);
 
+    /**
+     * reparses all files which changed on disk, or rebuilds the project if the dependencies changed.
+     * The changed files are not type checked, this is left to the compilation of the model.
+     */
+    void syncWithDisk();
+
     void syncCompilationUnitContent(WFile filename, String contents);
 
     CompilationUnit replaceCompilationUnitContent(WFile filename, String buffer, boolean reportErrors);
@@ -44,18 +49,19 @@ public interface ModelManager {
 
     boolean hasErrors();
 
-    static WurstModel copy(WurstModel model) {
-        WurstModel m = model.copy();
-        // clear all module instantiations, since they might include old stuff
-        m.accept(new WurstModel.DefaultVisitor() {
-            @Override
-            public void visit(ModuleInstanciations mis) {
-                super.visit(mis);
-                mis.clear();
-            }
-        });
-        return m;
-    }
+    /**
+     * Returns a snapshot of the current model for compiling it.
+     * The snapshot must be closed before the model is used or changed again.
+     */
+    ModelSnapshot snapshot();
+
+    /**
+     * Checks if the current model can be compiled instead of rebuilding the project:
+     * All compilation units are type checked and were parsed from the current content of their files on disk,
+     * and there are no new files.
+     * Returns false, for example, when a file has unsaved changes in the editor.
+     */
+    boolean isCheckedModelUpToDate();
 
     File getProjectPath();
 }
\ No newline at end of file
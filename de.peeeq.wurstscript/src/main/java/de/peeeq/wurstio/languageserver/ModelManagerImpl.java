@@ -2,9 +2,12 @@ package de.peeeq.wurstio.languageserver;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.*;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.ModelChangedException;
 import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.parsecache.ParseCache;
 import de.peeeq.wurstio.utils.FileUtils;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.WLogger;
@@ -45,12 +48,24 @@ public class ModelManagerImpl implements ModelManager {
     // other errors for each file
     private Map<WFile, List<CompileError>> otherErrors = new LinkedHashMap<>();
 
-    // hashcode for each compilation unit content as string
-    private Map<WFile, Integer> fileHashcodes = new HashMap<>();
+    // hash of the content of each compilation unit
+    private Map<WFile, HashCode> fileHashcodes = new HashMap<>();
+    // hash of wurst.dependencies, when the dependencies were read
+    private @Nullable HashCode dependenciesHash;
+    // files with compilation units which were not type checked since they changed
+    private Set<WFile> uncheckedFiles = new HashSet<>();
 
     // file for each compilation unit
     private WeakHashMap<CompilationUnit, WFile> compilationunitFile = new WeakHashMap<>();
 
+    // importing compilation units for each package
+    private final ImportIndex importIndex = new ImportIndex();
+
+    // signature for each file, to detect changes visible to other files
+    private Map<WFile, CompilationUnitSignature> signatures = new HashMap<>();
+    // files with a changed signature, whose importing files have not been checked since the change
+    private Set<WFile> changedSignatures = new HashSet<>();
+
     public ModelManagerImpl(File projectPath, BufferManager bufferManager) {
         this.projectPath = projectPath;
         this.bufferManager = bufferManager;
@@ -95,14 +110,43 @@ public class ModelManagerImpl implements ModelManager {
         }
 
         syncCompilationUnitContent(resource, "");
+        importIndex.remove(resource);
         return model2.removeIf(cu -> wFile(cu).equals(resource));
     }
 
+    private static boolean isDeleted(WFile f) {
+        try {
+            return !f.getFile().exists();
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * removes the compilation unit like {@link #removeCompilationUnit(WFile)}, but without type checking
+     * the packages which imported it
+     */
+    private void removeCompilationUnitWithoutCheck(WFile resource) {
+        parseErrors.remove(resource);
+        WurstModel model2 = model;
+        if (model2 == null) {
+            return;
+        }
+        replaceCompilationUnit(resource, "", false);
+        importIndex.remove(resource);
+        model2.removeIf(cu -> wFile(cu).equals(resource));
+    }
+
     @Override
     public void clean() {
         fileHashcodes.clear();
+        uncheckedFiles.clear();
+        dependenciesHash = null;
+        signatures.clear();
+        changedSignatures.clear();
         parseErrors.clear();
         model = null;
+        importIndex.clear();
         dependencies.clear();
         WLogger.info("Clean done.");
     }
@@ -162,6 +206,7 @@ public class ModelManagerImpl implements ModelManager {
     private void readDependencies(WurstGui gui) throws IOException {
         dependencies.clear();
         File depFile = new File(projectPath, "wurst.dependencies");
+        dependenciesHash = hashFile(depFile);
         if (!depFile.exists()) {
             WLogger.info("no dependency file found.");
             return;
@@ -234,7 +279,7 @@ public class ModelManagerImpl implements ModelManager {
         if (model2 == null) {
             return Collections.emptyList();
         }
-        List<CompilationUnit> cleared = new ArrayList<>(toCheck);
+        Set<CompilationUnit> cleared = new LinkedHashSet<>(toCheck);
         model2.clearAttributesLocal();
         Set<String> packageNames = Sets.newHashSet();
         for (CompilationUnit cu : toCheck) {
@@ -243,49 +288,12 @@ public class ModelManagerImpl implements ModelManager {
                 packageNames.add(p.getName());
             }
         }
-        for (CompilationUnit cu : model2) {
-            if (imports(cu, packageNames)) {
+        for (CompilationUnit cu : importIndex.importingCompilationUnits(packageNames)) {
+            if (cleared.add(cu)) {
                 cu.clearAttributes();
-                cleared.add(cu);
-            }
-        }
-        return cleared;
-    }
-
-    /**
-     * check whether cu imports something from 'toCheck'
-     */
-    private boolean imports(CompilationUnit cu, Set<String> packageNames) {
-        for (WPackage p : cu.getPackages()) {
-            if (imports(p, packageNames, false, Sets.newHashSet())) {
-                return true;
             }
         }
-
-        return false;
-    }
-
-    /**
-     * check whether p imports something from 'toCheck'
-     */
-    private boolean imports(WPackage p, Set<String> packageNames, boolean onlyPublic, HashSet<WPackage> visited) {
-        if (visited.contains(p)) {
-            return false;
-        }
-        visited.add(p);
-        for (WImport imp : p.getImports()) {
-            if ((!onlyPublic || imp.getIsPublic()) && packageNames.contains(imp.getPackagename())) {
-                return true;
-            } else {
-                WPackage importedPackage = imp.attrImportedPackage();
-                if ((!onlyPublic || imp.getIsPublic())
-                        && importedPackage != null
-                        && imports(importedPackage, packageNames, true, visited)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return new ArrayList<>(cleared);
     }
 
     private void doTypeCheck(WurstGui gui) {
@@ -306,6 +314,8 @@ public class ModelManagerImpl implements ModelManager {
             model2.clearAttributes();
             comp.addImportedLibs(model2, this::addCompilationUnit);
             comp.checkProg(model2);
+            changedSignatures.clear();
+            uncheckedFiles.clear();
         } catch (CompileError e) {
             gui.sendError(e);
         }
@@ -317,7 +327,7 @@ public class ModelManagerImpl implements ModelManager {
         WFile wFile = WFile.create(file);
         try {
             String contents = new String(java.nio.file.Files.readAllBytes(file.toPath()), UTF_8);
-            return replaceCompilationUnit(wFile, contents, true);
+            return replaceCompilationUnit(wFile, contents, true, true);
         } catch (IOException e) {
             WLogger.severe(e);
             return null;
@@ -369,10 +379,13 @@ public class ModelManagerImpl implements ModelManager {
     private void updateModel(CompilationUnit cu, WurstGui gui) {
         WLogger.trace("update model with " + cu.getCuInfo().getFile());
         parseErrors.put(wFile(cu), new ArrayList<>(gui.getErrorsAndWarnings()));
+        updateSignature(wFile(cu), cu);
 
         WurstModel model2 = model;
         if (model2 == null) {
             model = newModel(cu, gui);
+            importIndex.clear();
+            importIndex.update(wFile(cu), cu);
         } else {
             ListIterator<CompilationUnit> it = model2.listIterator();
             boolean updated = false;
@@ -389,10 +402,19 @@ public class ModelManagerImpl implements ModelManager {
             if (!updated) {
                 model2.add(cu);
             }
+            importIndex.update(wFile(cu), cu);
         }
         //doTypeCheckPartial(gui, false, ImmutableList.of(cu.getFile()));
     }
 
+    private void updateSignature(WFile file, CompilationUnit cu) {
+        CompilationUnitSignature signature = CompilationUnitSignature.of(cu);
+        CompilationUnitSignature oldSignature = signatures.put(file, signature);
+        if (oldSignature == null || !oldSignature.matches(signature)) {
+            changedSignatures.add(file);
+        }
+    }
+
     private CompilationUnit compileFromJar(WurstGui gui, String filename) throws IOException {
         InputStream source = this.getClass().getResourceAsStream("/" + filename);
         File sourceFile;
@@ -506,28 +528,70 @@ public class ModelManagerImpl implements ModelManager {
         doTypeCheckPartial(gui, ImmutableList.of(f), oldPackages);
     }
 
+    @Override
+    public void syncWithDisk() {
+        WurstModel model2 = model;
+        if (model2 == null || !Objects.equals(dependenciesHash, hashFile(new File(projectPath, "wurst.dependencies")))) {
+            clean();
+            buildProject();
+            return;
+        }
+        Set<WFile> files = new LinkedHashSet<>(fileHashcodes.keySet());
+        File wurstFolder = new File(projectPath, "wurst");
+        listWurstFiles(wurstFolder.exists() ? wurstFolder : projectPath)
+                .forEach(f -> files.add(WFile.create(f)));
+        List<WFile> changed = new ArrayList<>();
+        for (WFile f : files) {
+            HashCode oldHash = fileHashcodes.get(f);
+            if (isDeleted(f)) {
+                removeCompilationUnitWithoutCheck(f);
+            } else {
+                replaceCompilationUnit(f);
+            }
+            if (!Objects.equals(oldHash, fileHashcodes.get(f))) {
+                changed.add(f);
+            }
+        }
+        WLogger.info("syncWithDisk changed files: " + changed);
+    }
+
     private CompilationUnit replaceCompilationUnit(WFile filename, String contents, boolean reportErrors) {
+        return replaceCompilationUnit(filename, contents, reportErrors, false);
+    }
+
+    /**
+     * @param useParseCache use the parse cache, only for library files which are not edited in the editor
+     */
+    private CompilationUnit replaceCompilationUnit(WFile filename, String contents, boolean reportErrors, boolean useParseCache) {
         if (!isInWurstFolder(filename)) {
             return null;
         }
+        HashCode hash = hash(contents);
         if (fileHashcodes.containsKey(filename)) {
-            int oldHash = fileHashcodes.get(filename);
-            if (oldHash == contents.hashCode()) {
+            HashCode oldHash = fileHashcodes.get(filename);
+            if (oldHash.equals(hash)) {
                 // no change
                 WLogger.trace("CU " + filename + " was unchanged.");
                 return getCompilationUnit(filename);
             } else {
-                WLogger.info("CU changed. oldHash = " + oldHash + " == " + contents.hashCode());
+                WLogger.info("CU changed. oldHash = " + oldHash + " == " + hash);
             }
         }
 
         WLogger.trace("replace CU " + filename);
         WurstGui gui = new WurstGuiLogger();
         WurstCompilerJassImpl c = getCompiler(gui);
-        CompilationUnit cu = c.parse(filename.toString(), new StringReader(contents));
+        CompilationUnit cu;
+        if (useParseCache) {
+            cu = ParseCache.forProject(projectPath).parse(filename.toString(), contents, true, c.getErrorHandler(),
+                    () -> c.parse(filename.toString(), new StringReader(contents)));
+        } else {
+            cu = c.parse(filename.toString(), new StringReader(contents));
+        }
         cu.getCuInfo().setFile(filename.toString());
         updateModel(cu, gui);
-        fileHashcodes.put(filename, contents.hashCode());
+        fileHashcodes.put(filename, hash);
+        uncheckedFiles.add(filename);
         if (reportErrors) {
             if (gui.getErrorCount() > 0) {
                 WLogger.info("found " + gui.getErrorCount() + " errors in file " + filename);
@@ -552,6 +616,77 @@ public class ModelManagerImpl implements ModelManager {
         return model;
     }
 
+    @Override
+    public ModelSnapshot snapshot() {
+        WurstModel model2 = model;
+        return new ModelSnapshot(model2 != null ? model2 : Ast.WurstModel());
+    }
+
+    @Override
+    public boolean isCheckedModelUpToDate() {
+        if (model == null) {
+            return false;
+        }
+        if (!uncheckedFiles.isEmpty()) {
+            WLogger.info("Cannot use checked model, files not checked: " + uncheckedFiles);
+            return false;
+        }
+        if (!Objects.equals(dependenciesHash, hashFile(new File(projectPath, "wurst.dependencies")))) {
+            WLogger.info("Cannot use checked model, wurst.dependencies changed.");
+            return false;
+        }
+        for (Map.Entry<WFile, HashCode> e : fileHashcodes.entrySet()) {
+            HashCode onDisk;
+            try {
+                onDisk = hashFile(e.getKey().getFile());
+            } catch (FileNotFoundException ex) {
+                WLogger.info("Cannot use checked model, no file for " + e.getKey());
+                return false;
+            }
+            // removed files are stored with empty content
+            if (onDisk == null ? !e.getValue().equals(hash("")) : !onDisk.equals(e.getValue())) {
+                WLogger.info("Cannot use checked model, file differs from editor: " + e.getKey());
+                return false;
+            }
+        }
+        File wurstFolder = new File(projectPath, "wurst");
+        Optional<File> newFile = listWurstFiles(wurstFolder.exists() ? wurstFolder : projectPath)
+                .filter(f -> !fileHashcodes.containsKey(WFile.create(f)))
+                .findAny();
+        if (newFile.isPresent()) {
+            WLogger.info("Cannot use checked model, new file: " + newFile.get());
+            return false;
+        }
+        return true;
+    }
+
+    private Stream<File> listWurstFiles(File dir) {
+        return Arrays.stream(getFiles(dir)).flatMap(f -> {
+            if (f.isDirectory()) {
+                return listWurstFiles(f);
+            } else if (f.getName().endsWith(".wurst") || f.getName().endsWith(".jurst") || f.getName().endsWith(".j")) {
+                return Stream.of(f);
+            }
+            return Stream.empty();
+        });
+    }
+
+    private static HashCode hash(String contents) {
+        return Hashing.murmur3_128().hashString(contents, UTF_8);
+    }
+
+    private static @Nullable HashCode hashFile(File f) {
+        if (!f.exists()) {
+            return null;
+        }
+        try {
+            return hash(Files.toString(f, Charsets.UTF_8));
+        } catch (IOException e) {
+            WLogger.info(e);
+            return null;
+        }
+    }
+
     @Override
     public boolean hasErrors() {
         return errorStream().findAny().isPresent();
@@ -594,20 +729,30 @@ public class ModelManagerImpl implements ModelManager {
             return;
         }
 
-        toCheck = new ArrayList<>(addPackageDependencies(toCheck, oldPackages, model2));
+        boolean signatureChanged = toCheckFilenames.stream().anyMatch(changedSignatures::contains)
+                || toCheck.stream().anyMatch(cu -> cu.getCuInfo().getFile().endsWith(".j"));
+        if (signatureChanged) {
+            toCheck = new ArrayList<>(addPackageDependencies(toCheck, oldPackages, model2));
+        } else {
+            WLogger.info("signature of " + toCheckFilenames + " unchanged, not checking importing packages");
+        }
 
         List<CompilationUnit> clearedCUs = Collections.emptyList();
         try {
+            // importing packages are cleared in any case, because their attributes refer to the replaced compilation units
             clearedCUs = clearAttributes(toCheck);
             comp.addImportedLibs(model2, this::addCompilationUnit);
             comp.checkProg(model2, toCheck);
+            changedSignatures.removeAll(toCheckFilenames);
+            uncheckedFiles.removeAll(getfileNames(toCheck));
         } catch (ModelChangedException e) {
             // model changed, early return
             return;
         } catch (CompileError e) {
             gui.sendError(e);
         }
-        List<WFile> fileNames = getfileNames(clearedCUs);
+        // only report errors for checked files, other files keep their previous errors
+        List<WFile> fileNames = getfileNames(signatureChanged ? clearedCUs : toCheck);
         reportErrorsForFiles(fileNames, gui);
     }
 
@@ -629,31 +774,17 @@ public class ModelManagerImpl implements ModelManager {
         Set<String> affectedPackages = Stream.concat(providedPackages, oldPackages.stream())
                 .collect(Collectors.toSet());
 
-        addImportingPackages(affectedPackages, model, result);
+        addImportingPackages(affectedPackages, result);
 
         return result;
     }
 
-    private void addImportingPackages(Collection<String> providedPackages, WurstModel model2, Set<CompilationUnit> result) {
-        nextCu:
-        for (CompilationUnit compilationUnit : model2) {
-            if (result.contains(compilationUnit)) {
-                continue;
-            }
-            for (WPackage p : compilationUnit.getPackages()) {
-                for (WImport imp : p.getImports()) {
-                    String importedPackage = imp.getPackagenameId().getName();
-                    if (providedPackages.contains(importedPackage)) {
-                        result.add(compilationUnit);
-                        if (imp.getIsPublic()) {
-                            // recursive call terminates, because it is only called for packages not yet in result
-                            addImportingPackages(Collections.singletonList(p.getName()), model2, result);
-                        }
-                        continue nextCu;
-                    }
-                }
-            }
-        }
+    /**
+     * adds all compilation units importing one of the provided packages,
+     * directly or through public imports
+     */
+    private void addImportingPackages(Collection<String> providedPackages, Set<CompilationUnit> result) {
+        result.addAll(importIndex.importingCompilationUnits(providedPackages));
     }
 
     @Override
@@ -0,0 +1,70 @@
+package de.peeeq.wurstio.languageserver;
+
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.ModuleInstanciations;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A model for compiling a map, which shares the compilation units with the model of the language server
+ * instead of copying the whole tree.
+ * <p>
+ * Compiling does not change the syntax trees of the compilation units. It only changes the list of compilation
+ * units in the model (unused files are removed), the error handlers, the module instantiations and the cached
+ * attributes. So while the snapshot is open, the compilation units are moved to a new model, and closing the
+ * snapshot moves them back and resets the cached attributes and error handlers.
+ * <p>
+ * While the snapshot is open, the model of the language server is empty, so the snapshot must be closed
+ * before the language server handles the next change or request.
+ */
+public class ModelSnapshot implements AutoCloseable {
+    private final WurstModel source;
+    private final WurstModel model = Ast.WurstModel();
+    private final List<CompilationUnit> compilationUnits;
+    private final Map<CompilationUnit, ErrorHandler> errorHandlers = new LinkedHashMap<>();
+
+    ModelSnapshot(WurstModel source) {
+        this.source = source;
+        this.compilationUnits = new ArrayList<>(source);
+        for (CompilationUnit cu : compilationUnits) {
+            errorHandlers.put(cu, cu.getCuInfo().getCuErrorHandler());
+        }
+        moveCompilationUnits(source, model);
+        model.clearAttributes();
+        // clear all module instantiations, since they might include old stuff
+        model.accept(new WurstModel.DefaultVisitor() {
+            @Override
+            public void visit(ModuleInstanciations mis) {
+                super.visit(mis);
+                mis.clear();
+            }
+        });
+    }
+
+    public WurstModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void close() {
+        moveCompilationUnits(model, source);
+        // the attributes were computed for the snapshot model
+        source.clearAttributes();
+        errorHandlers.forEach((cu, errorHandler) -> cu.getCuInfo().setCuErrorHandler(errorHandler));
+    }
+
+    private void moveCompilationUnits(WurstModel from, WurstModel to) {
+        from.clear();
+        for (CompilationUnit cu : compilationUnits) {
+            // remove from old parent
+            cu.setParent(null);
+            to.add(cu);
+        }
+    }
+}
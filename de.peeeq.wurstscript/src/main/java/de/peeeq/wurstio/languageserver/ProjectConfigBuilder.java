@@ -38,9 +38,10 @@ public class ProjectConfigBuilder {
         }
 
 
+        File file = new File(buildDir, "wc3libs_injected.j");
         try (MpqEditor mpq = MpqEditorFactory.getEditor(Optional.of(targetMap))) {
-            File file = new File(buildDir, "wc3libs_injected.j");
-            byte[] scriptBytes;
+            // the script to insert into the map, only copied when the config values are injected
+            File scriptFile = compiledScript;
             if (!projectConfig.getBuildMapData().getName().isEmpty()) {
                 // Apply w3i config values
                 W3I w3I = prepareW3I(projectConfig, targetMap);
@@ -50,14 +51,14 @@ public class ProjectConfigBuilder {
                 if (runArgs.isLua() || runArgs.isHotStartmap()) {
                     // TODO apply config values in lua script
                     // TODO apply config for hot start before JHCR transformation
-                    scriptBytes = java.nio.file.Files.readAllBytes(compiledScript.toPath());
                 } else {
                     if (w3data.getWc3PatchVersion().isPresent()) {
                         w3I.injectConfigsInJassScript(inputStream, sw, w3data.getWc3PatchVersion().get());
                     } else {
                         w3I.injectConfigsInJassScript(inputStream, sw, GameVersion.VERSION_1_32);
                     }
-                    scriptBytes = sw.toString().getBytes(StandardCharsets.UTF_8);
+                    Files.asCharSink(file, StandardCharsets.UTF_8).write(sw.getBuffer());
+                    scriptFile = file;
                 }
 
                 File w3iFile = new File("w3iFile");
@@ -71,13 +72,10 @@ public class ProjectConfigBuilder {
                 mpq.insertFile("war3map.w3i", java.nio.file.Files.readAllBytes(w3iFile.toPath()));
 
                 w3iFile.delete();
-            } else {
-                scriptBytes = java.nio.file.Files.readAllBytes(compiledScript.toPath());
             }
 
-            Files.write(scriptBytes, file);
             if (!runArgs.isDisablePjass()) {
-                Pjass.runPjass(file, new File(buildDir, "common.j").getAbsolutePath(),
+                Pjass.runPjass(scriptFile, new File(buildDir, "common.j").getAbsolutePath(),
                     new File(buildDir, "blizzard.j").getAbsolutePath());
             }
             String mapScriptName;
@@ -88,11 +86,12 @@ public class ProjectConfigBuilder {
             }
             mpq.deleteFile("war3map.lua");
             mpq.deleteFile("war3map.j");
-            mpq.insertFile(mapScriptName, scriptBytes);
-
-            file.delete();
+            // the file is read when the map is written, so it is deleted after closing the map
+            mpq.insertFile(mapScriptName, scriptFile);
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            file.delete();
         }
 
         applyMapHeader(projectConfig, targetMap);
@@ -35,6 +35,7 @@ public class WurstCommands {
     public static final String WURST_TESTS = "wurst.tests";
     public static final String WURST_TESTS_FILE = "wurst.tests_file";
     public static final String WURST_TESTS_FUNC = "wurst.tests_func";
+    public static final String WURST_TESTS_PROFILE = "wurst.tests_profile";
     public static final String WURST_PERFORM_CODE_ACTION = "wurst.perform_code_action";
 
     static List<String> providedCommands() {
@@ -54,7 +55,9 @@ public class WurstCommands {
             case WURST_HOTRELOAD:
                 return startmap(server, params, "-hotreload");
             case WURST_TESTS:
-                return testMap(server, params);
+                return testMap(server, params, false);
+            case WURST_TESTS_PROFILE:
+                return testMap(server, params, true);
             case WURST_PERFORM_CODE_ACTION:
                 return server.worker().handle(new PerformCodeActionRequest(server, params));
             case WURST_BUILDMAP:
@@ -65,15 +68,29 @@ public class WurstCommands {
     }
 
 
-    private static CompletableFuture<Object> testMap(WurstLanguageServer server, ExecuteCommandParams params) {
+    /**
+     * @param profile when true, the interpreter is profiled and the results are written to the file given
+     *                in the option "profileOutput" (default: _build/interpreter-profile.collapsed)
+     */
+    private static CompletableFuture<Object> testMap(WurstLanguageServer server, ExecuteCommandParams params, boolean profile) {
         JsonObject options = (JsonObject) params.getArguments().get(0);
         Optional<String> filename = getString(options, "filename");
         int line = options.has("line") ? options.get("line").getAsInt() : -1;
         int column = options.has("column") ? options.get("column").getAsInt() : -1;
         int testTimeout = options.has("testTimeout") ? options.get("testTimeout").getAsInt() : 20;
+        int testThreads = options.has("testThreads") ? options.get("testThreads").getAsInt() : 1;
         Optional<String> testName = getString(options, "testName");
 
-        return server.worker().handle(new RunTests(filename, line, column, testName, testTimeout));
+        RunTests runTests = new RunTests(filename, line, column, testName, testTimeout, testThreads);
+        if (options.has("stepLimit")) {
+            // otherwise the limit from the -stepLimit option is used
+            runTests.setStepLimit(options.get("stepLimit").getAsLong());
+        }
+        if (profile) {
+            File defaultOutput = Paths.get(server.getRootUri().toString(), "_build", "interpreter-profile.collapsed").toFile();
+            runTests.setProfileOutput(getString(options, "profileOutput").map(File::new).orElse(defaultOutput));
+        }
+        return server.worker().handle(runTests);
     }
 
     private static CompletableFuture<Object> buildmap(WurstLanguageServer server, ExecuteCommandParams params) {
@@ -7,6 +7,7 @@ import de.peeeq.wurstio.UtilsIO;
 import de.peeeq.wurstio.WurstCompilerJassImpl;
 import de.peeeq.wurstio.languageserver.ConfigProvider;
 import de.peeeq.wurstio.languageserver.ModelManager;
+import de.peeeq.wurstio.languageserver.ModelSnapshot;
 import de.peeeq.wurstio.languageserver.WFile;
 import de.peeeq.wurstio.mpq.MpqEditor;
 import de.peeeq.wurstio.mpq.MpqEditorFactory;
@@ -33,6 +34,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
@@ -149,7 +151,7 @@ public abstract class MapRequest extends UserRequest<Object> {
             }
             WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(projectFolder, gui, mpqEditor, runArgs);
             compiler.setMapFile(mapCopy);
-            purgeUnimportedFiles(model);
+            purgeUnimportedFiles(model, workspaceRoot);
 
             gui.sendProgress("Check program");
             compiler.checkProg(model);
@@ -198,10 +200,11 @@ public abstract class MapRequest extends UserRequest<Object> {
 
                 gui.sendProgress("Printing program");
                 JassPrinter printer = new JassPrinter(!runArgs.isOptimize(), jassProg.get());
-                String compiledMapScript = printer.printProg();
                 File buildDir = getBuildDir();
                 File outFile = new File(buildDir, "compiled.j.txt");
-                Files.write(compiledMapScript.getBytes(Charsets.UTF_8), outFile);
+                try (Writer writer = Files.newWriter(outFile, Charsets.UTF_8)) {
+                    printer.printProg(writer);
+                }
 
                 if (!runArgs.isDisablePjass()) {
                     gui.sendProgress("Running PJass");
@@ -254,16 +257,16 @@ public abstract class MapRequest extends UserRequest<Object> {
      * - a jass file
      * - imported by a file in a wurst folder
      */
-    private void purgeUnimportedFiles(WurstModel model) {
+    public static void purgeUnimportedFiles(WurstModel model, WFile workspaceRoot) {
 
         Set<CompilationUnit> imported = model.stream()
-            .filter(cu -> isInWurstFolder(cu.getCuInfo().getFile()) || cu.getCuInfo().getFile().endsWith(".j")).collect(Collectors.toSet());
+            .filter(cu -> isInWurstFolder(cu.getCuInfo().getFile(), workspaceRoot) || cu.getCuInfo().getFile().endsWith(".j")).collect(Collectors.toSet());
         addImports(imported, imported);
 
         model.removeIf(cu -> !imported.contains(cu));
     }
 
-    private boolean isInWurstFolder(String file) {
+    private static boolean isInWurstFolder(String file, WFile workspaceRoot) {
         Path p = Paths.get(file);
         Path w;
         try {
@@ -289,7 +292,7 @@ public abstract class MapRequest extends UserRequest<Object> {
         return buildDir;
     }
 
-    private void addImports(Set<CompilationUnit> result, Set<CompilationUnit> toAdd) {
+    private static void addImports(Set<CompilationUnit> result, Set<CompilationUnit> toAdd) {
         Set<CompilationUnit> imported =
             toAdd.stream()
                 .flatMap((CompilationUnit cu) -> cu.getPackages().stream())
@@ -324,11 +327,16 @@ public abstract class MapRequest extends UserRequest<Object> {
         processMapScript(runArgs, gui, modelManager, mapCopy);
         print("Processed mapscript");
         if (safeCompilation != RunMap.SafetyLevel.QuickAndDirty) {
-            // it is safer to rebuild the project, instead of taking the current editor state
-            gui.sendProgress("Cleaning project");
-            modelManager.clean();
-            gui.sendProgress("Building project");
-            modelManager.buildProject();
+            // the checked model can be used if it matches the files on disk,
+            // otherwise it is safer to rebuild the project, instead of taking the current editor state
+            if (modelManager.isCheckedModelUpToDate()) {
+                print("Using the checked model of the editor.");
+            } else {
+                gui.sendProgress("Cleaning project");
+                modelManager.clean();
+                gui.sendProgress("Building project");
+                modelManager.buildProject();
+            }
         }
 
         if (modelManager.hasErrors()) {
@@ -338,14 +346,14 @@ public abstract class MapRequest extends UserRequest<Object> {
             throw new RequestFailedException(MessageType.Warning, "Cannot run code with syntax errors.");
         }
 
-        WurstModel model = modelManager.getModel();
-        if (safeCompilation != RunMap.SafetyLevel.QuickAndDirty) {
-            // compilation will alter the model (e.g. remove unused imports),
-            // so it is safer to create a copy
-            model = ModelManager.copy(model);
+        if (safeCompilation == RunMap.SafetyLevel.QuickAndDirty) {
+            return compileMap(modelManager.getProjectPath(), gui, mapCopy, runArgs, modelManager.getModel());
+        }
+        // compilation will alter the model (e.g. remove unused imports),
+        // so compile a snapshot, which is given back to the language server afterwards
+        try (ModelSnapshot snapshot = modelManager.snapshot()) {
+            return compileMap(modelManager.getProjectPath(), gui, mapCopy, runArgs, snapshot.getModel());
         }
-
-        return compileMap(modelManager.getProjectPath(), gui, mapCopy, runArgs, model);
     }
 
     protected File compileScript(ModelManager modelManager, WurstGui gui, Optional<File> testMap) throws Exception {
@@ -3,6 +3,8 @@ package de.peeeq.wurstio.languageserver.requests;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import de.peeeq.wurstio.CompiletimeFunctionRunner;
+import de.peeeq.wurstio.intermediateLang.interpreter.CompiletimeNatives;
+import de.peeeq.wurstio.intermediateLang.interpreter.ProgramStateIO;
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 import de.peeeq.wurstio.jassinterpreter.ReflectionNativeProvider;
 import de.peeeq.wurstio.languageserver.ModelManager;
@@ -13,10 +15,17 @@ import de.peeeq.wurstscript.ast.*;
 import de.peeeq.wurstscript.attributes.CompileError;
 import de.peeeq.wurstscript.gui.WurstGui;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ILInterpreter;
+import de.peeeq.wurstscript.intermediatelang.interpreter.InterpreterProfiler;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
 import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState.StackTrace;
+import de.peeeq.wurstscript.jassIm.ImArrayLikeType;
 import de.peeeq.wurstscript.jassIm.ImFunction;
 import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassIm.ImRealVal;
+import de.peeeq.wurstscript.jassIm.ImStringVal;
+import de.peeeq.wurstscript.jassIm.ImType;
+import de.peeeq.wurstscript.jassIm.ImVar;
+import de.peeeq.wurstscript.jassIm.ImVoid;
 import de.peeeq.wurstscript.jassinterpreter.TestFailException;
 import de.peeeq.wurstscript.jassinterpreter.TestSuccessException;
 import de.peeeq.wurstscript.translation.imtranslation.FunctionFlagEnum;
@@ -26,9 +35,12 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.lsp4j.MessageType;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static de.peeeq.wurstio.CompiletimeFunctionRunner.FunctionFlagToRun.CompiletimeFunctions;
 
@@ -42,6 +54,9 @@ public class RunTests extends UserRequest<Object> {
     private final int column;
     private final Optional<String> testName;
     private final int timeoutSeconds;
+    private final int threads;
+    private @Nullable File profileOutput;
+    private long stepLimit = -1;
 
     private List<ImFunction> successTests = Lists.newArrayList();
     private List<TestFailure> failTests = Lists.newArrayList();
@@ -89,13 +104,41 @@ public class RunTests extends UserRequest<Object> {
     }
 
     public RunTests(Optional<String> filename, int line, int column, Optional<String> testName, int timeoutSeconds) {
+        this(filename, line, column, testName, timeoutSeconds, 1);
+    }
+
+    /**
+     * @param threads the number of tests which are run concurrently.
+     *                With more than one thread, each thread runs its tests with its own copy of the interpreter state
+     *                and the output of the tests is printed after all tests have finished.
+     */
+    public RunTests(Optional<String> filename, int line, int column, Optional<String> testName, int timeoutSeconds, int threads) {
         this.filename = filename.map(WFile::create);
         this.line = line;
         this.column = column;
         this.testName = testName;
         this.timeoutSeconds = timeoutSeconds;
+        this.threads = threads;
+    }
+
+
+    /**
+     * Profiles the interpreter while running the tests and writes the results to the given file
+     * (see {@link InterpreterProfiler#writeFiles(File)}).
+     * Without this, the tests are only profiled when the -profileInterpreter option is used
+     * (see {@link #testProfileFile(String)}).
+     */
+    public void setProfileOutput(@Nullable File profileOutput) {
+        this.profileOutput = profileOutput;
     }
 
+    /**
+     * Stops each test after the given number of steps (function calls and loop iterations), 0 for no limit.
+     * By default, the limit from the -stepLimit option is used.
+     */
+    public void setStepLimit(long stepLimit) {
+        this.stepLimit = stepLimit;
+    }
 
     @Override
     public Object execute(ModelManager modelManager) {
@@ -160,6 +203,15 @@ public class RunTests extends UserRequest<Object> {
 
         redirectInterpreterOutput(globalState);
 
+        @Nullable File profileFile = profileOutput;
+        String profileArg = translator.getRunArgs().getProfileInterpreter();
+        if (profileFile == null && profileArg != null) {
+            profileFile = testProfileFile(profileArg);
+        }
+        // only the tests are profiled, each test uses its own profiler, which is merged into this one
+        @Nullable InterpreterProfiler profiler = profileFile != null ? new InterpreterProfiler() : null;
+        globalState.setProfiler(null);
+
         // first run compiletime functions
         cfr.run();
 
@@ -173,7 +225,12 @@ public class RunTests extends UserRequest<Object> {
 
         WLogger.info("Ran compiletime functions");
 
+        long testStepLimit = stepLimit >= 0 ? stepLimit : translator.getRunArgs().getStepLimit();
+
+        // each test starts from a fork of this state, so tests cannot observe each others side effects
+        ProgramState snapshot = globalState;
 
+        List<ImFunction> tests = new ArrayList<>();
         for (ImFunction f : imProg.getFunctions()) {
             if (f.hasFlag(FunctionFlagEnum.IS_TEST)) {
                 Element trace = f.attrTrace();
@@ -184,77 +241,36 @@ public class RunTests extends UserRequest<Object> {
                 if (funcToTest.isPresent() && trace != funcToTest.get()) {
                     continue;
                 }
+                tests.add(f);
+            }
+        }
 
+        boolean parallel = threads > 1 && tests.size() > 1;
+        if (parallel) {
+            String reason = snapshot.checkForkableForOtherInterpreters();
+            if (reason != null) {
+                println("Running tests sequentially: " + reason + "\n");
+                parallel = false;
+            }
+        }
 
-                String message = "Running <" + f.attrTrace().attrNearestPackage().tryGetNameDef().getName() + ":"
-                        + f.attrTrace().attrErrorPos().getLine() + " - " + f.getName() + ">..";
-                println(message);
-                WLogger.info(message);
-                try {
-                    @Nullable ILInterpreter finalInterpreter = interpreter;
-                    Callable<Void> run = () -> {
-                        finalInterpreter.runVoidFunc(f, null);
-                        // each test must finish it's own timers (otherwise, we would get strange results)
-                        finalInterpreter.completeTimers();
-                        return null;
-                    };
-                    RunnableFuture<Void> future = new FutureTask<>(run);
-                    if (service != null && !service.isShutdown()) {
-                        service.shutdownNow();
-                    }
-                    service = Executors.newSingleThreadScheduledExecutor();
-                    service.execute(future);
-                    try {
-                        future.get(timeoutSeconds, TimeUnit.SECONDS); // Wait 20 seconds for test to complete
-                    } catch (TimeoutException ex) {
-                        future.cancel(true);
-                        throw new TestTimeOutException();
-                    } catch (ExecutionException e) {
-                        throw e.getCause();
-                    }
-                    service.shutdown();
-                    service.awaitTermination(10, TimeUnit.SECONDS);
-                    service = Executors.newSingleThreadScheduledExecutor();
-                    if (gui.getErrorCount() > 0) {
-                        StringBuilder sb = new StringBuilder();
-                        for (CompileError error : gui.getErrorList()) {
-                            sb.append(error.toString()).append("\n");
-                            println(error.getMessage());
-                        }
-                        gui.clearErrors();
-                        TestFailure failure = new TestFailure(f, interpreter.getStackFrames(), sb.toString());
-                        failTests.add(failure);
-                    } else {
-                        successTests.add(f);
-                        println("\tOK!");
-                    }
-                } catch (TestSuccessException e) {
+        if (parallel) {
+            for (TestRun run : runTestsInParallel(imProg, snapshot, tests, testStepLimit, profiler)) {
+                print(run.output.toString());
+                if (run.failure == null) {
+                    successTests.add(run.function);
+                } else {
+                    failTests.add(run.failure);
+                }
+            }
+        } else {
+            for (ImFunction f : tests) {
+                interpreter.resetGlobalState(snapshot);
+                @Nullable TestFailure failure = runTest(f, interpreter, testStepLimit, profiler, gui, this::println, this::runWithSharedService);
+                if (failure == null) {
                     successTests.add(f);
-                    println("\tOK!");
-                } catch (TestFailException e) {
-                    TestFailure failure = new TestFailure(f, interpreter.getStackFrames(), e.getMessage());
+                } else {
                     failTests.add(failure);
-                    println("\tFAILED assertion:");
-                    println("\t" + failure.getMessageWithStackFrame());
-                } catch (TestTimeOutException e) {
-                    failTests.add(new TestFailure(f, interpreter.getStackFrames(), e.getMessage()));
-                    println("\tFAILED - TIMEOUT (This test did not complete in " + timeoutSeconds + " seconds, it might contain an endless loop)");
-                    println(interpreter.getStackFrames().toString());
-                } catch (InterpreterException e) {
-                    TestFailure failure = new TestFailure(f, interpreter.getStackFrames(), e.getMessage());
-                    failTests.add(failure);
-                    println("\t" + failure.getMessageWithStackFrame());
-                } catch (Throwable e) {
-                    failTests.add(new TestFailure(f, interpreter.getStackFrames(), e.toString()));
-                    println("\tFAILED with exception: " + e.getClass() + " " + e.getLocalizedMessage());
-                    println(interpreter.getStackFrames().toString());
-                    println("Here are some compiler internals, that might help Wurst developers to debug this issue:");
-                    StringWriter sw = new StringWriter();
-                    PrintWriter pw = new PrintWriter(sw);
-                    e.printStackTrace(pw);
-                    String sStackTrace = sw.toString();
-                    println("\t" + e.getLocalizedMessage());
-                    println("\t" + sStackTrace);
                 }
             }
         }
@@ -271,24 +287,308 @@ public class RunTests extends UserRequest<Object> {
             }
         }
 
+        if (profileFile != null && profiler != null) {
+            writeProfile(profiler, profileFile);
+        }
+
         WLogger.info("finished tests");
         return new TestResult(successTests.size(), successTests.size() + failTests.size());
     }
 
 
+    /**
+     * The file for the test profile, when profiling was enabled with -profileInterpreter.
+     * The name differs from the given file, which is used for the profile of the compiletime functions.
+     * For example "profile.collapsed" becomes "profile.tests.collapsed".
+     */
+    public static File testProfileFile(String profileArg) {
+        File file = new File(profileArg);
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String testName = dot > 0
+            ? name.substring(0, dot) + ".tests" + name.substring(dot)
+            : name + ".tests";
+        return new File(file.getParentFile(), testName);
+    }
+
+    private void writeProfile(InterpreterProfiler profiler, File file) {
+        try {
+            profiler.writeFiles(file);
+            println("Wrote interpreter profile to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            WLogger.warning("Could not write interpreter profile", e);
+            println("Could not write interpreter profile to " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a single test function.
+     *
+     * @param stepLimit     the maximum number of steps of the test, 0 for no limit
+     * @param profiler      receives the measurements of the test, if not null
+     * @param println       receives the output of the test
+     * @param testThread    runs the test and cancels it after the timeout
+     * @return the failure or null if the test succeeded
+     */
+    private @Nullable TestFailure runTest(ImFunction f, ILInterpreter interpreter, long stepLimit,
+                                          @Nullable InterpreterProfiler profiler, WurstGui gui,
+                                          Consumer<String> println, TestThread testThread) {
+        String message = "Running <" + f.attrTrace().attrNearestPackage().tryGetNameDef().getName() + ":"
+                + f.attrTrace().attrErrorPos().getLine() + " - " + f.getName() + ">..";
+        println.accept(message);
+        WLogger.info(message);
+        interpreter.getGlobalState().resetSteps(stepLimit);
+        // a test which timed out might still be running and using its profiler, so each test gets a new one
+        InterpreterProfiler testProfiler = profiler != null ? new InterpreterProfiler() : null;
+        interpreter.getGlobalState().setProfiler(testProfiler);
+        boolean timedOut = false;
+        try {
+            testThread.runWithTimeout(() -> {
+                interpreter.runVoidFunc(f, null);
+                // each test must finish it's own timers (otherwise, we would get strange results)
+                interpreter.completeTimers();
+                return null;
+            });
+            if (gui.getErrorCount() > 0) {
+                StringBuilder sb = new StringBuilder();
+                for (CompileError error : gui.getErrorList()) {
+                    sb.append(error.toString()).append("\n");
+                    println.accept(error.getMessage());
+                }
+                gui.clearErrors();
+                return new TestFailure(f, interpreter.getStackFrames(), sb.toString());
+            } else {
+                println.accept("\tOK!");
+                return null;
+            }
+        } catch (TestSuccessException e) {
+            println.accept("\tOK!");
+            return null;
+        } catch (TestFailException e) {
+            TestFailure failure = new TestFailure(f, interpreter.getStackFrames(), e.getMessage());
+            println.accept("\tFAILED assertion:");
+            println.accept("\t" + failure.getMessageWithStackFrame());
+            return failure;
+        } catch (TestTimeOutException e) {
+            timedOut = true;
+            println.accept("\tFAILED - TIMEOUT (This test did not complete in " + timeoutSeconds + " seconds, it might contain an endless loop)");
+            println.accept(interpreter.getStackFrames().toString());
+            return new TestFailure(f, interpreter.getStackFrames(), e.getMessage());
+        } catch (InterpreterException e) {
+            TestFailure failure = new TestFailure(f, interpreter.getStackFrames(), e.getMessage());
+            println.accept("\t" + failure.getMessageWithStackFrame());
+            return failure;
+        } catch (Throwable e) {
+            println.accept("\tFAILED with exception: " + e.getClass() + " " + e.getLocalizedMessage());
+            println.accept(interpreter.getStackFrames().toString());
+            println.accept("Here are some compiler internals, that might help Wurst developers to debug this issue:");
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            e.printStackTrace(pw);
+            String sStackTrace = sw.toString();
+            println.accept("\t" + e.getLocalizedMessage());
+            println.accept("\t" + sStackTrace);
+            return new TestFailure(f, interpreter.getStackFrames(), e.toString());
+        } finally {
+            if (profiler != null && testProfiler != null && !timedOut) {
+                profiler.merge(testProfiler);
+            }
+        }
+    }
+
+    private interface TestThread {
+        void runWithTimeout(Callable<Void> test) throws Throwable;
+    }
+
+    private void runWithSharedService(Callable<Void> run) throws Throwable {
+        RunnableFuture<Void> future = new FutureTask<>(run);
+        if (service != null && !service.isShutdown()) {
+            service.shutdownNow();
+        }
+        service = Executors.newSingleThreadScheduledExecutor();
+        service.execute(future);
+        awaitTest(future);
+        service.shutdown();
+        service.awaitTermination(10, TimeUnit.SECONDS);
+        service = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    private void awaitTest(Future<Void> future) throws Throwable {
+        try {
+            future.get(timeoutSeconds, TimeUnit.SECONDS); // Wait for test to complete
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw new TestTimeOutException();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The result and the output of a test, which was run in parallel to other tests.
+     */
+    private static class TestRun {
+        private final ImFunction function;
+        private final StringBuffer output = new StringBuffer();
+        private @Nullable TestFailure failure;
+
+        TestRun(ImFunction function) {
+            this.function = function;
+        }
+    }
+
+    /**
+     * Runs the tests on several threads.
+     * Each thread gets its own interpreter and each test runs on its own fork of the given snapshot.
+     * The forks of a thread use the state of its interpreter as environment, so no caches are shared between threads.
+     *
+     * @return the results in the same order as the given tests
+     */
+    private List<TestRun> runTestsInParallel(ImProg imProg, ProgramState snapshot, List<ImFunction> tests, long stepLimit,
+                                             @Nullable InterpreterProfiler profiler) {
+        prepareForThreads(imProg);
+        int workerCount = Math.min(threads, tests.size());
+        List<TestWorker> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new TestWorker(imProg, snapshot, stepLimit, profiler));
+        }
+        TestRun[] results = new TestRun[tests.size()];
+        AtomicInteger nextTest = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TestWorker worker : workers) {
+                futures.add(pool.submit(() -> {
+                    int i;
+                    while ((i = nextTest.getAndIncrement()) < tests.size()) {
+                        results[i] = worker.run(tests.get(i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            for (TestWorker worker : workers) {
+                worker.testExecutor.shutdownNow();
+            }
+        }
+        List<TestRun> res = new ArrayList<>();
+        for (TestRun r : results) {
+            res.add(r);
+        }
+        return res;
+    }
+
+    /**
+     * Computes the cached attributes of the program, which are used by the interpreter.
+     * Cached attributes must not be computed concurrently, so this is done before starting the threads.
+     */
+    private static void prepareForThreads(ImProg imProg) {
+        imProg.attrTypeId();
+        imProg.accept(new ImProg.DefaultVisitor() {
+            @Override
+            public void visit(ImVar v) {
+                super.visit(v);
+                v.attrInterpreterSlot();
+                ImType t = v.getType();
+                if (t instanceof ImArrayLikeType) {
+                    ((ImArrayLikeType) t).getEntryType().defaultValue();
+                } else if (!(t instanceof ImVoid)) {
+                    t.defaultValue();
+                }
+            }
+
+            @Override
+            public void visit(ImRealVal e) {
+                super.visit(e);
+                e.attrConstantValue();
+            }
+
+            @Override
+            public void visit(ImStringVal e) {
+                super.visit(e);
+                e.attrConstantValue();
+            }
+        });
+    }
+
+    /**
+     * An interpreter with its own state for running tests on one thread.
+     */
+    private class TestWorker {
+        private final ILInterpreter interpreter;
+        private final WurstGui gui;
+        private final ProgramState snapshot;
+        private final long stepLimit;
+        private final @Nullable InterpreterProfiler profiler;
+        private ExecutorService testExecutor = Executors.newSingleThreadExecutor();
+        private volatile @Nullable TestRun current;
+
+        TestWorker(ImProg imProg, ProgramState snapshot, long stepLimit, @Nullable InterpreterProfiler profiler) {
+            this.snapshot = snapshot;
+            this.stepLimit = stepLimit;
+            this.profiler = profiler;
+            gui = new TestGui(this::println);
+            ProgramStateIO state = new ProgramStateIO(Optional.empty(), null, gui, imProg, true);
+            state.setUseClosureCompiler(snapshot.isUseClosureCompiler());
+            interpreter = new ILInterpreter(imProg, gui, Optional.empty(), state);
+            interpreter.addNativeProvider(new CompiletimeNatives(state));
+            interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
+            redirectInterpreterOutput(state, this::println);
+        }
+
+        private void println(String message) {
+            TestRun run = current;
+            if (run != null) {
+                run.output.append(message).append(System.lineSeparator());
+            }
+        }
+
+        TestRun run(ImFunction f) {
+            TestRun run = new TestRun(f);
+            current = run;
+            interpreter.resetGlobalState(snapshot);
+            run.failure = runTest(f, interpreter, stepLimit, profiler, gui, this::println, this::runWithTimeout);
+            return run;
+        }
+
+        private void runWithTimeout(Callable<Void> test) throws Throwable {
+            Future<Void> future = testExecutor.submit(test);
+            try {
+                awaitTest(future);
+            } catch (TestTimeOutException e) {
+                // the cancelled test might still be running, so the next test needs a new thread
+                testExecutor.shutdownNow();
+                testExecutor = Executors.newSingleThreadExecutor();
+                throw e;
+            }
+        }
+    }
+
     private void redirectInterpreterOutput(ProgramState globalState) {
+        redirectInterpreterOutput(globalState, this::println);
+    }
+
+    private void redirectInterpreterOutput(ProgramState globalState, Consumer<String> println) {
         OutputStream os = new OutputStream() {
 
             @Override
             public void write(int b) throws IOException {
                 if (b > 0) {
-                    println("" + (char) b);
+                    println.accept("" + (char) b);
                 }
             }
 
             @Override
             public void write(byte b[], int off, int len) throws IOException {
-                println(new String(b, off, len));
+                println.accept(new String(b, off, len));
             }
 
 
@@ -355,6 +655,15 @@ public class RunTests extends UserRequest<Object> {
     }
 
     public class TestGui extends WurstGui {
+        private final Consumer<String> println;
+
+        public TestGui() {
+            this(RunTests.this::println);
+        }
+
+        TestGui(Consumer<String> println) {
+            this.println = println;
+        }
 
         @Override
         public void sendProgress(String whatsRunningNow) {
@@ -368,7 +677,7 @@ public class RunTests extends UserRequest<Object> {
 
         @Override
         public void showInfoMessage(String message) {
-            println(message + "\n");
+            println.accept(message + "\n");
         }
 
 
@@ -0,0 +1,183 @@
+package de.peeeq.wurstio.parsecache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The structure of the Wurst AST, read from the ast specification (wurstscript.parseq)
+ * which is used to generate the classes in {@link de.peeeq.wurstscript.ast}.
+ * <p>
+ * Only constructors and list types are relevant for serialization, so
+ * the union types and the attributes section are skipped.
+ */
+class AstSpec {
+
+    static final String RESOURCE = "/parserspec/wurstscript.parseq";
+
+    /** a field of a constructor */
+    static class Field {
+        final String type;
+        final String name;
+        final boolean isRef;
+
+        Field(String type, String name, boolean isRef) {
+            this.type = type;
+            this.name = name;
+            this.isRef = isRef;
+        }
+    }
+
+    private final Map<String, List<Field>> constructors = new TreeMap<>();
+    private final Map<String, String> lists = new TreeMap<>();
+    private final Set<String> elementTypes = new HashSet<>();
+    private final String source;
+
+    private List<String> tokens;
+    private int pos;
+
+    private AstSpec(String source) {
+        this.source = source;
+    }
+
+    static AstSpec load() throws IOException {
+        URL url = AstSpec.class.getResource(RESOURCE);
+        if (url == null) {
+            throw new IOException("Could not find ast specification " + RESOURCE);
+        }
+        return parse(Resources.toString(url, StandardCharsets.UTF_8));
+    }
+
+    static AstSpec parse(String spec) {
+        AstSpec result = new AstSpec(spec);
+        result.parseSpec();
+        return result;
+    }
+
+    /** the complete specification text, used to detect changes in the ast structure */
+    String getSource() {
+        return source;
+    }
+
+    Map<String, List<Field>> getConstructors() {
+        return constructors;
+    }
+
+    Map<String, String> getLists() {
+        return lists;
+    }
+
+    /** checks whether the given type name is an ast element (and not a property like a position or a string) */
+    boolean isElementType(String type) {
+        return elementTypes.contains(type);
+    }
+
+    private void parseSpec() {
+        String text = source;
+        int start = text.indexOf("abstract syntax:");
+        if (start >= 0) {
+            text = text.substring(start + "abstract syntax:".length());
+        }
+        int end = text.indexOf("attributes:");
+        if (end >= 0) {
+            text = text.substring(0, end);
+        }
+        tokens = tokenize(text);
+        pos = 0;
+        while (pos < tokens.size()) {
+            String name = next();
+            elementTypes.add(name);
+            String op = next();
+            switch (op) {
+                case "*":
+                    lists.put(name, next());
+                    break;
+                case "(":
+                    constructors.put(name, parseFields());
+                    break;
+                case "=":
+                    parseAlternative();
+                    while (pos < tokens.size() && tokens.get(pos).equals("|")) {
+                        pos++;
+                        parseAlternative();
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected token '" + op + "' after " + name);
+            }
+        }
+    }
+
+    private void parseAlternative() {
+        String name = next();
+        elementTypes.add(name);
+        if (pos < tokens.size() && tokens.get(pos).equals("(")) {
+            pos++;
+            constructors.put(name, parseFields());
+        }
+    }
+
+    private List<Field> parseFields() {
+        ImmutableList.Builder<Field> fields = ImmutableList.builder();
+        if (tokens.get(pos).equals(")")) {
+            pos++;
+            return fields.build();
+        }
+        while (true) {
+            boolean isRef = false;
+            String t = next();
+            while (t.startsWith("@")) {
+                t = next();
+            }
+            if (t.equals("ref")) {
+                isRef = true;
+                t = next();
+            }
+            fields.add(new Field(t, next(), isRef));
+            String sep = next();
+            if (sep.equals(")")) {
+                return fields.build();
+            } else if (!sep.equals(",")) {
+                throw new IllegalArgumentException("Unexpected token '" + sep + "' in field list");
+            }
+        }
+    }
+
+    private String next() {
+        if (pos >= tokens.size()) {
+            throw new IllegalArgumentException("Unexpected end of ast specification");
+        }
+        return tokens.get(pos++);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (text.startsWith("//", i)) {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if ("()*=|,".indexOf(c) >= 0) {
+                result.add(String.valueOf(c));
+                i++;
+            } else {
+                int s = i;
+                i++;
+                while (i < text.length()
+                        && (Character.isJavaIdentifierPart(text.charAt(i)) || text.charAt(i) == '.')) {
+                    i++;
+                }
+                result.add(text.substring(s, i));
+            }
+        }
+        return result;
+    }
+}
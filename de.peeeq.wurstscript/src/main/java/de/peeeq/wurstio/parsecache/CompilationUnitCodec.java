@@ -0,0 +1,374 @@
+package de.peeeq.wurstio.parsecache;
+
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.ast.Ast;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.CompilationUnitInfo;
+import de.peeeq.wurstscript.attributes.CompilationUnitInfo.IndentationMode;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.parser.WPos;
+import de.peeeq.wurstscript.utils.LineOffsets;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary encoding of parsed compilation units.
+ * <p>
+ * The encoding is derived from the ast specification: each element is written as the index of its
+ * constructor followed by its fields in specification order. Elements are created again using
+ * the factory methods in {@link Ast}. Strings, file names and line offsets are written only once
+ * and referenced by index afterwards.
+ * <p>
+ * Only elements created by the parser are supported, elements containing resolved types
+ * or references cannot be encoded.
+ */
+class CompilationUnitCodec {
+
+    private static final String POS_TYPE = WPos.class.getName();
+    private static final String OPERATOR_TYPE = WurstOperator.class.getName();
+    private static final String CU_INFO_TYPE = CompilationUnitInfo.class.getName();
+
+    private final AstSpec spec;
+    private final List<NodeType> nodeTypes = new ArrayList<>();
+    private final Map<String, NodeType> nodeTypesByName = new HashMap<>();
+    private final Map<Class<?>, NodeType> nodeTypesByClass = new ConcurrentHashMap<>();
+
+    private static class NodeType {
+        final int id;
+        final String name;
+        final Method factory;
+        // for constructors:
+        final List<AstSpec.Field> fields;
+        final Method[] getters;
+        final boolean[] isElement;
+        // for lists:
+        final @Nullable Class<?> listElementType;
+
+        NodeType(int id, String name, Method factory, List<AstSpec.Field> fields, Method[] getters, boolean[] isElement, @Nullable Class<?> listElementType) {
+            this.id = id;
+            this.name = name;
+            this.factory = factory;
+            this.fields = fields;
+            this.getters = getters;
+            this.isElement = isElement;
+            this.listElementType = listElementType;
+        }
+
+        boolean isList() {
+            return listElementType != null;
+        }
+    }
+
+    CompilationUnitCodec(AstSpec spec) throws IOException {
+        this.spec = spec;
+        Set<String> names = new TreeSet<>();
+        names.addAll(spec.getConstructors().keySet());
+        names.addAll(spec.getLists().keySet());
+        for (String name : names) {
+            NodeType t = createNodeType(nodeTypes.size(), name);
+            nodeTypes.add(t);
+            nodeTypesByName.put(name, t);
+        }
+    }
+
+    AstSpec getSpec() {
+        return spec;
+    }
+
+    private NodeType createNodeType(int id, String name) throws IOException {
+        Class<?> iface = astClass(name);
+        List<AstSpec.Field> fields = spec.getConstructors().get(name);
+        if (fields == null) {
+            // list type, created with the varargs factory method
+            Method factory = findFactory(name, m -> m.getParameterCount() == 1 && m.getParameterTypes()[0].isArray());
+            return new NodeType(id, name, factory, Collections.emptyList(), new Method[0], new boolean[0],
+                    factory.getParameterTypes()[0].getComponentType());
+        }
+        Method factory = findFactory(name, m -> m.getParameterCount() == fields.size()
+                && (fields.size() != 1 || !m.getParameterTypes()[0].isArray()));
+        Method[] getters = new Method[fields.size()];
+        boolean[] isElement = new boolean[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            AstSpec.Field f = fields.get(i);
+            isElement[i] = !f.isRef && spec.isElementType(f.type);
+            try {
+                getters[i] = iface.getMethod("get" + Character.toUpperCase(f.name.charAt(0)) + f.name.substring(1));
+            } catch (NoSuchMethodException e) {
+                throw new IOException("Could not find getter for " + name + "." + f.name, e);
+            }
+        }
+        return new NodeType(id, name, factory, fields, getters, isElement, null);
+    }
+
+    private static Class<?> astClass(String name) throws IOException {
+        try {
+            return Class.forName(Ast.class.getPackage().getName() + "." + name);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not find ast class " + name, e);
+        }
+    }
+
+    private static Method findFactory(String name, java.util.function.Predicate<Method> filter) throws IOException {
+        for (Method m : Ast.class.getMethods()) {
+            if (m.getName().equals(name) && filter.test(m)) {
+                return m;
+            }
+        }
+        throw new IOException("Could not find factory method Ast." + name);
+    }
+
+    private NodeType nodeType(Object element) throws IOException {
+        NodeType t = nodeTypesByClass.get(element.getClass());
+        if (t != null) {
+            return t;
+        }
+        for (Class<?> i : element.getClass().getInterfaces()) {
+            t = nodeTypesByName.get(i.getSimpleName());
+            if (t != null) {
+                nodeTypesByClass.put(element.getClass(), t);
+                return t;
+            }
+        }
+        throw new IOException("Unknown ast element " + element.getClass());
+    }
+
+    void write(CompilationUnit cu, DataOutput out) throws IOException {
+        new Writer(out).writeElement(cu);
+    }
+
+    CompilationUnit read(DataInput in, ErrorHandler errorHandler) throws IOException {
+        Object result = new Reader(in, errorHandler).readElement();
+        if (!(result instanceof CompilationUnit)) {
+            throw new IOException("Expected compilation unit but found " + result.getClass());
+        }
+        return (CompilationUnit) result;
+    }
+
+    private static IOException reflectionError(String what, Exception e) {
+        Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+        return new IOException("Could not " + what, cause);
+    }
+
+    private class Writer {
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<LineOffsets, Integer> lineOffsets = new IdentityHashMap<>();
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeElement(Object e) throws IOException {
+            NodeType t = nodeType(e);
+            out.writeShort(t.id);
+            if (t.isList()) {
+                List<?> list = (List<?>) e;
+                out.writeInt(list.size());
+                for (Object child : list) {
+                    writeElement(child);
+                }
+                return;
+            }
+            for (int i = 0; i < t.fields.size(); i++) {
+                Object value;
+                try {
+                    value = t.getters[i].invoke(e);
+                } catch (IllegalAccessException | InvocationTargetException ex) {
+                    throw reflectionError("read " + t.name + "." + t.fields.get(i).name, ex);
+                }
+                if (t.isElement[i]) {
+                    writeElement(value);
+                } else {
+                    writeProperty(t.name, t.fields.get(i), value);
+                }
+            }
+        }
+
+        private void writeProperty(String nodeName, AstSpec.Field field, Object value) throws IOException {
+            if (field.isRef) {
+                throw new IOException("Cannot encode reference " + nodeName + "." + field.name);
+            }
+            switch (field.type) {
+                case "String":
+                    writeString((String) value);
+                    break;
+                case "boolean":
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case "int":
+                    out.writeInt((Integer) value);
+                    break;
+                default:
+                    if (field.type.equals(POS_TYPE)) {
+                        writePos((WPos) value);
+                    } else if (field.type.equals(OPERATOR_TYPE)) {
+                        out.writeByte(((WurstOperator) value).ordinal());
+                    } else if (field.type.equals(CU_INFO_TYPE)) {
+                        CompilationUnitInfo info = (CompilationUnitInfo) value;
+                        writeString(info.getFile());
+                        writeString(info.getIndentationMode().getIndent());
+                    } else {
+                        throw new IOException("Cannot encode " + nodeName + "." + field.name + " of type " + field.type);
+                    }
+            }
+        }
+
+        private void writePos(WPos pos) throws IOException {
+            writeString(pos.getFile());
+            writeLineOffsets(pos.getLineOffsets());
+            out.writeInt(pos.getLeftPos());
+            out.writeInt(pos.getRightPos());
+        }
+
+        private void writeLineOffsets(@Nullable LineOffsets lo) throws IOException {
+            if (lo == null) {
+                out.writeInt(-1);
+            } else if (lo == LineOffsets.dummy) {
+                out.writeInt(-2);
+            } else {
+                Integer index = lineOffsets.get(lo);
+                if (index != null) {
+                    out.writeInt(index);
+                    return;
+                }
+                index = lineOffsets.size();
+                lineOffsets.put(lo, index);
+                out.writeInt(index);
+                int[] offsets = lo.toArray();
+                out.writeInt(offsets.length);
+                for (int offset : offsets) {
+                    out.writeInt(offset);
+                }
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            Integer index = strings.get(s);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            index = strings.size();
+            strings.put(s, index);
+            out.writeInt(index);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private class Reader {
+        private final DataInput in;
+        private final ErrorHandler errorHandler;
+        private final List<String> strings = new ArrayList<>();
+        private final List<LineOffsets> lineOffsets = new ArrayList<>();
+
+        Reader(DataInput in, ErrorHandler errorHandler) {
+            this.in = in;
+            this.errorHandler = errorHandler;
+        }
+
+        Object readElement() throws IOException {
+            int id = in.readUnsignedShort();
+            if (id >= nodeTypes.size()) {
+                throw new IOException("Invalid node type " + id);
+            }
+            NodeType t = nodeTypes.get(id);
+            Object[] args;
+            if (t.isList()) {
+                int size = in.readInt();
+                Object children = Array.newInstance(t.listElementType, size);
+                for (int i = 0; i < size; i++) {
+                    Array.set(children, i, readElement());
+                }
+                args = new Object[]{children};
+            } else {
+                args = new Object[t.fields.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = t.isElement[i] ? readElement() : readProperty(t.fields.get(i));
+                }
+            }
+            try {
+                return t.factory.invoke(null, args);
+            } catch (IllegalAccessException | InvocationTargetException | IllegalArgumentException e) {
+                throw reflectionError("create " + t.name, e);
+            }
+        }
+
+        private Object readProperty(AstSpec.Field field) throws IOException {
+            switch (field.type) {
+                case "String":
+                    return readString();
+                case "boolean":
+                    return in.readBoolean();
+                case "int":
+                    return in.readInt();
+                default:
+                    if (field.type.equals(POS_TYPE)) {
+                        return readPos();
+                    } else if (field.type.equals(OPERATOR_TYPE)) {
+                        return WurstOperator.values()[in.readUnsignedByte()];
+                    } else if (field.type.equals(CU_INFO_TYPE)) {
+                        CompilationUnitInfo info = new CompilationUnitInfo(errorHandler);
+                        info.setFile(readString());
+                        String indent = readString();
+                        info.setIndentationMode(indent.equals("\t") ? IndentationMode.tabs() : IndentationMode.spaces(indent.length()));
+                        return info;
+                    }
+                    throw new IOException("Cannot decode field " + field.name + " of type " + field.type);
+            }
+        }
+
+        private WPos readPos() throws IOException {
+            String file = readString();
+            LineOffsets lo = readLineOffsets();
+            int left = in.readInt();
+            int right = in.readInt();
+            return new WPos(file, lo, left, right);
+        }
+
+        private @Nullable LineOffsets readLineOffsets() throws IOException {
+            int index = in.readInt();
+            if (index == -1) {
+                return null;
+            } else if (index == -2) {
+                return LineOffsets.dummy;
+            } else if (index < lineOffsets.size()) {
+                return lineOffsets.get(index);
+            } else if (index == lineOffsets.size()) {
+                int[] offsets = new int[in.readInt()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                }
+                LineOffsets lo = LineOffsets.fromArray(offsets);
+                lineOffsets.add(lo);
+                return lo;
+            }
+            throw new IOException("Invalid line offsets index " + index);
+        }
+
+        private String readString() throws IOException {
+            int index = in.readInt();
+            if (index < strings.size()) {
+                return strings.get(index);
+            } else if (index == strings.size()) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                String s = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(s);
+                return s;
+            }
+            throw new IOException("Invalid string index " + index);
+        }
+    }
+
+}
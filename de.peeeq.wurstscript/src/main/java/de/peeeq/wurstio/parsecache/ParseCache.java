@@ -0,0 +1,168 @@
+package de.peeeq.wurstio.parsecache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import de.peeeq.wurstscript.CompileTimeInfo;
+import de.peeeq.wurstscript.WLogger;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGui;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A persistent cache for parsed compilation units, stored in the _build/parsecache folder of a project.
+ * <p>
+ * Entries are keyed by a hash of the file name and contents, so a changed file is simply parsed again.
+ * All entries are stored in a folder named after the compiler revision; folders of other revisions
+ * are deleted, so a new compiler version starts with an empty cache.
+ * <p>
+ * Only compilation units without parse errors or warnings are cached, so that loading an entry
+ * never has to report errors.
+ */
+public class ParseCache {
+    private static final int MAGIC = 0x57555243; // "WURC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".cu";
+
+    private static final Set<File> cleanedFolders = Collections.synchronizedSet(new HashSet<>());
+    private static @Nullable CompilationUnitCodec codec;
+    private static boolean codecUnavailable = false;
+
+    private final File cacheDir;
+
+    public ParseCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * the parse cache for the given project folder
+     */
+    public static ParseCache forProject(File projectFolder) {
+        File baseDir = new File(new File(projectFolder, "_build"), "parsecache");
+        String revision = CompileTimeInfo.revisionLong.replaceAll("[^a-zA-Z0-9_.-]", "_");
+        if (cleanedFolders.add(baseDir)) {
+            deleteOtherRevisions(baseDir, revision);
+        }
+        return new ParseCache(new File(baseDir, revision));
+    }
+
+    private static void deleteOtherRevisions(File baseDir, String revision) {
+        File[] dirs = baseDir.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            if (!dir.getName().equals(revision)) {
+                WLogger.info("Deleting outdated parse cache " + dir);
+                File[] entries = dir.listFiles();
+                if (entries != null) {
+                    for (File entry : entries) {
+                        //noinspection ResultOfMethodCallIgnored
+                        entry.delete();
+                    }
+                }
+                //noinspection ResultOfMethodCallIgnored
+                dir.delete();
+            }
+        }
+    }
+
+    private static synchronized @Nullable CompilationUnitCodec getCodec() {
+        if (codec == null && !codecUnavailable) {
+            try {
+                codec = new CompilationUnitCodec(AstSpec.load());
+            } catch (IOException | RuntimeException e) {
+                WLogger.warning("Parse cache disabled: " + e);
+                codecUnavailable = true;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Returns the cached compilation unit for the given source file and contents,
+     * or parses it using the given parse function and stores the result in the cache.
+     *
+     * @param source       the file name used for the positions in the compilation unit
+     * @param contents     the contents of the file
+     * @param hasCommonJ   the hasCommonJ flag passed to the parser
+     * @param errorHandler the error handler of the parser, it is used for the loaded compilation unit
+     *                     and its gui is used to detect parse errors
+     * @param parse        the function to parse the contents if there is no cache entry
+     */
+    public CompilationUnit parse(String source, String contents, boolean hasCommonJ, ErrorHandler errorHandler, Supplier<CompilationUnit> parse) {
+        CompilationUnitCodec c = getCodec();
+        if (c == null) {
+            return parse.get();
+        }
+        File entry = new File(cacheDir, key(c, source, contents, hasCommonJ) + ENTRY_SUFFIX);
+        if (entry.exists()) {
+            CompilationUnit cu = load(c, entry, errorHandler);
+            if (cu != null) {
+                return cu;
+            }
+        }
+        WurstGui gui = errorHandler.getGui();
+        int errorCount = gui.getErrorsAndWarnings().size();
+        CompilationUnit cu = parse.get();
+        if (gui.getErrorsAndWarnings().size() == errorCount) {
+            store(c, entry, cu);
+        }
+        return cu;
+    }
+
+    private static String key(CompilationUnitCodec c, String source, String contents, boolean hasCommonJ) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putInt(FORMAT_VERSION)
+                .putString(c.getSpec().getSource(), StandardCharsets.UTF_8)
+                .putString(source, StandardCharsets.UTF_8)
+                .putBoolean(hasCommonJ)
+                .putString(contents, StandardCharsets.UTF_8);
+        return hasher.hash().toString();
+    }
+
+    private static @Nullable CompilationUnit load(CompilationUnitCodec c, File entry, ErrorHandler errorHandler) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("invalid header");
+            }
+            return c.read(in, errorHandler);
+        } catch (IOException | RuntimeException e) {
+            WLogger.info("Could not load parse cache entry " + entry + ": " + e);
+            //noinspection ResultOfMethodCallIgnored
+            entry.delete();
+            return null;
+        }
+    }
+
+    private void store(CompilationUnitCodec c, File entry, CompilationUnit cu) {
+        File temp = null;
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            cacheDir.mkdirs();
+            temp = File.createTempFile("entry", ".tmp", cacheDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                c.write(cu, out);
+            }
+            // move atomically, so that concurrent builds never see partial entries
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            WLogger.warning("Could not store parse cache entry for " + cu.getCuInfo().getFile(), e);
+            if (temp != null) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.peeeq.wurstscript;
+
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.attributes.BufferedErrorHandler;
+import de.peeeq.wurstscript.attributes.ErrorHandler;
+import de.peeeq.wurstscript.gui.WurstGui;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses compilation units on a bounded pool of worker threads.
+ * <p>
+ * Every job gets its own {@link WurstParser} and error handler, so the workers share no state.
+ * Errors found while parsing are buffered and only reported when the result is taken
+ * with {@link #take(Future, ErrorHandler)}. Hence the order of reported errors only depends
+ * on the order in which the results are taken and not on thread scheduling.
+ */
+public class ParallelParser implements AutoCloseable {
+
+    private final @Nullable ExecutorService executor;
+
+    /**
+     * @param threads the number of worker threads, with 1 or less all jobs are run directly on the calling thread
+     */
+    public ParallelParser(int threads) {
+        if (threads > 1) {
+            AtomicInteger threadNr = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "wurst-parser-" + threadNr.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * A parse job. It must report errors only to the given parser and gui.
+     */
+    @FunctionalInterface
+    public interface ParseJob {
+        CompilationUnit parse(WurstParser parser, WurstGui gui);
+    }
+
+    /**
+     * Starts the given job, possibly on a different thread
+     */
+    public Future<ParsedUnit> submit(ParseJob job) {
+        ExecutorService ex = executor;
+        if (ex == null) {
+            FutureTask<ParsedUnit> task = new FutureTask<>(() -> runJob(job));
+            task.run();
+            return task;
+        }
+        return ex.submit(() -> runJob(job));
+    }
+
+    /**
+     * Waits for the result of a job and reports its buffered errors to the given error handler.
+     */
+    public CompilationUnit take(Future<ParsedUnit> future, ErrorHandler errorHandler) {
+        return await(future).replayErrors(errorHandler);
+    }
+
+    /**
+     * Waits for the result of a job without reporting its errors.
+     * Returns null if the job failed with an exception, the exception is then thrown by {@link #take(Future, ErrorHandler)}.
+     */
+    public @Nullable CompilationUnit peek(Future<ParsedUnit> future) {
+        try {
+            return await(future).cu;
+        } catch (RuntimeException | Error e) {
+            return null;
+        }
+    }
+
+    private static ParsedUnit await(Future<ParsedUnit> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static ParsedUnit runJob(ParseJob job) {
+        BufferedErrorHandler errorHandler = new BufferedErrorHandler();
+        WurstParser parser = new WurstParser(errorHandler, errorHandler.getGui());
+        CompilationUnit cu = job.parse(parser, errorHandler.getGui());
+        return new ParsedUnit(cu, errorHandler);
+    }
+
+    @Override
+    public void close() {
+        ExecutorService ex = executor;
+        if (ex != null) {
+            ex.shutdownNow();
+        }
+    }
+
+    /**
+     * The result of a parse job together with the errors reported while parsing
+     */
+    public static class ParsedUnit {
+        private final CompilationUnit cu;
+        private final BufferedErrorHandler errorHandler;
+
+        ParsedUnit(CompilationUnit cu, BufferedErrorHandler errorHandler) {
+            this.cu = cu;
+            this.errorHandler = errorHandler;
+        }
+
+        CompilationUnit replayErrors(ErrorHandler target) {
+            errorHandler.replay(target);
+            cu.getCuInfo().setCuErrorHandler(target);
+            return cu;
+        }
+    }
+}
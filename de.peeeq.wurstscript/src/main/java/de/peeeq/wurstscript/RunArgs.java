@@ -20,6 +20,8 @@ public class RunArgs {
     private @Nullable String outFile = null;
     private @Nullable String workspaceroot = null;
     private @Nullable String inputmap = null;
+    private @Nullable String profileTrace = null;
+    private @Nullable String profileInterpreter = null;
     private @Nullable int testTimeout = 20;
     private List<RunOption> options = Lists.newArrayList();
     private List<File> libDirs = Lists.newArrayList();
@@ -49,7 +51,13 @@ public class RunArgs {
     private RunOption optionHotStartmap;
     private RunOption optionHotReload;
     private RunOption optionTestTimeout;
+    private RunOption optionNoParseCache;
+    private RunOption optionClosureInterpreter;
     private int functionSplitLimit = 10000;
+    private int parseThreads = 1;
+    private int optimizerThreads = 1;
+    private int testThreads = 1;
+    private long stepLimit = 0;
 
     private RunOption optionBuild;
 
@@ -89,6 +97,7 @@ public class RunArgs {
         optionTestTimeout = addOptionWithArg("testTimeout", "Timeout in seconds after which tests will be cancelled and considered failed, if they did not yet succeed.", arg -> testTimeout = Integer.parseInt(arg));
         optionRunCompileTimeFunctions = addOption("runcompiletimefunctions", "Run all compiletime functions found in the scripts.");
         optionInjectCompiletimeObjects = addOption("injectobjects", "Injects the objects generated by compiletime functions into the map.");
+        optionClosureInterpreter = addOption("closureInterpreter", "Compiles each function to closures before running it in compiletime functions and tests (experimental).");
         // optimization
         optionOpt = addOption("opt", "Enables identifier name compression and whitespace removal.");
         optionInline = addOption("inline", "Enables function inlining.");
@@ -100,6 +109,12 @@ public class RunArgs {
                 + "some programming errors like null-pointer-dereferences or accessing of destroyed objects can no longer be detected. "
                 + "It is strongly recommended to not use this option, but it can give some performance benefits.");
         optionMeasureTimes = addOption("measure", "Measure how long each step of the translation process takes.");
+        addOptionWithArg("profileTrace", "Measures the translation process and writes the measurements to the given file in the Chrome trace event format.",
+            arg -> profileTrace = arg);
+        addOptionWithArg("profileInterpreter", "Measures which functions take time when running compiletime functions and tests. "
+                + "Writes collapsed stacks (for flame graph tools) to the given file and a summary to the same file with the extension .report.txt. "
+                + "The profile of the tests is written to a file with .tests before the extension.",
+            arg -> profileInterpreter = arg);
         // tools
         optionAbout = addOption("-about", "Show the 'about' window.");
         optionFixInstall = addOption("-fixInstallation", "Checks your wc3 installation and applies compatibility fixes");
@@ -121,6 +136,7 @@ public class RunArgs {
 
         optionHelp = addOption("help", "Prints this help message.");
         optionDisablePjass = addOption("noPJass", "Disables PJass checks for the generated code.");
+        optionNoParseCache = addOption("noParseCache", "Do not use the parse cache in _build/parsecache for library and dependency files.");
         optionHotStartmap = addOption("hotstart", "Uses Jass Hot Code Reload (JHCR) to start the map.");
         optionHotReload = addOption("hotreload", "Reloads the mapscript after running the map with Jass Hot Code Reload (JHCR).");
 
@@ -131,6 +147,15 @@ public class RunArgs {
 
         addOptionWithArg("functionSplitLimit", "The maximum number of operations in a function before it is split by the function splitter (used for compiletime functions)",
             s -> functionSplitLimit = Integer.parseInt(s, 10));
+        addOptionWithArg("parseThreads", "The number of threads used for parsing source files (default: 1, parses sequentially).",
+            s -> parseThreads = Integer.parseInt(s, 10));
+        addOptionWithArg("optimizerThreads", "The number of threads used for optimizing independent functions with the local optimizations (default: 1, optimizes sequentially).",
+            s -> optimizerThreads = Integer.parseInt(s, 10));
+        addOptionWithArg("testThreads", "The number of threads used for running unit tests (default: 1, runs tests sequentially). Each thread runs its tests with its own copy of the interpreter state.",
+            s -> testThreads = Integer.parseInt(s, 10));
+        addOptionWithArg("stepLimit", "Stops each compiletime function and each test after the given number of steps (function calls and loop iterations) and reports it as failed. "
+                + "Unlike the test timeout, this does not depend on the speed of the machine (default: 0, no limit).",
+            s -> stepLimit = Long.parseLong(s, 10));
 
         nextArg:
         for (int i = 0; i < args.length; i++) {
@@ -318,6 +343,14 @@ public class RunArgs {
         return optionDisablePjass.isSet;
     }
 
+    public boolean isNoParseCache() {
+        return optionNoParseCache.isSet;
+    }
+
+    public boolean isClosureInterpreter() {
+        return optionClosureInterpreter.isSet;
+    }
+
     public boolean isRunTests() {
         return optionRuntests.isSet;
     }
@@ -327,7 +360,15 @@ public class RunArgs {
     }
 
     public boolean isMeasureTimes() {
-        return optionMeasureTimes.isSet;
+        return optionMeasureTimes.isSet || profileTrace != null;
+    }
+
+    public @Nullable String getProfileTrace() {
+        return profileTrace;
+    }
+
+    public @Nullable String getProfileInterpreter() {
+        return profileInterpreter;
     }
 
     public boolean isHotStartmap() {
@@ -359,4 +400,20 @@ public class RunArgs {
         return functionSplitLimit;
     }
 
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public int getOptimizerThreads() {
+        return optimizerThreads;
+    }
+
+    public int getTestThreads() {
+        return testThreads;
+    }
+
+    public long getStepLimit() {
+        return stepLimit;
+    }
+
 }
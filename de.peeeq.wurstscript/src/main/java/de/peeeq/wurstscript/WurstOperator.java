@@ -133,7 +133,7 @@ public enum WurstOperator {
             case OR:
                 return ILconstBool.instance(((ILconstBool) left).getVal() || ((ILconstBool) right.get()).getVal());
             case DIV_INT:
-                return new ILconstInt(((ILconstInt) left).getVal() / ((ILconstInt) right.get()).getVal());
+                return ILconstInt.create(((ILconstInt) left).getVal() / ((ILconstInt) right.get()).getVal());
             case DIV_REAL:
                 return new ILconstReal(getReal(left) / getReal(right.get()));
             case EQ:
@@ -154,7 +154,7 @@ public enum WurstOperator {
                 if (r < 0) {
                     r += right2;
                 }
-                return new ILconstInt(r);
+                return ILconstInt.create(r);
             }
             case MOD_REAL: {
                 float right2 = getReal(right.get());
@@ -178,6 +178,49 @@ public enum WurstOperator {
 
     }
 
+    /**
+     * evaluates a binary operator, which is not lazy (see {@link #isLazy()}).
+     * Operations on two integers are computed directly without going through the generic implementation.
+     */
+    public ILconst evaluateBinaryOperator(ILconst left, ILconst right) {
+        if (left instanceof ILconstInt && right instanceof ILconstInt) {
+            int l = ((ILconstInt) left).getVal();
+            int r = ((ILconstInt) right).getVal();
+            switch (this) {
+                case PLUS:
+                    return ILconstInt.create(l + r);
+                case MINUS:
+                    return ILconstInt.create(l - r);
+                case MULT:
+                    return ILconstInt.create(l * r);
+                case DIV_INT:
+                    return ILconstInt.create(l / r);
+                case MOD_INT: {
+                    int res = l % r;
+                    if (res < 0) {
+                        res += r;
+                    }
+                    return ILconstInt.create(res);
+                }
+                case EQ:
+                    return ILconstBool.instance(l == r);
+                case NOTEQ:
+                    return ILconstBool.instance(l != r);
+                case LESS:
+                    return ILconstBool.instance(l < r);
+                case LESS_EQ:
+                    return ILconstBool.instance(l <= r);
+                case GREATER:
+                    return ILconstBool.instance(l > r);
+                case GREATER_EQ:
+                    return ILconstBool.instance(l >= r);
+                default:
+                    break;
+            }
+        }
+        return evaluateBinaryOperator(left, () -> right);
+    }
+
     private static float getReal(ILconst c) {
         if (c instanceof ILconstReal) {
             return ((ILconstReal) c).getVal();
@@ -35,6 +35,10 @@ public class WurstParser {
         this.gui = gui;
     }
 
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
     public CompilationUnit parse(Reader reader, String source, boolean hasCommonJ) {
         try (java.util.Scanner s = new java.util.Scanner(reader)) {
             s.useDelimiter("\\A");
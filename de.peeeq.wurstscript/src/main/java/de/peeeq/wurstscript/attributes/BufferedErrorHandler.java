@@ -0,0 +1,62 @@
+package de.peeeq.wurstscript.attributes;
+
+import de.peeeq.wurstscript.gui.WurstGui;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * An error handler which does not show errors immediately but buffers them,
+ * so that they can be reported later with {@link #replay(ErrorHandler)}.
+ * <p>
+ * This is used for work done on other threads: the errors are replayed
+ * in a fixed order, so the reported errors do not depend on thread scheduling.
+ */
+public class BufferedErrorHandler extends ErrorHandler {
+    private final Set<CompileError> sentViaHandler = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public BufferedErrorHandler() {
+        super(new BufferingGui());
+    }
+
+    @Override
+    public synchronized void sendError(CompileError err) {
+        sentViaHandler.add(err);
+        super.sendError(err);
+    }
+
+    /**
+     * Reports all buffered errors to the given error handler, in the order in which they were sent.
+     * Errors which were sent directly to the gui are sent directly to the gui of the target.
+     */
+    public synchronized void replay(ErrorHandler target) {
+        for (CompileError err : getGui().getErrorsAndWarnings()) {
+            if (sentViaHandler.contains(err)) {
+                target.sendError(err);
+            } else {
+                target.getGui().sendError(err);
+            }
+        }
+    }
+
+    private static class BufferingGui extends WurstGui {
+        @Override
+        public synchronized void sendError(CompileError err) {
+            super.sendError(err);
+        }
+
+        @Override
+        public void sendProgress(String whatsRunningNow) {
+            // progress is reported by the thread replaying the errors
+        }
+
+        @Override
+        public void sendFinished() {
+        }
+
+        @Override
+        public void showInfoMessage(String message) {
+        }
+    }
+}
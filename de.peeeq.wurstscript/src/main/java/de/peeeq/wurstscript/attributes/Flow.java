@@ -183,10 +183,13 @@ public class Flow {
     }
 
 
-    private static int lastUsedIndex = 0;
+    // the index of the last statement, per thread, because several projects can be checked concurrently
+    private static final ThreadLocal<int[]> lastUsedIndexHolder = ThreadLocal.withInitial(() -> new int[1]);
 
     public static int getListIndex(WStatement s) {
         WStatements parent = (WStatements) s.getParent();
+        int[] holder = lastUsedIndexHolder.get();
+        int lastUsedIndex = holder[0];
         int r;
         if (get(parent, lastUsedIndex) == s) {
             r = lastUsedIndex;
@@ -197,7 +200,7 @@ public class Flow {
         } else {
             r = parent.indexOf(s);
         }
-        lastUsedIndex = r;
+        holder[0] = r;
         return r;
     }
 
@@ -1,14 +1,22 @@
 package de.peeeq.wurstscript.intermediatelang;
 
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public class ILconstArray extends ILconstAbstract {
 
-    private final Map<Integer, ILconst> values = new TreeMap<>(); // including the quotes
+    // indexes below this limit are stored in a growable dense array, larger indexes in a sorted map
+    private static final int DENSE_LIMIT = 1 << 16;
+    private static final ILconst[] EMPTY = new ILconst[0];
+
+    private @Nullable ILconst[] dense = EMPTY;
+    private @Nullable TreeMap<Integer, ILconst> sparse;
     private final int size;
     private final Supplier<ILconst> defaultValue;
 
@@ -21,14 +29,14 @@ public class ILconstArray extends ILconstAbstract {
     public String print() {
         StringBuilder s = new StringBuilder();
         s.append("[");
-        for (Map.Entry<Integer, ILconst> e : values.entrySet()) {
+        forEach((value, index) -> {
             if (s.length() > 1) {
                 s.append(", ");
             }
-            s.append(e.getKey());
+            s.append(index);
             s.append(": ");
-            s.append(e.getValue());
-        }
+            s.append(value);
+        });
         s.append("]");
         return s.toString();
     }
@@ -40,7 +48,26 @@ public class ILconstArray extends ILconstAbstract {
     }
 
     public void set(int index, ILconst value) {
-        values.put(index, value);
+        if (index >= 0 && index < DENSE_LIMIT) {
+            if (index >= dense.length) {
+                grow(index);
+            }
+            dense[index] = value;
+        } else {
+            TreeMap<Integer, ILconst> sparse = this.sparse;
+            if (sparse == null) {
+                sparse = this.sparse = new TreeMap<>();
+            }
+            sparse.put(index, value);
+        }
+    }
+
+    private void grow(int index) {
+        int newLength = Math.min(Math.max(dense.length * 2, 16), Math.min(size, DENSE_LIMIT));
+        newLength = Math.max(newLength, index + 1);
+        ILconst[] newDense = new ILconst[newLength];
+        System.arraycopy(dense, 0, newDense, 0, dense.length);
+        dense = newDense;
     }
 
     public ILconst get(int index) {
@@ -49,7 +76,55 @@ public class ILconstArray extends ILconstAbstract {
         if (index >= size)
             throw new InterpreterException("Array index " + index + " must be smaller than array size " + size);
 
-        return values.computeIfAbsent(index, i -> defaultValue.get());
+        ILconst r = getIfPresent(index);
+        if (r == null) {
+            r = defaultValue.get();
+            set(index, r);
+        }
+        return r;
+    }
+
+    /**
+     * returns the value at the given index or null if no value was stored at that index yet
+     */
+    public @Nullable ILconst getIfPresent(int index) {
+        if (index >= 0 && index < DENSE_LIMIT) {
+            return index < dense.length ? dense[index] : null;
+        }
+        TreeMap<Integer, ILconst> sparse = this.sparse;
+        return sparse == null ? null : sparse.get(index);
+    }
+
+    /**
+     * returns a new array with the same size and default values, which contains a copy of each stored value
+     */
+    public ILconstArray copy(UnaryOperator<ILconst> copyValue) {
+        ILconstArray res = new ILconstArray(size, defaultValue);
+        forEach((value, index) -> res.set(index, copyValue.apply(value)));
+        return res;
+    }
+
+    /**
+     * calls the consumer for all stored values in the order of their indexes
+     */
+    public void forEach(ObjIntConsumer<ILconst> consumer) {
+        TreeMap<Integer, ILconst> sparse = this.sparse;
+        if (sparse != null) {
+            for (Map.Entry<Integer, ILconst> e : sparse.headMap(0).entrySet()) {
+                consumer.accept(e.getValue(), e.getKey());
+            }
+        }
+        for (int i = 0; i < dense.length; i++) {
+            ILconst v = dense[i];
+            if (v != null) {
+                consumer.accept(v, i);
+            }
+        }
+        if (sparse != null) {
+            for (Map.Entry<Integer, ILconst> e : sparse.tailMap(0).entrySet()) {
+                consumer.accept(e.getValue(), e.getKey());
+            }
+        }
     }
 
 }
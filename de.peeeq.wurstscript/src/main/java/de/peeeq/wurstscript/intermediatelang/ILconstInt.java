@@ -7,7 +7,18 @@ import java.util.Objects;
 
 public class ILconstInt extends ILconstAbstract implements ILconstNum {
 
-    private int val;
+    // small values are shared, because they are used very often (for example as loop counters and array indexes)
+    private static final int CACHE_MIN = -128;
+    private static final int CACHE_MAX = 8191;
+    private static final ILconstInt[] cache = new ILconstInt[CACHE_MAX - CACHE_MIN + 1];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new ILconstInt(CACHE_MIN + i);
+        }
+    }
+
+    private final int val;
 
     public ILconstInt(int intVal) {
         this.val = intVal;
@@ -29,6 +40,9 @@ public class ILconstInt extends ILconstAbstract implements ILconstNum {
     }
 
     public static ILconstInt create(int i) {
+        if (i >= CACHE_MIN && i <= CACHE_MAX) {
+            return cache[i - CACHE_MIN];
+        }
         return new ILconstInt(i);
     }
 
@@ -3,23 +3,37 @@ package de.peeeq.wurstscript.intermediatelang;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import de.peeeq.wurstscript.ast.Element;
+import de.peeeq.wurstscript.intermediatelang.interpreter.FrameLayout;
 import de.peeeq.wurstscript.jassIm.ImClass;
 import de.peeeq.wurstscript.jassIm.ImClassType;
 import de.peeeq.wurstscript.jassIm.ImVar;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public class ILconstObject extends ILconstAbstract {
     private final ImClassType classType;
     private final int objectId;
-    private final Table<ImVar, List<Integer>, ILconst> attributes = HashBasedTable.create();
+    private final FrameLayout layout;
+    // values of fields without indexes, by slot in the layout of the class
+    private final @Nullable ILconst[] fieldValues;
+    // values of array fields with a single index, by slot in the layout of the class
+    private @Nullable ILconstArray[] fieldArrays;
+    // fields which are not part of the layout or which use several indexes
+    private @Nullable Table<ImVar, List<Integer>, ILconst> otherAttributes;
     private boolean destroyed = false;
     private final Element trace;
 
-    public ILconstObject(ImClassType classType, int objectId, Element trace) {
+    /**
+     * @param layout the layout of the fields of the class, see {@link FrameLayout#forClass(ImClass)}
+     */
+    public ILconstObject(ImClassType classType, int objectId, Element trace, FrameLayout layout) {
         this.classType = classType;
         this.objectId = objectId;
         this.trace = trace;
+        this.layout = layout;
+        this.fieldValues = new ILconst[layout.size()];
     }
 
     public int getObjectId() {
@@ -39,14 +53,60 @@ public class ILconstObject extends ILconstAbstract {
     }
 
     public void set(ImVar attr, List<Integer> indexes, ILconst value) {
-        attributes.put(attr, indexes, value);
+        int slot = layout.slotOf(attr);
+        if (slot >= 0 && indexes.isEmpty()) {
+            fieldValues[slot] = value;
+        } else if (slot >= 0 && indexes.size() == 1) {
+            ILconstArray[] arrays = fieldArrays;
+            if (arrays == null) {
+                arrays = fieldArrays = new ILconstArray[layout.size()];
+            }
+            ILconstArray ar = arrays[slot];
+            if (ar == null) {
+                // missing values are handled by the caller, so the array never creates default values
+                ar = arrays[slot] = new ILconstArray(Integer.MAX_VALUE, ILconstNull::instance);
+            }
+            ar.set(indexes.get(0), value);
+        } else {
+            Table<ImVar, List<Integer>, ILconst> other = otherAttributes;
+            if (other == null) {
+                other = otherAttributes = HashBasedTable.create();
+            }
+            other.put(attr, indexes, value);
+        }
     }
 
     public Optional<ILconst> get(ImVar attr, List<Integer> indexes) {
-        return Optional.ofNullable(attributes.get(attr, indexes));
+        int slot = layout.slotOf(attr);
+        if (slot >= 0 && indexes.isEmpty()) {
+            return Optional.ofNullable(fieldValues[slot]);
+        } else if (slot >= 0 && indexes.size() == 1) {
+            ILconstArray[] arrays = fieldArrays;
+            ILconstArray ar = arrays == null ? null : arrays[slot];
+            return ar == null ? Optional.empty() : Optional.ofNullable(ar.getIfPresent(indexes.get(0)));
+        }
+        Table<ImVar, List<Integer>, ILconst> other = otherAttributes;
+        return other == null ? Optional.empty() : Optional.ofNullable(other.get(attr, indexes));
     }
 
 
+    /**
+     * creates an object with the same class and id, which has no field values yet
+     */
+    public ILconstObject copyWithoutFields() {
+        ILconstObject res = new ILconstObject(classType, objectId, trace, layout);
+        res.destroyed = destroyed;
+        return res;
+    }
+
+    /**
+     * stores a copy of each field value of the given object in this object
+     */
+    public void copyFieldsFrom(ILconstObject other, UnaryOperator<ILconst> copyValue) {
+        other.getAttributes().cellSet().forEach(cell ->
+            set(cell.getRowKey(), cell.getColumnKey(), copyValue.apply(cell.getValue())));
+    }
+
     public boolean isDestroyed() {
         return destroyed;
     }
@@ -72,7 +132,26 @@ public class ILconstObject extends ILconstAbstract {
         return objectId;
     }
 
+    /**
+     * returns all field values of this object, indexed by field and array indexes
+     */
     public Table<ImVar, List<Integer>, ILconst> getAttributes() {
-        return attributes;
+        Table<ImVar, List<Integer>, ILconst> result = HashBasedTable.create();
+        for (int slot = 0; slot < layout.size(); slot++) {
+            ImVar v = layout.getVar(slot);
+            ILconst value = fieldValues[slot];
+            if (value != null) {
+                result.put(v, Collections.emptyList(), value);
+            }
+            ILconstArray[] arrays = fieldArrays;
+            ILconstArray ar = arrays == null ? null : arrays[slot];
+            if (ar != null) {
+                ar.forEach((elem, index) -> result.put(v, Collections.singletonList(index), elem));
+            }
+        }
+        if (otherAttributes != null) {
+            result.putAll(otherAttributes);
+        }
+        return result;
     }
 }
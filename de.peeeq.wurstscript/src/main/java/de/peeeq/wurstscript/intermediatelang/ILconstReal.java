@@ -7,7 +7,7 @@ import de.peeeq.wurstscript.types.WurstTypeReal;
 
 public class ILconstReal extends ILconstAbstract implements ILconstNum {
 
-    private float val;
+    private final float val;
 
     public ILconstReal(String numVal) {
         this.val = Float.parseFloat(numVal);
@@ -58,6 +58,10 @@ public class ILconstTuple extends ILconstAbstract {
         return values[index];
     }
 
+    public int size() {
+        return values.length;
+    }
+
     public List<ILconst> values() {
         return ImmutableList.copyOf(values);
     }
@@ -0,0 +1,400 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstio.jassinterpreter.InterpreterException;
+import de.peeeq.wurstio.jassinterpreter.VarargArray;
+import de.peeeq.wurstscript.WurstOperator;
+import de.peeeq.wurstscript.intermediatelang.*;
+import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.jassinterpreter.ExitwhenException;
+import de.peeeq.wurstscript.jassinterpreter.ReturnException;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles the body of a function into a tree of closures.
+ * <p>
+ * Running the closures gives the same results as running the function with {@link RunStatement} and
+ * {@link EvaluateExpr}, but the kind of each element is only inspected once, constants are only created once,
+ * and exitwhen and return statements are implemented with status codes instead of exceptions.
+ * Expressions without a specialized closure are evaluated with {@link ImExpr#evaluate}.
+ */
+public class ClosureCompiler {
+
+    /**
+     * the statement completed normally
+     */
+    static final int NORMAL = 0;
+    /**
+     * an exitwhen statement left the innermost loop
+     */
+    static final int EXIT = 1;
+    /**
+     * a return statement was executed, the return value is stored in the local state
+     */
+    static final int RETURN = 2;
+
+    @FunctionalInterface
+    interface CompiledStmt {
+        int run(ProgramState globalState, LocalState localState);
+    }
+
+    @FunctionalInterface
+    interface CompiledExpr {
+        @Nullable ILconst eval(ProgramState globalState, LocalState localState);
+    }
+
+    /**
+     * The compiled body of a function.
+     */
+    public static class CompiledFunction {
+        private final CompiledStmt body;
+
+        private CompiledFunction(CompiledStmt body) {
+            this.body = body;
+        }
+
+        /**
+         * runs the function body and returns true, if the function returned a value.
+         * The value is then stored in the local state.
+         */
+        public boolean run(ProgramState globalState, LocalState localState) {
+            int status;
+            try {
+                status = body.run(globalState, localState);
+            } catch (ReturnException e) {
+                // return statement in an expression, which was evaluated without closures
+                localState.setReturnVal(e.getVal());
+                return true;
+            }
+            if (status == EXIT) {
+                throw ExitwhenException.instance();
+            }
+            return status == RETURN;
+        }
+    }
+
+    public static CompiledFunction compile(ImFunction f) {
+        return new CompiledFunction(compileBlock(f.getBody()));
+    }
+
+    private static CompiledStmt compileBlock(ImStmts stmts) {
+        ImStmt[] elements = new ImStmt[stmts.size()];
+        CompiledStmt[] code = new CompiledStmt[stmts.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = stmts.get(i);
+            code[i] = compileStmt(elements[i]);
+        }
+        return (globalState, localState) -> {
+            for (int i = 0; i < code.length; i++) {
+                globalState.setLastStatement(elements[i]);
+                int status = code[i].run(globalState, localState);
+                if (status != NORMAL) {
+                    return status;
+                }
+            }
+            return NORMAL;
+        };
+    }
+
+    private static CompiledStmt compileStmt(ImStmt s) {
+        if (s instanceof ImIf) {
+            return compileIf((ImIf) s);
+        } else if (s instanceof ImLoop) {
+            return compileLoop((ImLoop) s);
+        } else if (s instanceof ImExitwhen) {
+            CompiledExpr cond = compileExpr(((ImExitwhen) s).getCondition());
+            return (globalState, localState) ->
+                ((ILconstBool) cond.eval(globalState, localState)).getVal() ? EXIT : NORMAL;
+        } else if (s instanceof ImReturn) {
+            return compileReturn((ImReturn) s);
+        } else if (s instanceof ImSet) {
+            return compileSet((ImSet) s);
+        } else if (s instanceof ImVarargLoop) {
+            return compileVarargLoop((ImVarargLoop) s);
+        } else if (s instanceof ImExpr) {
+            CompiledExpr e = compileExpr((ImExpr) s);
+            return (globalState, localState) -> {
+                e.eval(globalState, localState);
+                return NORMAL;
+            };
+        }
+        throw new InterpreterException(s.attrTrace(), "Cannot compile statement " + s);
+    }
+
+    private static CompiledStmt compileIf(ImIf s) {
+        CompiledExpr cond = compileExpr(s.getCondition());
+        CompiledStmt thenBlock = compileBlock(s.getThenBlock());
+        CompiledStmt elseBlock = compileBlock(s.getElseBlock());
+        return (globalState, localState) -> {
+            if (((ILconstBool) cond.eval(globalState, localState)).getVal()) {
+                return thenBlock.run(globalState, localState);
+            } else {
+                return elseBlock.run(globalState, localState);
+            }
+        };
+    }
+
+    private static CompiledStmt compileLoop(ImLoop s) {
+        CompiledStmt body = compileBlock(s.getBody());
+        return (globalState, localState) -> {
+            try {
+                while (true) {
+                    globalState.countStep();
+                    int status = body.run(globalState, localState);
+                    if (status == EXIT) {
+                        return NORMAL;
+                    } else if (status == RETURN) {
+                        return RETURN;
+                    }
+                }
+            } catch (ExitwhenException e) {
+                // exitwhen in an expression, which was evaluated without closures
+                return NORMAL;
+            }
+        };
+    }
+
+    private static CompiledStmt compileReturn(ImReturn s) {
+        if (s.getReturnValue() instanceof ImExpr) {
+            CompiledExpr e = compileExpr((ImExpr) s.getReturnValue());
+            return (globalState, localState) -> {
+                localState.setReturnVal(e.eval(globalState, localState));
+                return RETURN;
+            };
+        }
+        return (globalState, localState) -> {
+            localState.setReturnVal(null);
+            return RETURN;
+        };
+    }
+
+    private static CompiledStmt compileSet(ImSet s) {
+        ImLExpr left = s.getLeft();
+        CompiledExpr right = compileExpr(s.getRight());
+        if (left instanceof ImVarAccess) {
+            ImVar v = ((ImVarAccess) left).getVar();
+            if (v.isGlobal()) {
+                return (globalState, localState) -> {
+                    globalState.setVal(v, right.eval(globalState, localState));
+                    return NORMAL;
+                };
+            }
+            return (globalState, localState) -> {
+                localState.setVal(v, right.eval(globalState, localState));
+                return NORMAL;
+            };
+        } else if (left instanceof ImVarArrayAccess) {
+            ImVar v = ((ImVarArrayAccess) left).getVar();
+            CompiledExpr[] indexes = compileExprs(((ImVarArrayAccess) left).getIndexes());
+            boolean isGlobal = v.isGlobal();
+            return (globalState, localState) -> {
+                List<Integer> indexValues = evalIndexes(indexes, globalState, localState);
+                ILconst value = right.eval(globalState, localState);
+                State state = isGlobal ? globalState : localState;
+                state.setArrayVal(v, indexValues, value);
+                return NORMAL;
+            };
+        }
+        return (globalState, localState) -> {
+            ILaddress address = left.evaluateLvalue(globalState, localState);
+            address.set(right.eval(globalState, localState));
+            return NORMAL;
+        };
+    }
+
+    private static CompiledStmt compileVarargLoop(ImVarargLoop loop) {
+        ImFunction func = loop.getNearestFunc();
+        ImVar varargParam = func.getParameters().get(func.getParameters().size() - 1);
+        ImVar loopVar = loop.getLoopVar();
+        CompiledStmt body = compileBlock(loop.getBody());
+        return (globalState, localState) -> {
+            VarargArray val = (VarargArray) localState.getVal(varargParam);
+            for (int i = 0; i < val.size(); i++) {
+                localState.setVal(loopVar, val.get(i));
+                int status = body.run(globalState, localState);
+                if (status != NORMAL) {
+                    return status;
+                }
+            }
+            return NORMAL;
+        };
+    }
+
+    private static CompiledExpr[] compileExprs(List<ImExpr> exprs) {
+        CompiledExpr[] res = new CompiledExpr[exprs.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = compileExpr(exprs.get(i));
+        }
+        return res;
+    }
+
+    private static CompiledExpr compileExpr(ImExpr e) {
+        if (e instanceof ImIntVal || e instanceof ImRealVal || e instanceof ImStringVal
+            || e instanceof ImBoolVal || e instanceof ImNull) {
+            // constants are immutable, so they can be shared by all evaluations
+            ILconst value = constantValue(e);
+            return (globalState, localState) -> value;
+        } else if (e instanceof ImVarAccess) {
+            return compileVarAccess((ImVarAccess) e);
+        } else if (e instanceof ImVarArrayAccess) {
+            return compileVarArrayAccess((ImVarArrayAccess) e);
+        } else if (e instanceof ImOperatorCall) {
+            return compileOperatorCall((ImOperatorCall) e);
+        } else if (e instanceof ImFunctionCall) {
+            ImFunctionCall call = (ImFunctionCall) e;
+            ImFunction f = call.getFunc();
+            CompiledExpr[] args = compileExprs(call.getArguments());
+            return (globalState, localState) ->
+                ILInterpreter.runFunc(globalState, f, call, evalArgs(args, 0, globalState, localState)).getReturnVal();
+        } else if (e instanceof ImMethodCall) {
+            return compileMethodCall((ImMethodCall) e);
+        } else if (e instanceof ImStatementExpr) {
+            return compileStatementExpr((ImStatementExpr) e);
+        } else if (e instanceof ImTupleExpr) {
+            CompiledExpr[] exprs = compileExprs(((ImTupleExpr) e).getExprs());
+            return (globalState, localState) -> new ILconstTuple(evalArgs(exprs, 0, globalState, localState));
+        } else if (e instanceof ImTupleSelection) {
+            ImTupleSelection ts = (ImTupleSelection) e;
+            CompiledExpr tupleExpr = compileExpr(ts.getTupleExpr());
+            int tupleIndex = ts.getTupleIndex();
+            return (globalState, localState) -> {
+                ILconst tupleE = tupleExpr.eval(globalState, localState);
+                if (!(tupleE instanceof ILconstTuple)) {
+                    throw new InterpreterException(globalState, "Tuple " + ts + " evaluated to " + tupleE);
+                }
+                ILconstTuple t = (ILconstTuple) tupleE;
+                if (tupleIndex >= t.values().size()) {
+                    throw new InterpreterException(globalState, "Trying to get element " + tupleIndex + " of tuple value " + t);
+                }
+                return t.getValue(tupleIndex);
+            };
+        }
+        return e::evaluate;
+    }
+
+    private static ILconst constantValue(ImExpr e) {
+        if (e instanceof ImIntVal) {
+            return ILconstInt.create(((ImIntVal) e).getValI());
+        } else if (e instanceof ImRealVal) {
+            return ((ImRealVal) e).attrConstantValue();
+        } else if (e instanceof ImStringVal) {
+            return ((ImStringVal) e).attrConstantValue();
+        } else if (e instanceof ImBoolVal) {
+            return ILconstBool.instance(((ImBoolVal) e).getValB());
+        } else if (e instanceof ImNull) {
+            return EvaluateExpr.nullValue(((ImNull) e).getType());
+        }
+        throw new InterpreterException(e.attrTrace(), "Not a constant: " + e);
+    }
+
+    private static CompiledExpr compileVarAccess(ImVarAccess e) {
+        ImVar v = e.getVar();
+        if (v.isGlobal()) {
+            if (EvaluateExpr.isMagicCompiletimeConstant(v)) {
+                return (globalState, localState) -> ILconstBool.instance(globalState.isCompiletime());
+            }
+            return (globalState, localState) -> {
+                ILconst r = globalState.getVal(v);
+                if (r != null) {
+                    return r;
+                }
+                // initializes the variable or reports the error
+                return EvaluateExpr.eval(e, globalState, localState);
+            };
+        }
+        return (globalState, localState) -> {
+            ILconst r = localState.getVal(v);
+            if (r != null) {
+                return r;
+            }
+            return EvaluateExpr.notNull(null, v.getType(), "Local variable " + v + " is null.", true);
+        };
+    }
+
+    private static CompiledExpr compileVarArrayAccess(ImVarArrayAccess e) {
+        ImVar v = e.getVar();
+        CompiledExpr[] indexes = compileExprs(e.getIndexes());
+        boolean isGlobal = v.isGlobal();
+        return (globalState, localState) -> {
+            State state = isGlobal ? globalState : localState;
+            ILconst r = state.getArrayVal(v, evalIndexes(indexes, globalState, localState));
+            if (r != null) {
+                return r;
+            }
+            return EvaluateExpr.notNull(null, v.getType(), "Variable " + v.getName() + " is null.", false);
+        };
+    }
+
+    private static CompiledExpr compileOperatorCall(ImOperatorCall e) {
+        WurstOperator op = e.getOp();
+        ImExprs arguments = e.getArguments();
+        if (arguments.size() == 2 && op.isBinaryOp()) {
+            CompiledExpr left = compileExpr(arguments.get(0));
+            CompiledExpr right = compileExpr(arguments.get(1));
+            if (op.isLazy()) {
+                return (globalState, localState) ->
+                    op.evaluateBinaryOperator(left.eval(globalState, localState), () -> right.eval(globalState, localState));
+            }
+            return (globalState, localState) -> {
+                ILconst l = left.eval(globalState, localState);
+                return op.evaluateBinaryOperator(l, right.eval(globalState, localState));
+            };
+        } else if (arguments.size() == 1 && op.isUnaryOp()) {
+            CompiledExpr arg = compileExpr(arguments.get(0));
+            return (globalState, localState) -> op.evaluateUnaryOperator(arg.eval(globalState, localState));
+        }
+        return e::evaluate;
+    }
+
+    private static CompiledExpr compileMethodCall(ImMethodCall mc) {
+        CompiledExpr receiverExpr = compileExpr(mc.getReceiver());
+        CompiledExpr[] args = compileExprs(mc.getArguments());
+        return (globalState, localState) -> {
+            ILconstObject receiver = globalState.toObject(receiverExpr.eval(globalState, localState));
+            globalState.assertAllocated(receiver, mc.attrTrace());
+            ImFunction implementation = EvaluateExpr.findImplementation(mc, receiver, globalState);
+            ILconst[] eargs = evalArgs(args, 1, globalState, localState);
+            eargs[0] = receiver;
+            return ILInterpreter.runFunc(globalState, implementation, mc, eargs).getReturnVal();
+        };
+    }
+
+    private static CompiledExpr compileStatementExpr(ImStatementExpr e) {
+        CompiledStmt statements = compileBlock(e.getStatements());
+        CompiledExpr expr = compileExpr(e.getExpr());
+        return (globalState, localState) -> {
+            int status = statements.run(globalState, localState);
+            if (status == EXIT) {
+                throw ExitwhenException.instance();
+            } else if (status == RETURN) {
+                throw new ReturnException(localState.getReturnVal());
+            }
+            return expr.eval(globalState, localState);
+        };
+    }
+
+    /**
+     * evaluates the given expressions into a new array, starting at the given offset
+     */
+    private static ILconst[] evalArgs(CompiledExpr[] exprs, int offset, ProgramState globalState, LocalState localState) {
+        ILconst[] res = new ILconst[offset + exprs.length];
+        for (int i = 0; i < exprs.length; i++) {
+            res[offset + i] = exprs[i].eval(globalState, localState);
+        }
+        return res;
+    }
+
+    private static List<Integer> evalIndexes(CompiledExpr[] indexes, ProgramState globalState, LocalState localState) {
+        if (indexes.length == 1) {
+            return Collections.singletonList(((ILconstInt) indexes[0].eval(globalState, localState)).getVal());
+        }
+        Integer[] res = new Integer[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            res[i] = ((ILconstInt) indexes[i].eval(globalState, localState)).getVal();
+        }
+        return Arrays.asList(res);
+    }
+}
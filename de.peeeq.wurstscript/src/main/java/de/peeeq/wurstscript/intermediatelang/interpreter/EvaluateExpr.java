@@ -12,6 +12,7 @@ import de.peeeq.wurstscript.types.TypesHelper;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -48,14 +49,18 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImIntVal e, ProgramState globalState, LocalState localState) {
-        return new ILconstInt(e.getValI());
+        return ILconstInt.create(e.getValI());
     }
 
     public static ILconst eval(ImNull e, ProgramState globalState, LocalState localState) {
-        if (e.getType() instanceof ImAnyType
-            || e.getType() instanceof ImClassType
-            || e.getType() instanceof ImTypeVarRef
-            || TypesHelper.isIntType(e.getType())) {
+        return nullValue(e.getType());
+    }
+
+    static ILconst nullValue(ImType type) {
+        if (type instanceof ImAnyType
+            || type instanceof ImClassType
+            || type instanceof ImTypeVarRef
+            || TypesHelper.isIntType(type)) {
             return ILconstInt.create(0);
         }
         return ILconstNull.instance();
@@ -65,7 +70,12 @@ public class EvaluateExpr {
         final ImExprs arguments = e.getArguments();
         WurstOperator op = e.getOp();
         if (arguments.size() == 2 && op.isBinaryOp()) {
-            return op.evaluateBinaryOperator(arguments.get(0).evaluate(globalState, localState), () -> arguments.get(1).evaluate(globalState, localState));
+            if (op.isLazy()) {
+                return op.evaluateBinaryOperator(arguments.get(0).evaluate(globalState, localState), () -> arguments.get(1).evaluate(globalState, localState));
+            }
+            ILconst left = arguments.get(0).evaluate(globalState, localState);
+            ILconst right = arguments.get(1).evaluate(globalState, localState);
+            return op.evaluateBinaryOperator(left, right);
         } else if (arguments.size() == 1 && op.isUnaryOp()) {
             return op.evaluateUnaryOperator(arguments.get(0).evaluate(globalState, localState));
         } else {
@@ -74,9 +84,20 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImRealVal e, ProgramState globalState, LocalState localState) {
+        return e.attrConstantValue();
+    }
+
+    /**
+     * literals are parsed only once, the resulting value is immutable and can be shared
+     */
+    public static ILconstReal constantValue(ImRealVal e) {
         return new ILconstReal(e.getValR());
     }
 
+    public static ILconstString constantValue(ImStringVal e) {
+        return new ILconstString(e.getValS());
+    }
+
     public static ILconst eval(ImStatementExpr e, ProgramState globalState, LocalState localState) {
         e.getStatements().runStatements(globalState, localState);
         return e.getExpr().evaluate(globalState, localState);
@@ -88,7 +109,7 @@ public class EvaluateExpr {
     }
 
     public static ILconst eval(ImStringVal e, ProgramState globalState, LocalState localState) {
-        return new ILconstString(e.getValS());
+        return e.attrConstantValue();
     }
 
     public static ILconst eval(ImTupleExpr e, ProgramState globalState, LocalState localState) {
@@ -136,7 +157,7 @@ public class EvaluateExpr {
         }
     }
 
-    private static boolean isMagicCompiletimeConstant(ImVar var) {
+    static boolean isMagicCompiletimeConstant(ImVar var) {
         if (var.getTrace() instanceof VarDef) {
             VarDef varDef = (VarDef) var.getTrace();
             if (varDef.getName().equals("compiletime")) {
@@ -152,7 +173,7 @@ public class EvaluateExpr {
         return false;
     }
 
-    private static ILconst notNull(@Nullable ILconst val, ImType imType, String msg, boolean failOnErr) {
+    static ILconst notNull(@Nullable ILconst val, ImType imType, String msg, boolean failOnErr) {
         if (val == null) {
             if (failOnErr) {
                 throw new InterpreterException(msg);
@@ -185,7 +206,20 @@ public class EvaluateExpr {
 
         List<ImExpr> args = mc.getArguments();
 
+        ImFunction implementation = findImplementation(mc, receiver, globalState);
+        // execute most precise method
+        ILconst[] eargs = new ILconst[args.size() + 1];
+        eargs[0] = receiver;
+        for (int i = 0; i < args.size(); i++) {
+            eargs[i + 1] = args.get(i).evaluate(globalState, localState);
+        }
+        return evaluateFunc(globalState, implementation, mc, eargs);
+    }
 
+    /**
+     * finds the implementation of the called method for the given receiver
+     */
+    static ImFunction findImplementation(ImMethodCall mc, ILconstObject receiver, ProgramState globalState) {
         ImMethod mostPrecise = mc.getMethod();
 
         // find correct implementation:
@@ -198,13 +232,7 @@ public class EvaluateExpr {
                 }
             }
         }
-        // execute most precise method
-        ILconst[] eargs = new ILconst[args.size() + 1];
-        eargs[0] = receiver;
-        for (int i = 0; i < args.size(); i++) {
-            eargs[i + 1] = args.get(i).evaluate(globalState, localState);
-        }
-        return evaluateFunc(globalState, mostPrecise.getImplementation(), mc, eargs);
+        return mostPrecise.getImplementation();
     }
 
     public static ILconst eval(ImMemberAccess ma, ProgramState globalState, LocalState localState) {
@@ -212,12 +240,23 @@ public class EvaluateExpr {
         if (receiver == null) {
             throw new InterpreterException(ma.getTrace(), "Null pointer dereference");
         }
-        List<Integer> indexes = ma.getIndexes().stream()
-            .map(i -> ((ILconstInt) i.evaluate(globalState, localState)).getVal())
-            .collect(Collectors.toList());
+        List<Integer> indexes = evaluateFieldIndexes(ma.getIndexes(), globalState, localState);
         return receiver.get(ma.getVar(), indexes).orElseGet(() -> ma.attrTyp().defaultValue());
     }
 
+    private static List<Integer> evaluateFieldIndexes(ImExprs indexes, ProgramState globalState, LocalState localState) {
+        switch (indexes.size()) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(((ILconstInt) indexes.get(0).evaluate(globalState, localState)).getVal());
+            default:
+                return indexes.stream()
+                    .map(i -> ((ILconstInt) i.evaluate(globalState, localState)).getVal())
+                    .collect(Collectors.toList());
+        }
+    }
+
     public static ILconst eval(ImAlloc imAlloc, ProgramState globalState,
                                LocalState localState) {
         return globalState.allocate(imAlloc.getClazz(), imAlloc.attrTrace());
@@ -238,13 +277,13 @@ public class EvaluateExpr {
 
     public static ILconst eval(ImTypeIdOfClass e,
                                ProgramState globalState, LocalState localState) {
-        return new ILconstInt(e.getClazz().getClassDef().attrTypeId());
+        return ILconstInt.create(e.getClazz().getClassDef().attrTypeId());
     }
 
     public static ILconst eval(ImTypeIdOfObj e,
                                ProgramState globalState, LocalState localState) {
         ILconstObject obj = globalState.toObject(e.getObj().evaluate(globalState, localState));
-        return new ILconstInt(globalState.getTypeId(obj, e.attrTrace()));
+        return ILconstInt.create(globalState.getTypeId(obj, e.attrTrace()));
     }
 
 
@@ -346,10 +385,7 @@ public class EvaluateExpr {
     public static ILaddress evaluateLvalue(ImMemberAccess va, ProgramState globalState, LocalState localState) {
         ImVar v = va.getVar();
         ILconstObject receiver = globalState.toObject(va.getReceiver().evaluate(globalState, localState));
-        List<Integer> indexes =
-            va.getIndexes().stream()
-                .map(ie -> ((ILconstInt) ie.evaluate(globalState, localState)).getVal())
-                .collect(Collectors.toList());
+        List<Integer> indexes = evaluateFieldIndexes(va.getIndexes(), globalState, localState);
         return new ILaddress() {
             @Override
             public void set(ILconst value) {
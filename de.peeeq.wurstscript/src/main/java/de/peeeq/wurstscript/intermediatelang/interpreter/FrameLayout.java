@@ -0,0 +1,100 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.jassIm.ImClass;
+import de.peeeq.wurstscript.jassIm.ImClassType;
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.jassIm.ImProg;
+import de.peeeq.wurstscript.jassIm.ImVar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns dense slot indices to the variables of a function (or to the global variables or the fields of a class),
+ * so that a {@link State} or an object can store the values in an array.
+ * <p>
+ * The slot is remembered in the variable ({@link ImVar#attrInterpreterSlot()}), so that an access does not
+ * need a hash lookup. Each interpreter creates its own layouts and the variables of a function can change
+ * during optimizations, so the remembered slot is only used after checking it against the layout.
+ */
+public class FrameLayout {
+    static final FrameLayout EMPTY = new FrameLayout(Collections.emptyList());
+
+    private final ImVar[] vars;
+    private final Map<ImVar, Integer> indexes = new HashMap<>();
+
+    private FrameLayout(List<ImVar> vars) {
+        this.vars = vars.toArray(new ImVar[0]);
+        for (int i = 0; i < this.vars.length; i++) {
+            indexes.putIfAbsent(this.vars[i], i);
+        }
+    }
+
+    /**
+     * layout for the parameters and local variables of a function
+     */
+    public static FrameLayout forFunction(ImFunction f) {
+        List<ImVar> vars = new ArrayList<>(f.getParameters().size() + f.getLocals().size());
+        vars.addAll(f.getParameters());
+        vars.addAll(f.getLocals());
+        return new FrameLayout(vars);
+    }
+
+    /**
+     * layout for the global variables of a program
+     */
+    public static FrameLayout forGlobals(ImProg prog) {
+        return new FrameLayout(prog.getGlobals());
+    }
+
+    /**
+     * layout for the fields of an object of the given class.
+     * The fields of super classes come first, so that they get the same slot in all subclasses.
+     */
+    public static FrameLayout forClass(ImClass c) {
+        Set<ImVar> fields = new LinkedHashSet<>();
+        collectFields(c, fields, new HashSet<>());
+        return new FrameLayout(new ArrayList<>(fields));
+    }
+
+    private static void collectFields(ImClass c, Set<ImVar> fields, Set<ImClass> visited) {
+        if (!visited.add(c)) {
+            return;
+        }
+        for (ImClassType sc : c.getSuperClasses()) {
+            collectFields(sc.getClassDef(), fields, visited);
+        }
+        fields.addAll(c.getFields());
+    }
+
+    public int size() {
+        return vars.length;
+    }
+
+    public ImVar getVar(int slot) {
+        return vars[slot];
+    }
+
+    /**
+     * returns the slot of the given variable or -1 if the variable is not part of this layout
+     */
+    public int slotOf(ImVar v) {
+        VarSlot hint = v.attrInterpreterSlot();
+        int slot = hint.index;
+        if (slot >= 0 && slot < vars.length && vars[slot] == v) {
+            return slot;
+        }
+        Integer index = indexes.get(v);
+        if (index == null) {
+            return -1;
+        }
+        hint.index = index;
+        return index;
+    }
+}
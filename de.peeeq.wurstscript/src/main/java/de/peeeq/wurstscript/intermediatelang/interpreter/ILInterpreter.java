@@ -24,7 +24,7 @@ import java.util.stream.Collectors;
 
 public class ILInterpreter implements AbstractInterpreter {
     private ImProg prog;
-    private final ProgramState globalState;
+    private ProgramState globalState;
     private final TimerMockHandler timerMockHandler = new TimerMockHandler();
 
     public ILInterpreter(ImProg prog, WurstGui gui, Optional<File> mapFile, ProgramState globalState) {
@@ -40,9 +40,21 @@ public class ILInterpreter implements AbstractInterpreter {
 
     public static LocalState runFunc(ProgramState globalState, ImFunction f, @Nullable Element caller,
                                      ILconst... args) {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new InterpreterException(globalState, "Execution interrupted");
+        InterpreterProfiler profiler = globalState.getProfiler();
+        if (profiler == null) {
+            return runFuncUnprofiled(globalState, f, caller, args);
         }
+        profiler.enter(f);
+        try {
+            return runFuncUnprofiled(globalState, f, caller, args);
+        } finally {
+            profiler.exit();
+        }
+    }
+
+    private static LocalState runFuncUnprofiled(ProgramState globalState, ImFunction f, @Nullable Element caller,
+                                                ILconst... args) {
+        globalState.countStep();
         try {
             if (f.hasFlag(FunctionFlagEnum.IS_VARARG)) {
                 // for vararg functions, rewrite args and put last argument
@@ -67,15 +79,11 @@ public class ILInterpreter implements AbstractInterpreter {
                 args[i] = adjustTypeOfConstant(args[i], f.getParameters().get(i).getType());
             }
 
-            if (isCompiletimeNative(f)) {
-                return runBuiltinFunction(globalState, f, args);
-            }
-
-            if (f.isNative()) {
+            if (f.isNative() || globalState.isCompiletimeNative(f)) {
                 return runBuiltinFunction(globalState, f, args);
             }
 
-            LocalState localState = new LocalState();
+            LocalState localState = new LocalState(globalState.getFrameLayout(f));
             int i = 0;
             for (ImVar p : f.getParameters()) {
                 localState.setVal(p, args[i]);
@@ -90,14 +98,22 @@ public class ILInterpreter implements AbstractInterpreter {
 
             globalState.pushStackframe(f, args, (caller == null ? f : caller).attrTrace().attrErrorPos());
 
-            try {
-                f.getBody().runStatements(globalState, localState);
-                globalState.popStackframe();
-            } catch (ReturnException e) {
+            if (globalState.isUseClosureCompiler()) {
+                boolean returned = globalState.getCompiledFunction(f).run(globalState, localState);
                 globalState.popStackframe();
-                ILconst retVal = e.getVal();
-                retVal = adjustTypeOfConstant(retVal, f.getReturnType());
-                return localState.setReturnVal(retVal);
+                if (returned) {
+                    return localState.setReturnVal(adjustTypeOfConstant(localState.getReturnVal(), f.getReturnType()));
+                }
+            } else {
+                try {
+                    f.getBody().runStatements(globalState, localState);
+                    globalState.popStackframe();
+                } catch (ReturnException e) {
+                    globalState.popStackframe();
+                    ILconst retVal = e.getVal();
+                    retVal = adjustTypeOfConstant(retVal, f.getReturnType());
+                    return localState.setReturnVal(retVal);
+                }
             }
             if (f.getReturnType() instanceof ImVoid) {
                 return localState;
@@ -153,9 +169,9 @@ public class ILInterpreter implements AbstractInterpreter {
 
     private static LocalState runBuiltinFunction(ProgramState globalState, ImFunction f, ILconst... args) {
         StringBuilder errors = new StringBuilder();
-        for (NativesProvider natives : globalState.getNativeProviders()) {
+        for (LinkedNative natives : globalState.getLinkedNatives(f)) {
             try {
-                return new LocalState(natives.invoke(f.getName(), args));
+                return new LocalState(natives.invoke(args));
             } catch (NoSuchNativeException e) {
                 errors.append("\n").append(e.getMessage());
                 // ignore
@@ -169,7 +185,7 @@ public class ILInterpreter implements AbstractInterpreter {
         return new LocalState(returnValue);
     }
 
-    private static boolean isCompiletimeNative(ImFunction f) {
+    static boolean isCompiletimeNative(ImFunction f) {
         if (f.getTrace() instanceof HasModifier) {
             HasModifier f2 = (HasModifier) f.getTrace();
             for (Modifier m : f2.getModifiers()) {
@@ -218,6 +234,14 @@ public class ILInterpreter implements AbstractInterpreter {
         return globalState;
     }
 
+    /**
+     * Continues with a fresh fork of the given snapshot (see {@link ProgramState#fork}).
+     * Natives and caches of the current state are kept.
+     */
+    public void resetGlobalState(ProgramState snapshot) {
+        globalState = snapshot.fork(globalState);
+    }
+
     public void addNativeProvider(NativesProvider np) {
         globalState.addNativeProvider(np);
     }
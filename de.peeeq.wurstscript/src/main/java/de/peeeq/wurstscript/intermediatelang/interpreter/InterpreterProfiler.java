@@ -0,0 +1,185 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.parser.WPos;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Measures which functions the interpreter spends its time in.
+ * <p>
+ * The profiler records a call tree with the number of calls, the total and self time and the number of
+ * allocated objects for each path of function calls.
+ * The results can be written as a summary per function ({@link #writeReport(Writer)})
+ * or as collapsed stacks ({@link #writeCollapsedStacks(Writer)}), which can be used with flame graph tools
+ * like flamegraph.pl or speedscope.
+ * <p>
+ * A profiler must only be used by one thread. When running on several threads, each thread uses its own profiler
+ * and the results are combined with {@link #merge(InterpreterProfiler)}.
+ */
+public class InterpreterProfiler {
+    private final Node root = new Node(null, null);
+    private Node current = root;
+
+    private static class Node {
+        private final @Nullable Node parent;
+        private final @Nullable ImFunction function;
+        private final Map<ImFunction, Node> children = new LinkedHashMap<>();
+        private long calls;
+        private long totalNanos;
+        private long selfNanos;
+        private long allocations;
+        // only valid while the function is running:
+        private long start;
+        private long childNanos;
+
+        Node(@Nullable Node parent, @Nullable ImFunction function) {
+            this.parent = parent;
+            this.function = function;
+        }
+
+        Node child(ImFunction f) {
+            return children.computeIfAbsent(f, g -> new Node(this, g));
+        }
+    }
+
+    private static class FunctionStats {
+        private final ImFunction function;
+        private long calls;
+        private long totalNanos;
+        private long selfNanos;
+        private long allocations;
+
+        FunctionStats(ImFunction function) {
+            this.function = function;
+        }
+    }
+
+    public void enter(ImFunction f) {
+        Node node = current.child(f);
+        node.calls++;
+        node.childNanos = 0;
+        current = node;
+        node.start = System.nanoTime();
+    }
+
+    public void exit() {
+        Node node = current;
+        Node parent = node.parent;
+        if (parent == null) {
+            // unbalanced exit, for example after the profiler was used by a test which was cancelled
+            return;
+        }
+        long time = System.nanoTime() - node.start;
+        node.totalNanos += time;
+        node.selfNanos += time - node.childNanos;
+        parent.childNanos += time;
+        current = parent;
+    }
+
+    public void countAllocation() {
+        current.allocations++;
+    }
+
+    /**
+     * Adds the measurements of the other profiler to this profiler.
+     */
+    public synchronized void merge(InterpreterProfiler other) {
+        merge(root, other.root);
+    }
+
+    private static void merge(Node into, Node from) {
+        into.calls += from.calls;
+        into.totalNanos += from.totalNanos;
+        into.selfNanos += from.selfNanos;
+        into.allocations += from.allocations;
+        from.children.forEach((f, child) -> merge(into.child(f), child));
+    }
+
+    /**
+     * Writes the collapsed stacks to the given file and the report to a file with the same name and
+     * the extension ".report.txt".
+     */
+    public void writeFiles(File collapsedStacksFile) throws IOException {
+        File dir = collapsedStacksFile.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (Writer out = Files.newBufferedWriter(collapsedStacksFile.toPath(), StandardCharsets.UTF_8)) {
+            writeCollapsedStacks(out);
+        }
+        File reportFile = new File(collapsedStacksFile.getPath() + ".report.txt");
+        try (Writer out = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+            writeReport(out);
+        }
+    }
+
+    /**
+     * Writes one line per call path in the collapsed stack format ("main;foo;bar 123"),
+     * where the number is the self time in microseconds.
+     */
+    public void writeCollapsedStacks(Writer out) throws IOException {
+        for (Node child : root.children.values()) {
+            writeCollapsedStacks(out, child, frameName(child.function));
+        }
+    }
+
+    private static void writeCollapsedStacks(Writer out, Node node, String stack) throws IOException {
+        long micros = node.selfNanos / 1000;
+        if (micros > 0) {
+            out.write(stack + " " + micros + "\n");
+        }
+        for (Node child : node.children.values()) {
+            writeCollapsedStacks(out, child, stack + ";" + frameName(child.function));
+        }
+    }
+
+    /**
+     * Writes a table with the calls, total time, self time and allocated objects for each function,
+     * sorted by self time.
+     */
+    public void writeReport(Writer out) throws IOException {
+        Map<ImFunction, FunctionStats> stats = new LinkedHashMap<>();
+        collectStats(root, stats, new HashSet<>());
+        List<FunctionStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparingLong((FunctionStats s) -> s.selfNanos).reversed());
+        out.write(String.format("%10s %10s %10s %10s  %s%n", "self ms", "total ms", "calls", "allocs", "function"));
+        for (FunctionStats s : sorted) {
+            out.write(String.format("%10.1f %10.1f %10d %10d  %s%n",
+                s.selfNanos / 1e6, s.totalNanos / 1e6, s.calls, s.allocations, frameName(s.function)));
+        }
+    }
+
+    private static void collectStats(Node node, Map<ImFunction, FunctionStats> stats, Set<ImFunction> onStack) {
+        for (Node child : node.children.values()) {
+            ImFunction f = child.function;
+            FunctionStats s = stats.computeIfAbsent(f, FunctionStats::new);
+            s.calls += child.calls;
+            s.selfNanos += child.selfNanos;
+            s.allocations += child.allocations;
+            boolean outermost = onStack.add(f);
+            if (outermost) {
+                // for recursive calls the time is already included in the outermost call
+                s.totalNanos += child.totalNanos;
+            }
+            collectStats(child, stats, onStack);
+            if (outermost) {
+                onStack.remove(f);
+            }
+        }
+    }
+
+    private static String frameName(@Nullable ImFunction f) {
+        if (f == null) {
+            return "?";
+        }
+        WPos source = f.attrTrace().attrSource();
+        return f.getName() + " (" + new File(source.getFile()).getName() + ":" + source.getLine() + ")";
+    }
+}
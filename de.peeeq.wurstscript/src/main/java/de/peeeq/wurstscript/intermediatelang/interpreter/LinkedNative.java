@@ -0,0 +1,14 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.intermediatelang.ILconst;
+
+/**
+ * A native function which has been looked up once by a {@link NativesProvider},
+ * so that calls do not have to search for the implementation again.
+ */
+@FunctionalInterface
+public interface LinkedNative {
+
+    ILconst invoke(ILconst[] args) throws NoSuchNativeException;
+
+}
@@ -9,10 +9,19 @@ public class LocalState extends State {
     private @Nullable ILconst returnVal = null;
 
     public LocalState(ILconst returnVal) {
+        this();
         this.setReturnVal(returnVal);
     }
 
     public LocalState() {
+        super(FrameLayout.EMPTY);
+    }
+
+    /**
+     * creates a state for running a function, which stores the variables in the slots of the given layout
+     */
+    public LocalState(FrameLayout layout) {
+        super(layout);
     }
 
     public @Nullable ILconst getReturnVal() {
@@ -1,6 +1,7 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
 import de.peeeq.wurstscript.intermediatelang.ILconst;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 
@@ -8,6 +9,24 @@ public interface NativesProvider {
 
     ILconst invoke(String funcname, ILconst[] args) throws NoSuchNativeException;
 
+    /**
+     * Looks up the implementation of a native once, before it is called.
+     * <p>
+     * Returns null if this provider does not implement the native.
+     * The default implementation does the lookup on every call of {@link #invoke(String, ILconst[])}.
+     */
+    default @Nullable LinkedNative link(String funcname, int argCount) {
+        return args -> invoke(funcname, args);
+    }
+
+    /**
+     * Returns the provider to use for the given fork of a state (see {@link ProgramState#fork(ProgramState)}).
+     * Providers which refer to a state return a new provider for the fork, all others return themselves.
+     */
+    default NativesProvider forState(ProgramState state) {
+        return this;
+    }
+
     void setOutStream(PrintStream outStream);
 
 }
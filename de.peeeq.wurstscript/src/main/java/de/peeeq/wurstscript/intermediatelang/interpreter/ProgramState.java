@@ -11,6 +11,7 @@ import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.parser.WPos;
 import de.peeeq.wurstscript.utils.LineOffsets;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -29,14 +30,124 @@ public class ProgramState extends State {
     private Deque<de.peeeq.wurstscript.jassIm.Element> lastStatements = new ArrayDeque<>();
     private boolean isCompiletime;
     private HashMap<Integer, IlConstHandle> handleMap = new HashMap<>();
+    // the caches are shared with forks (see fork), they are not synchronized
+    private Map<ImFunction, LinkedNative[]> linkedNatives = new HashMap<>();
+    private Map<ImFunction, Boolean> compiletimeNatives = new HashMap<>();
+    private Map<ImFunction, FrameLayout> frameLayouts = new HashMap<>();
+    private Map<ImClass, FrameLayout> classLayouts = new HashMap<>();
+    private boolean useClosureCompiler = false;
+    private @Nullable InterpreterProfiler profiler;
+    // step counting, see countStep
+    private static final int STEP_CHECK_INTERVAL = 1 << 12;
+    private long stepLimit = 0;
+    private long steps = 0;
+    private int stepChunk = STEP_CHECK_INTERVAL;
+    private int stepsUntilCheck = STEP_CHECK_INTERVAL;
+    private Map<ImFunction, ClosureCompiler.CompiledFunction> compiledFunctions = new HashMap<>();
+    // for a fork: the state it was forked from, objects and handles are copied from there when they are used
+    private @Nullable ProgramState forkedFrom;
+    private @Nullable StateCopier forkCopier;
+    private boolean allForkedObjectsCopied = false;
+    private boolean allForkedHandlesCopied = false;
 
 
     public ProgramState(WurstGui gui, ImProg prog, boolean isCompiletime) {
+        this(gui, prog, isCompiletime, FrameLayout.forGlobals(prog));
+    }
+
+    private ProgramState(WurstGui gui, ImProg prog, boolean isCompiletime, FrameLayout globalsLayout) {
+        super(globalsLayout);
         this.gui = gui;
         this.prog = prog;
         this.isCompiletime = isCompiletime;
     }
 
+    /**
+     * Creates an empty state for a fork of the given state, see {@link #newFork(ProgramState)}
+     */
+    protected ProgramState(ProgramState original, WurstGui gui) {
+        this(gui, original.prog, original.isCompiletime, original.getLayout());
+    }
+
+    /**
+     * Creates a new state, which starts with the values of this state (globals, arrays, objects and handles).
+     * This is used to run each test from the state after initialization.
+     * <p>
+     * Forking is cheap, because values are only copied when the fork uses them for the first time
+     * (see {@link StateCopier}). Changes in the fork are not visible in this state,
+     * but this state must not change while its forks are used.
+     * <p>
+     * The caches of the environment (linked natives, frame layouts and compiled functions) are not synchronized
+     * and are shared with the fork. So forks can only be used concurrently, when they have different environments
+     * and no other fork of the same environment is running at the same time.
+     * <p>
+     * The fork has the same type as this state and the natives of the environment are rebound to the fork
+     * (see {@link NativesProvider#forState(ProgramState)}).
+     *
+     * @param environment the gui, output stream, natives and caches of this state are used by the fork,
+     *                    usually the previous state of the interpreter running the fork
+     */
+    public ProgramState fork(ProgramState environment) {
+        if (forkedFrom != null) {
+            throw new IllegalStateException("Cannot fork a forked state.");
+        }
+        ProgramState res = newFork(environment);
+        StateCopier copier = new StateCopier();
+        res.forkFrom(this, copier::copy);
+        res.forkedFrom = this;
+        res.forkCopier = copier;
+        res.objectIdCounter = objectIdCounter;
+        res.outStream = environment.getOutStream();
+        boolean rebound = false;
+        res.nativeProviders = Lists.newArrayList();
+        for (NativesProvider np : environment.nativeProviders) {
+            NativesProvider forkNatives = np.forState(res);
+            if (forkNatives != np) {
+                forkNatives.setOutStream(res.outStream);
+                rebound = true;
+            }
+            res.nativeProviders.add(forkNatives);
+        }
+        // linked natives refer to the providers, so they can only be shared, when no provider was rebound
+        res.linkedNatives = rebound ? new HashMap<>() : environment.linkedNatives;
+        res.compiletimeNatives = environment.compiletimeNatives;
+        res.frameLayouts = environment.frameLayouts;
+        res.classLayouts = environment.classLayouts;
+        res.compiledFunctions = environment.compiledFunctions;
+        res.useClosureCompiler = environment.useClosureCompiler;
+        res.profiler = environment.profiler;
+        return res;
+    }
+
+    /**
+     * Creates the empty state, which is used for a fork of this state.
+     * Subclasses with additional state override this to create a fork of their own type.
+     */
+    protected ProgramState newFork(ProgramState environment) {
+        return new ProgramState(this, environment.getGui());
+    }
+
+    /**
+     * Checks if forks of this state can be used by other interpreters on other threads.
+     * This is not possible, when the state contains objects which cannot be copied,
+     * like timers, which are bound to the interpreter that created them.
+     *
+     * @return null if forks can be used by other interpreters, otherwise the reason why they cannot be used
+     */
+    public @Nullable String checkForkableForOtherInterpreters() {
+        StateCopier copier = new StateCopier(true);
+        try {
+            forEachValue(copier::copy);
+            for (ProgramState s = this; s != null; s = s.forkedFrom) {
+                s.indexToObject.values().forEach(copier::copyObject);
+                s.handleMap.values().forEach(copier::copy);
+            }
+            return null;
+        } catch (StateCopier.UncopyableValueException e) {
+            return e.getMessage();
+        }
+    }
+
     public void setLastStatement(ImStmt s) {
         lastStatement = s;
     }
@@ -68,12 +179,134 @@ public class ProgramState extends State {
     public void addNativeProvider(NativesProvider np) {
         np.setOutStream(outStream);
         nativeProviders.add(np);
+        linkedNatives.clear();
     }
 
     public Iterable<NativesProvider> getNativeProviders() {
         return nativeProviders;
     }
 
+    /**
+     * Returns the implementations of the given native function, in the order of the native providers.
+     * The natives are linked on the first call and then reused.
+     */
+    public LinkedNative[] getLinkedNatives(ImFunction f) {
+        LinkedNative[] res = linkedNatives.get(f);
+        if (res == null) {
+            List<LinkedNative> linked = new ArrayList<>();
+            for (NativesProvider np : nativeProviders) {
+                LinkedNative n = np.link(f.getName(), f.getParameters().size());
+                if (n != null) {
+                    linked.add(n);
+                }
+            }
+            res = linked.toArray(new LinkedNative[0]);
+            linkedNatives.put(f, res);
+        }
+        return res;
+    }
+
+    /**
+     * Checks if the function is annotated with @compiletimenative and caches the result.
+     */
+    public boolean isCompiletimeNative(ImFunction f) {
+        Boolean res = compiletimeNatives.get(f);
+        if (res == null) {
+            res = ILInterpreter.isCompiletimeNative(f);
+            compiletimeNatives.put(f, res);
+        }
+        return res;
+    }
+
+    /**
+     * Starts counting steps from zero.
+     *
+     * @param stepLimit execution is stopped with an {@link InterpreterException},
+     *                  when more than this number of steps are executed (0 for no limit)
+     */
+    public void resetSteps(long stepLimit) {
+        this.stepLimit = stepLimit;
+        this.steps = 0;
+        startStepChunk();
+    }
+
+    /**
+     * Counts one step of the execution. This is called for each function call and each loop iteration.
+     * <p>
+     * The step limit and the interrupted flag of the thread are only checked at the end of each chunk of steps,
+     * so counting a step is cheap. The chunks end exactly at the step limit, so the limit is deterministic.
+     */
+    public void countStep() {
+        if (--stepsUntilCheck <= 0) {
+            checkSteps();
+        }
+    }
+
+    public long getSteps() {
+        return steps + stepChunk - stepsUntilCheck;
+    }
+
+    private void startStepChunk() {
+        long chunk = STEP_CHECK_INTERVAL;
+        if (stepLimit > 0) {
+            chunk = Math.min(chunk, stepLimit + 1 - steps);
+        }
+        stepChunk = (int) chunk;
+        stepsUntilCheck = stepChunk;
+    }
+
+    private void checkSteps() {
+        steps += stepChunk;
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterpreterException(this, "Execution interrupted");
+        }
+        if (stepLimit > 0 && steps > stepLimit) {
+            String msg = "Execution stopped after " + stepLimit + " steps (function calls and loop iterations)";
+            de.peeeq.wurstscript.jassIm.Element lastStatement = getLastStatement();
+            ImFunction f = lastStatement == null ? null : lastStatement.getNearestFunc();
+            if (f != null) {
+                msg += " in function " + f.getName();
+            }
+            throw new InterpreterException(this, msg + ".");
+        }
+        startStepChunk();
+    }
+
+    public @Nullable InterpreterProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Enables profiling of the executed functions, or disables it when the profiler is null.
+     */
+    public void setProfiler(@Nullable InterpreterProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Selects if functions are compiled with the {@link ClosureCompiler} before running them.
+     */
+    public void setUseClosureCompiler(boolean useClosureCompiler) {
+        this.useClosureCompiler = useClosureCompiler;
+    }
+
+    public boolean isUseClosureCompiler() {
+        return useClosureCompiler;
+    }
+
+    /**
+     * Returns the compiled body of the given function.
+     * The function is compiled on the first call and then reused.
+     */
+    public ClosureCompiler.CompiledFunction getCompiledFunction(ImFunction f) {
+        ClosureCompiler.CompiledFunction res = compiledFunctions.get(f);
+        if (res == null) {
+            res = ClosureCompiler.compile(f);
+            compiledFunctions.put(f, res);
+        }
+        return res;
+    }
+
     public ProgramState setProg(ImProg p) {
         prog = p;
         return this;
@@ -85,8 +318,12 @@ public class ProgramState extends State {
 
     public ILconstObject allocate(ImClassType clazz, Element trace) {
         objectIdCounter++;
-        ILconstObject res = new ILconstObject(clazz, objectIdCounter, trace);
+        ILconstObject res = new ILconstObject(clazz, objectIdCounter, trace, getClassLayout(clazz.getClassDef()));
         indexToObject.put(objectIdCounter, res);
+        InterpreterProfiler profiler = this.profiler;
+        if (profiler != null) {
+            profiler.countAllocation();
+        }
         return res;
     }
 
@@ -181,22 +418,49 @@ public class ProgramState extends State {
     }
 
     public ILconst getObjectByIndex(int val) {
-        return indexToObject.get(val);
+        return objectById(val);
+    }
+
+    private @Nullable ILconstObject objectById(int id) {
+        ILconstObject res = indexToObject.get(id);
+        ProgramState forkedFrom = this.forkedFrom;
+        if (res == null && forkedFrom != null && !allForkedObjectsCopied) {
+            ILconstObject original = forkedFrom.indexToObject.get(id);
+            if (original != null) {
+                res = forkCopier.copyObject(original);
+                indexToObject.put(id, res);
+            }
+        }
+        return res;
     }
 
     public HashMap<Integer, IlConstHandle> getHandleMap() {
+        ProgramState forkedFrom = this.forkedFrom;
+        if (forkedFrom != null && !allForkedHandlesCopied) {
+            forkedFrom.handleMap.forEach((id, h) -> handleMap.computeIfAbsent(id, i -> (IlConstHandle) forkCopier.copy(h)));
+            allForkedHandlesCopied = true;
+        }
         return handleMap;
     }
 
     public ILconst getHandleByIndex(int val) {
-        return handleMap.get(val);
+        IlConstHandle res = handleMap.get(val);
+        ProgramState forkedFrom = this.forkedFrom;
+        if (res == null && forkedFrom != null && !allForkedHandlesCopied) {
+            IlConstHandle original = forkedFrom.handleMap.get(val);
+            if (original != null) {
+                res = (IlConstHandle) forkCopier.copy(original);
+                handleMap.put(val, res);
+            }
+        }
+        return res;
     }
 
     public ILconstObject toObject(ILconst val) {
         if (val instanceof ILconstObject) {
             return (ILconstObject) val;
         } else if (val instanceof ILconstInt) {
-            return indexToObject.get(((ILconstInt) val).getVal());
+            return objectById(((ILconstInt) val).getVal());
         }
         throw new InterpreterException(this, "Value " + val + " (" + val.getClass().getSimpleName() + ") cannot be cast to object.");
     }
@@ -254,27 +518,52 @@ public class ProgramState extends State {
         return isCompiletime;
     }
 
-    protected ILconstArray getArray(ImVar v) {
-        ILconstArray r = arrayValues.get(v);
-        if (r == null) {
-            ImType vType = v.getType();
-            r = createArrayConstantFromType(vType);
-            arrayValues.put(v, r);
-            List<ImExpr> e = prog.getGlobalInits().get(v);
-            if (e != null) {
-                LocalState ls = new LocalState();
-                for (int i = 0; i < e.size(); i++) {
-                    ILconst val = e.get(i).evaluate(this, ls);
-                    r.set(i, val);
-                }
+    @Override
+    protected void initArray(ImVar v, ILconstArray r) {
+        List<ImExpr> e = prog.getGlobalInits().get(v);
+        if (e != null) {
+            LocalState ls = new LocalState();
+            for (int i = 0; i < e.size(); i++) {
+                ILconst val = e.get(i).evaluate(this, ls);
+                r.set(i, val);
             }
         }
-        return r;
     }
 
+    /**
+     * Returns the slots for the parameters and local variables of the given function.
+     * The layout is computed on the first call of the function.
+     */
+    public FrameLayout getFrameLayout(ImFunction f) {
+        FrameLayout res = frameLayouts.get(f);
+        if (res == null) {
+            res = FrameLayout.forFunction(f);
+            frameLayouts.put(f, res);
+        }
+        return res;
+    }
 
+    /**
+     * Returns the slots for the fields of objects of the given class.
+     * The layout is computed when the first object of the class is allocated.
+     */
+    public FrameLayout getClassLayout(ImClass c) {
+        FrameLayout res = classLayouts.get(c);
+        if (res == null) {
+            res = FrameLayout.forClass(c);
+            classLayouts.put(c, res);
+        }
+        return res;
+    }
 
     public Collection<ILconstObject> getAllObjects() {
+        ProgramState forkedFrom = this.forkedFrom;
+        if (forkedFrom != null && !allForkedObjectsCopied) {
+            for (Integer id : forkedFrom.indexToObject.keySet()) {
+                objectById(id);
+            }
+            allForkedObjectsCopied = true;
+        }
         return indexToObject.values();
     }
 
@@ -1,6 +1,5 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
-import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 import de.peeeq.wurstio.jassinterpreter.VarargArray;
 import de.peeeq.wurstscript.intermediatelang.*;
 import de.peeeq.wurstscript.jassIm.*;
@@ -33,9 +32,7 @@ public class RunStatement {
     public static void run(ImLoop s, ProgramState globalState, LocalState localState) {
         try {
             while (true) {
-                if (Thread.currentThread().isInterrupted()) {
-                    throw new InterpreterException(globalState, "Execution interrupted");
-                }
+                globalState.countStep();
                 s.getBody().runStatements(globalState, localState);
             }
         } catch (ExitwhenException e) {
@@ -1,6 +1,5 @@
 package de.peeeq.wurstscript.intermediatelang.interpreter;
 
-import com.google.common.collect.Maps;
 import de.peeeq.wurstio.jassinterpreter.InterpreterException;
 import de.peeeq.wurstscript.intermediatelang.ILconst;
 import de.peeeq.wurstscript.intermediatelang.ILconstArray;
@@ -10,26 +9,180 @@ import de.peeeq.wurstscript.jassIm.ImType;
 import de.peeeq.wurstscript.jassIm.ImVar;
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public abstract class State {
 
-    private Map<ImVar, ILconst> values = Maps.newLinkedHashMap();
-    protected Map<ImVar, ILconstArray> arrayValues = Maps.newLinkedHashMap();
+    private final FrameLayout layout;
+    private final @Nullable ILconst[] slotValues;
+    private @Nullable ILconstArray[] slotArrays;
+    // values of variables which are not part of the layout
+    private @Nullable Map<ImVar, ILconst> values;
+    private @Nullable Map<ImVar, ILconstArray> arrayValues;
+    // for a fork: the state it was forked from and the slots, which still have to be copied from that state
+    private @Nullable State forkedFrom;
+    private @Nullable UnaryOperator<ILconst> copyFromFork;
+    private @Nullable BitSet pendingValues;
+    private @Nullable BitSet pendingArrays;
 
+    protected State(FrameLayout layout) {
+        this.layout = layout;
+        this.slotValues = new ILconst[layout.size()];
+    }
+
+    protected FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Makes this state start with the values of the given state, which must use the same layout.
+     * Variables and arrays are copied when they are used for the first time.
+     * The given state must not change afterwards.
+     */
+    protected void forkFrom(State other, UnaryOperator<ILconst> copyValue) {
+        if (other.layout.size() != layout.size()) {
+            throw new IllegalArgumentException("Cannot fork a state with a different layout.");
+        }
+        forkedFrom = other;
+        copyFromFork = copyValue;
+        BitSet pendingValues = this.pendingValues = new BitSet(slotValues.length);
+        for (int i = 0; i < slotValues.length; i++) {
+            if (other.slotValues[i] != null) {
+                pendingValues.set(i);
+            }
+        }
+        ILconstArray[] otherArrays = other.slotArrays;
+        if (otherArrays != null) {
+            BitSet pendingArrays = this.pendingArrays = new BitSet(otherArrays.length);
+            for (int i = 0; i < otherArrays.length; i++) {
+                if (otherArrays[i] != null) {
+                    pendingArrays.set(i);
+                }
+            }
+        }
+        // variables which are not part of the layout are rare, so they are copied directly
+        Map<ImVar, ILconst> otherValues = other.values;
+        if (otherValues != null) {
+            Map<ImVar, ILconst> values = this.values = new LinkedHashMap<>();
+            otherValues.forEach((v, val) -> values.put(v, copyValue.apply(val)));
+        }
+        Map<ImVar, ILconstArray> otherArrayValues = other.arrayValues;
+        if (otherArrayValues != null) {
+            Map<ImVar, ILconstArray> arrayValues = this.arrayValues = new LinkedHashMap<>();
+            otherArrayValues.forEach((v, ar) -> arrayValues.put(v, (ILconstArray) copyValue.apply(ar)));
+        }
+    }
+
+    /**
+     * calls the action for the values of all variables and arrays of this state.
+     * For a fork, the action is also called for the values of the state it was forked from.
+     */
+    protected void forEachValue(Consumer<ILconst> action) {
+        State forkedFrom = this.forkedFrom;
+        if (forkedFrom != null) {
+            forkedFrom.forEachValue(action);
+        }
+        for (ILconst v : slotValues) {
+            if (v != null) {
+                action.accept(v);
+            }
+        }
+        ILconstArray[] arrays = slotArrays;
+        if (arrays != null) {
+            for (ILconstArray ar : arrays) {
+                if (ar != null) {
+                    action.accept(ar);
+                }
+            }
+        }
+        Map<ImVar, ILconst> values = this.values;
+        if (values != null) {
+            values.values().forEach(action);
+        }
+        Map<ImVar, ILconstArray> arrayValues = this.arrayValues;
+        if (arrayValues != null) {
+            arrayValues.values().forEach(action);
+        }
+    }
+
+    private @Nullable ILconst slotValue(int slot) {
+        BitSet pending = pendingValues;
+        if (pending != null && pending.get(slot)) {
+            pending.clear(slot);
+            slotValues[slot] = copyFromFork.apply(forkedFrom.slotValues[slot]);
+        }
+        return slotValues[slot];
+    }
 
     public void setVal(ImVar v, ILconst val) {
+        int slot = layout.slotOf(v);
+        if (slot >= 0) {
+            BitSet pending = pendingValues;
+            if (pending != null) {
+                pending.clear(slot);
+            }
+            slotValues[slot] = val;
+            return;
+        }
+        Map<ImVar, ILconst> values = this.values;
+        if (values == null) {
+            values = this.values = new LinkedHashMap<>();
+        }
         values.put(v, val);
     }
 
     public @Nullable ILconst getVal(ImVar v) {
-        return values.get(v);
+        int slot = layout.slotOf(v);
+        if (slot >= 0) {
+            return slotValue(slot);
+        }
+        Map<ImVar, ILconst> values = this.values;
+        return values == null ? null : values.get(v);
     }
 
     protected ILconstArray getArray(ImVar v) {
-        return arrayValues.computeIfAbsent(v, k -> createArrayConstantFromType(v.getType()));
+        int slot = layout.slotOf(v);
+        if (slot >= 0) {
+            ILconstArray[] arrays = slotArrays;
+            if (arrays == null) {
+                arrays = slotArrays = new ILconstArray[layout.size()];
+            }
+            BitSet pending = pendingArrays;
+            if (pending != null && pending.get(slot)) {
+                pending.clear(slot);
+                arrays[slot] = (ILconstArray) copyFromFork.apply(forkedFrom.slotArrays[slot]);
+            }
+            ILconstArray r = arrays[slot];
+            if (r == null) {
+                r = createArrayConstantFromType(v.getType());
+                arrays[slot] = r;
+                initArray(v, r);
+            }
+            return r;
+        }
+        Map<ImVar, ILconstArray> arrayValues = this.arrayValues;
+        if (arrayValues == null) {
+            arrayValues = this.arrayValues = new LinkedHashMap<>();
+        }
+        ILconstArray r = arrayValues.get(v);
+        if (r == null) {
+            r = createArrayConstantFromType(v.getType());
+            arrayValues.put(v, r);
+            initArray(v, r);
+        }
+        return r;
+    }
+
+    /**
+     * called when the array for variable v is used for the first time
+     */
+    protected void initArray(ImVar v, ILconstArray r) {
     }
 
     static ILconstArray createArrayConstantFromType(ImType vType) {
@@ -68,9 +221,18 @@ public abstract class State {
     }
 
     public @Nullable ILconst getVarValue(String varName) {
-        for (Entry<ImVar, ILconst> e : values.entrySet()) {
-            if (e.getKey().getName().equals(varName)) {
-                return e.getValue();
+        for (int i = 0; i < layout.size(); i++) {
+            ILconst val = slotValue(i);
+            if (val != null && layout.getVar(i).getName().equals(varName)) {
+                return val;
+            }
+        }
+        Map<ImVar, ILconst> values = this.values;
+        if (values != null) {
+            for (Entry<ImVar, ILconst> e : values.entrySet()) {
+                if (e.getKey().getName().equals(varName)) {
+                    return e.getValue();
+                }
             }
         }
         return null;
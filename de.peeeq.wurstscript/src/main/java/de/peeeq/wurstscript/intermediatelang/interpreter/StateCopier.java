@@ -0,0 +1,148 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import com.google.common.collect.ArrayListMultimap;
+import de.peeeq.wurstio.jassinterpreter.mocks.*;
+import de.peeeq.wurstio.jassinterpreter.providers.FrameProvider;
+import de.peeeq.wurstio.jassinterpreter.providers.HashtableStore;
+import de.peeeq.wurstscript.intermediatelang.*;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Copies interpreter values, so that the copy can be changed without affecting the original.
+ * <p>
+ * Arrays, objects, tuples and handles are copied, all other values are immutable and shared.
+ * Each value is copied only once, so references between values are preserved.
+ * The objects of handles (like groups, hashtables, units and triggers) are copied as well.
+ * Objects bound to an interpreter (like timers, which are scheduled by the interpreter that created them)
+ * and unknown objects cannot be copied: a strict copier throws an {@link UncopyableValueException},
+ * otherwise they are shared with the original.
+ */
+class StateCopier {
+    private final Map<ILconst, ILconst> copies = new IdentityHashMap<>();
+    private final Map<Object, Object> objectCopies = new IdentityHashMap<>();
+    private final boolean strict;
+
+    StateCopier() {
+        this(false);
+    }
+
+    /**
+     * @param strict throw an exception instead of sharing objects, which cannot be copied
+     */
+    StateCopier(boolean strict) {
+        this.strict = strict;
+    }
+
+    /**
+     * Thrown by a strict copier for values, which cannot be copied.
+     */
+    static class UncopyableValueException extends RuntimeException {
+        UncopyableValueException(String message) {
+            super(message);
+        }
+    }
+
+    @Nullable ILconst copy(@Nullable ILconst v) {
+        if (v == null) {
+            return null;
+        }
+        ILconst res = copies.get(v);
+        if (res != null) {
+            return res;
+        }
+        if (v instanceof ILconstObject) {
+            return copyObject((ILconstObject) v);
+        } else if (v instanceof ILconstArray) {
+            res = ((ILconstArray) v).copy(this::copy);
+        } else if (v instanceof ILconstTuple) {
+            ILconstTuple t = (ILconstTuple) v;
+            ILconst[] values = new ILconst[t.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = copy(t.getValue(i));
+            }
+            res = new ILconstTuple(values);
+        } else if (v instanceof IlConstHandle) {
+            IlConstHandle h = (IlConstHandle) v;
+            res = new IlConstHandle(h.print(), copyHandleObject(h.getObj()));
+        } else {
+            return v;
+        }
+        copies.put(v, res);
+        return res;
+    }
+
+    ILconstObject copyObject(ILconstObject obj) {
+        ILconst existing = copies.get(obj);
+        if (existing != null) {
+            return (ILconstObject) existing;
+        }
+        ILconstObject res = obj.copyWithoutFields();
+        // register the copy before copying the fields, so that cyclic references point to the copy
+        copies.put(obj, res);
+        res.copyFieldsFrom(obj, this::copy);
+        return res;
+    }
+
+    private @Nullable Object copyHandleObject(@Nullable Object obj) {
+        if (obj == null || obj instanceof String || obj instanceof Number || obj instanceof ILconstFuncRef
+                || obj instanceof FrameProvider.FrameHandle) {
+            // immutable
+            return obj;
+        }
+        Object res = objectCopies.get(obj);
+        if (res != null) {
+            return res;
+        }
+        if (obj instanceof LinkedHashSet) {
+            LinkedHashSet<Object> set = new LinkedHashSet<>();
+            for (Object elem : (LinkedHashSet<?>) obj) {
+                set.add(copyElement(elem));
+            }
+            res = set;
+        } else if (obj instanceof HashtableStore) {
+            res = ((HashtableStore) obj).copy(this::copy);
+        } else if (obj instanceof ArrayListMultimap) {
+            ArrayListMultimap<Object, Object> map = ArrayListMultimap.create();
+            ((ArrayListMultimap<?, ?>) obj).entries().forEach(e -> map.put(e.getKey(), copyElement(e.getValue())));
+            res = map;
+        } else if (obj instanceof UnitMock) {
+            res = ((UnitMock) obj).copy(this::copy);
+        } else if (obj instanceof TriggerMock) {
+            res = ((TriggerMock) obj).copy(this::copy);
+        } else if (obj instanceof PlayerMock) {
+            res = ((PlayerMock) obj).copy();
+        } else if (obj instanceof ItemMock) {
+            res = ((ItemMock) obj).copy();
+        } else if (obj instanceof DestructableMock) {
+            res = ((DestructableMock) obj).copy();
+        } else if (obj instanceof EffectMock) {
+            res = ((EffectMock) obj).copy();
+        } else if (obj instanceof ImageMock) {
+            res = ((ImageMock) obj).copy();
+        } else if (obj instanceof LocationMock) {
+            res = ((LocationMock) obj).copy();
+        } else if (obj instanceof RectMock) {
+            res = ((RectMock) obj).copy();
+        } else if (obj instanceof RegionMock) {
+            res = ((RegionMock) obj).copy(r -> (RectMock) copyHandleObject(r));
+        } else if (strict) {
+            throw new UncopyableValueException("Cannot copy " + obj.getClass().getSimpleName() + ".");
+        } else {
+            // like timers, which are bound to the interpreter which created them
+            return obj;
+        }
+        objectCopies.put(obj, res);
+        return res;
+    }
+
+    private @Nullable Object copyElement(@Nullable Object elem) {
+        if (elem instanceof ILconst) {
+            return copy((ILconst) elem);
+        }
+        return elem;
+    }
+}
@@ -0,0 +1,15 @@
+package de.peeeq.wurstscript.intermediatelang.interpreter;
+
+import de.peeeq.wurstscript.jassIm.ImVar;
+
+/**
+ * The slot of a variable in the last {@link FrameLayout} which contained the variable.
+ * This is only a hint, the layout checks if the slot is still valid.
+ */
+public class VarSlot {
+    int index = -1;
+
+    public static VarSlot create(ImVar v) {
+        return new VarSlot();
+    }
+}
@@ -1,7 +1,7 @@
 package de.peeeq.wurstscript.intermediatelang.optimizer;
 
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalOptimizerPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 
 import java.util.ListIterator;
@@ -11,10 +11,17 @@ import java.util.ListIterator;
  * <p>
  * the input must be a flattened program
  */
-public class BranchMerger  implements OptimizerPass {
+public class BranchMerger  implements FunctionLocalOptimizerPass {
     private SideEffectAnalyzer sideEffectAnalyzer;
     public int branchesMerged = 0;
 
+    public BranchMerger() {
+    }
+
+    private BranchMerger(SideEffectAnalyzer sideEffectAnalyzer) {
+        this.sideEffectAnalyzer = sideEffectAnalyzer;
+    }
+
     @Override
     public int optimize(ImTranslator trans) {
         branchesMerged = 0;
@@ -27,6 +34,19 @@ public class BranchMerger  implements OptimizerPass {
         return branchesMerged;
     }
 
+    @Override
+    public void prepare(ImTranslator trans) {
+        this.sideEffectAnalyzer = new SideEffectAnalyzer(trans.getImProg()).calculateProgramInfo();
+    }
+
+    @Override
+    public int optimizeFunction(ImTranslator trans, ImFunction func) {
+        // count with a separate instance, so that functions can be optimized in parallel
+        BranchMerger merger = new BranchMerger(sideEffectAnalyzer);
+        merger.optimizeFunc(func);
+        return merger.branchesMerged;
+    }
+
     private void optimizeFunc(ImFunction func) {
         mergeBranches(func);
     }
@@ -3,7 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import de.peeeq.datastructures.Worklist;
 import de.peeeq.wurstscript.intermediatelang.optimizer.ControlFlowGraph.Node;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalOptimizerPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import io.vavr.Tuple2;
@@ -12,7 +12,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Map;
 
-public class ConstantAndCopyPropagation implements OptimizerPass {
+public class ConstantAndCopyPropagation implements FunctionLocalOptimizerPass {
     private int totalPropagated = 0;
 
     public int optimize(ImTranslator trans) {
@@ -27,6 +27,21 @@ public class ConstantAndCopyPropagation implements OptimizerPass {
         return totalPropagated;
     }
 
+    @Override
+    public void prepare(ImTranslator trans) {
+    }
+
+    @Override
+    public int optimizeFunction(ImTranslator trans, ImFunction func) {
+        if (func.isNative() || func.isBj()) {
+            return 0;
+        }
+        // count with a separate instance, so that functions can be optimized in parallel
+        ConstantAndCopyPropagation propagation = new ConstantAndCopyPropagation();
+        propagation.optimizeFunc(func);
+        return propagation.totalPropagated;
+    }
+
     @Override
     public String getName() {
         return "Constant and Copy Propagated";
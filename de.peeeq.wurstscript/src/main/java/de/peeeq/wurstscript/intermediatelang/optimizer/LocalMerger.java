@@ -3,7 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import de.peeeq.datastructures.Worklist;
 import de.peeeq.wurstscript.intermediatelang.optimizer.ControlFlowGraph.Node;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalOptimizerPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import io.vavr.collection.HashSet;
@@ -22,8 +22,9 @@ import static de.peeeq.wurstscript.translation.imtranslation.FunctionFlagEnum.IS
  * <p>
  * the input must be a flattened program
  */
-public class LocalMerger implements OptimizerPass {
+public class LocalMerger implements FunctionLocalOptimizerPass {
     private int totalLocalsMerged = 0;
+    private int deadAssignmentsRemoved = 0;
 
     @Override
     public int optimize(ImTranslator trans) {
@@ -37,6 +38,22 @@ public class LocalMerger implements OptimizerPass {
         return totalLocalsMerged;
     }
 
+    @Override
+    public void prepare(ImTranslator trans) {
+    }
+
+    @Override
+    public int optimizeFunction(ImTranslator trans, ImFunction func) {
+        if (func.isNative() || func.isBj()) {
+            return 0;
+        }
+        // count with a separate instance, so that functions can be optimized in parallel
+        LocalMerger merger = new LocalMerger();
+        merger.optimizeFunc(func);
+        // removed assignments are counted as well, so that the function is reported as changed
+        return merger.totalLocalsMerged + merger.deadAssignmentsRemoved;
+    }
+
 
     @Override
     public String getName() {
@@ -164,6 +181,7 @@ public class LocalMerger implements OptimizerPass {
                     ImExpr right = imSet.getRight();
                     right.setParent(null);
                     s.replaceBy(right);
+                    deadAssignmentsRemoved++;
                 }
             }
         }
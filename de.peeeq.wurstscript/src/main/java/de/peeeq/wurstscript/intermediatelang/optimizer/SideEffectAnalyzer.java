@@ -30,6 +30,17 @@ public class SideEffectAnalyzer {
         this.prog = prog;
     }
 
+    /**
+     * Calculates the program wide call relation and used globals now instead of on first use.
+     * Afterwards the analyzer can be used from several threads.
+     * The information is not updated when the program changes later.
+     */
+    public SideEffectAnalyzer calculateProgramInfo() {
+        getCallRelationTr();
+        getUsedGlobals();
+        return this;
+    }
+
     /**
      * checks if this expression might have side effects
      * (does not do a deep analysis, all function calls and statements are considered to have side effects)
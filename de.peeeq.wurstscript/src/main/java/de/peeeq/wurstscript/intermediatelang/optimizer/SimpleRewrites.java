@@ -3,7 +3,7 @@ package de.peeeq.wurstscript.intermediatelang.optimizer;
 import de.peeeq.wurstscript.WLogger;
 import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalOptimizerPass;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.types.TypesHelper;
@@ -14,11 +14,18 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
-public class SimpleRewrites implements OptimizerPass {
+public class SimpleRewrites implements FunctionLocalOptimizerPass {
     private SideEffectAnalyzer sideEffectAnalysis;
     private int totalRewrites = 0;
     private boolean showRewrites = false;
 
+    public SimpleRewrites() {
+    }
+
+    private SimpleRewrites(SideEffectAnalyzer sideEffectAnalysis) {
+        this.sideEffectAnalysis = sideEffectAnalysis;
+    }
+
     @Override
     public int optimize(ImTranslator trans) {
         ImProg prog = trans.getImProg();
@@ -28,26 +35,51 @@ public class SimpleRewrites implements OptimizerPass {
         // we need to flatten the program, because we introduced new
         // StatementExprs
         prog.flatten(trans);
-        removeUnreachableCode(prog);
+        totalRewrites += removeUnreachableCode(prog);
         return totalRewrites;
     }
 
+    @Override
+    public void prepare(ImTranslator trans) {
+        this.sideEffectAnalysis = new SideEffectAnalyzer(trans.getImProg()).calculateProgramInfo();
+    }
+
+    @Override
+    public int optimizeFunction(ImTranslator trans, ImFunction func) {
+        // count the rewrites with a separate instance, so that functions can be optimized in parallel
+        SimpleRewrites rewrites = new SimpleRewrites(sideEffectAnalysis);
+        rewrites.optimizeElement(func);
+        if (rewrites.totalRewrites > 0) {
+            // only changed functions can contain new StatementExprs
+            func.flatten(trans);
+        }
+        // removed unreachable code is counted as a change, so that the function is revisited
+        int removedStatements = rewrites.removeUnreachableCode(func);
+        return rewrites.totalRewrites + removedStatements;
+    }
+
     @Override
     public String getName() {
         return "Simple Rewrites";
     }
 
-    private void removeUnreachableCode(ImProg prog) {
-        prog.accept(new ImProg.DefaultVisitor() {
+    /**
+     * @return the number of removed statements
+     */
+    private int removeUnreachableCode(Element elem) {
+        int[] removed = {0};
+        elem.accept(new Element.DefaultVisitor() {
             @Override
             public void visit(ImStmts stmts) {
                 super.visit(stmts);
-                removeUnreachableCode(stmts);
+                removed[0] += removeUnreachableCode(stmts);
             }
         });
+        return removed[0];
     }
 
-    private void removeUnreachableCode(ImStmts stmts) {
+    private int removeUnreachableCode(ImStmts stmts) {
+        int removed = 0;
         Iterator<ImStmt> it = stmts.iterator();
         boolean reachable = true;
         while (it.hasNext()) {
@@ -67,10 +99,11 @@ public class SimpleRewrites implements OptimizerPass {
                     }
                 }
             } else {
-                totalRewrites++;
+                removed++;
                 it.remove();
             }
         }
+        return removed;
     }
 
     /**
@@ -4,7 +4,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import de.peeeq.wurstscript.jassIm.*;
-import de.peeeq.wurstscript.translation.imoptimizer.OptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.FunctionLocalOptimizerPass;
+import de.peeeq.wurstscript.translation.imoptimizer.VariableUses;
 import de.peeeq.wurstscript.translation.imtranslation.AssertProperty;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
@@ -17,8 +18,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
 
-public class TempMerger implements OptimizerPass {
+public class TempMerger implements FunctionLocalOptimizerPass {
     private int totalMerged = 0;
+    // the variable uses in the function currently optimized
+    private VariableUses.Uses uses;
 
 
     @Override
@@ -34,7 +37,6 @@ public class TempMerger implements OptimizerPass {
         ImProg prog = trans.getImProg();
         totalMerged = 0;
         trans.assertProperties(AssertProperty.FLAT, AssertProperty.NOTUPLES);
-        prog.clearAttributes();
         for (ImFunction f : ImHelper.calculateFunctionsOfProg(prog)) {
             optimizeFunc(f);
         }
@@ -43,10 +45,33 @@ public class TempMerger implements OptimizerPass {
         return totalMerged;
     }
 
+    @Override
+    public void prepare(ImTranslator trans) {
+        trans.assertProperties(AssertProperty.FLAT, AssertProperty.NOTUPLES);
+    }
+
+    @Override
+    public int optimizeFunction(ImTranslator trans, ImFunction func) {
+        // count with a separate instance, so that functions can be optimized in parallel
+        TempMerger merger = new TempMerger();
+        merger.optimizeFunc(func);
+        if (merger.totalMerged > 0) {
+            // flatten the function because we introduced null-statements
+            func.flatten(trans);
+        }
+        return merger.totalMerged;
+    }
+
     void optimizeFunc(ImFunction f) {
+        // only local variables are merged, so it is sufficient to know the uses inside of the function
+        uses = VariableUses.calcVarUses(f);
         optimizeStatements(f.getBody());
     }
 
+    private Collection<ImVarRead> readsOf(ImVar v) {
+        return uses.getReads(v);
+    }
+
     private void optimizeStatements(ImStmts stmts) {
         Knowledge kn = new Knowledge();
 
@@ -248,25 +273,25 @@ public class TempMerger implements OptimizerPass {
 
         public void apply() {
             ImExpr e = set.getRight();
-            if (getAssignedVar().attrReads().size() <= 1) {
+            if (readsOf(getAssignedVar()).size() <= 1) {
                 // make sure that an impure expression is only evaluated once
                 // by removing the assignment
                 set.replaceBy(ImHelper.nullExpr());
 
                 // remove variables which are no longer read
                 for (ImVarRead r : readVariables(set)) {
-                    r.getVar().attrReads().remove(r);
+                    readsOf(r.getVar()).remove(r);
                 }
             }
 
             ImExpr newE = (ImExpr) e.copy();
             read.replaceBy(newE);
-            // update attrReads:
-            getAssignedVar().attrReads().remove(read);
+            // update the reads:
+            readsOf(getAssignedVar()).remove(read);
 
             // for all the variables in e: add to read
             for (ImVarRead r : readVariables(newE)) {
-                r.getVar().attrReads().add(r);
+                readsOf(r.getVar()).add(r);
             }
 
         }
@@ -349,7 +374,7 @@ public class TempMerger implements OptimizerPass {
                     return false;
                 }
             }
-            if (left.attrReads().size() == 1) {
+            if (readsOf(left).size() == 1) {
                 // variable read exactly once can be replaced
                 return true;
             }
@@ -6,7 +6,10 @@ import com.google.common.collect.Sets;
 import de.peeeq.wurstio.gui.AboutDialog;
 import de.peeeq.wurstscript.jassAst.*;
 import de.peeeq.wurstscript.utils.Utils;
+import org.eclipse.jdt.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -15,6 +18,8 @@ public class JassPrinter {
 
     public static final String WURST_COMMENT_RAW = "// this script was compiled with wurst ";
     public static final String WURST_COMMENT = WURST_COMMENT_RAW + AboutDialog.version;
+    // number of buffered characters before the output is written to the writer
+    private static final int FLUSH_SIZE = 1 << 16;
     private boolean withSpace;
     private JassProg prog;
 
@@ -26,13 +31,42 @@ public class JassPrinter {
 
     public void printProg(StringBuilder sb) {
         Preconditions.checkNotNull(sb);
+        try {
+            printProg(sb, null);
+        } catch (IOException e) {
+            // only the writer can throw
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Prints the program to the given writer.
+     * The output is written in small chunks, so the whole script is never kept in memory.
+     */
+    public void printProg(Writer out) throws IOException {
+        Preconditions.checkNotNull(out);
+        printProg(new StringBuilder(), out);
+    }
+
+    private void printProg(StringBuilder sb, @Nullable Writer out) throws IOException {
         Preconditions.checkNotNull(prog);
 
         sb.append(WURST_COMMENT + "\n");
         printTypes(sb, prog.getDefs());
-        printGlobals(sb, prog.getGlobals());
+        printGlobals(sb, out, prog.getGlobals());
         printNatives(sb, prog.getNatives());
-        printFunctions(sb, prog.getFunctions());
+        printFunctions(sb, out, prog.getFunctions());
+        flush(sb, out, 0);
+    }
+
+    /**
+     * writes the buffered output to the writer, if there is a writer and at least minSize characters are buffered
+     */
+    private static void flush(StringBuilder sb, @Nullable Writer out, int minSize) throws IOException {
+        if (out != null && sb.length() >= minSize) {
+            out.append(sb);
+            sb.setLength(0);
+        }
     }
 
     private String additionalNewline() {
@@ -54,10 +88,11 @@ public class JassPrinter {
     }
 
 
-    private void printGlobals(StringBuilder sb, JassVars globals) {
+    private void printGlobals(StringBuilder sb, @Nullable Writer out, JassVars globals) throws IOException {
         sb.append("globals\n");
         for (JassVar g : globals) {
             printJassGlobalVar(sb, g);
+            flush(sb, out, FLUSH_SIZE);
         }
         sb.append("endglobals\n");
     }
@@ -108,9 +143,10 @@ public class JassPrinter {
     }
 
 
-    private void printFunctions(StringBuilder sb, JassFunctions functions) {
+    private void printFunctions(StringBuilder sb, @Nullable Writer out, JassFunctions functions) throws IOException {
         for (JassFunction f : functions) {
             printFunction(sb, f);
+            flush(sb, out, FLUSH_SIZE);
         }
     }
 
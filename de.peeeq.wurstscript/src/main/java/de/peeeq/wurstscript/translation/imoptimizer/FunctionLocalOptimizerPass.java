@@ -0,0 +1,45 @@
+package de.peeeq.wurstscript.translation.imoptimizer;
+
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * An optimizer pass which optimizes each function independently of the other functions.
+ * <p>
+ * After {@link #prepare(ImTranslator)} was called, {@link #optimizeFunction(ImTranslator, ImFunction)}
+ * can be called concurrently for different functions.
+ * This is used by {@link ImOptimizer} to run the pass on several threads.
+ */
+public interface FunctionLocalOptimizerPass extends FunctionOptimizerPass {
+
+    /**
+     * Calculates the program wide information used when optimizing functions.
+     * This is called before optimizing a group of functions and must not be called concurrently.
+     */
+    void prepare(ImTranslator trans);
+
+    /**
+     * Optimizes a single function.
+     * This must only change the given function and must only read program wide information calculated in prepare.
+     *
+     * @return the number of changes
+     */
+    int optimizeFunction(ImTranslator trans, ImFunction func);
+
+    @Override
+    default int optimizeFunctions(ImTranslator trans, Collection<ImFunction> functions, Set<ImFunction> changedFunctions) {
+        prepare(trans);
+        int changes = 0;
+        for (ImFunction func : functions) {
+            int count = optimizeFunction(trans, func);
+            if (count > 0) {
+                changes += count;
+                changedFunctions.add(func);
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,28 @@
+package de.peeeq.wurstscript.translation.imoptimizer;
+
+import de.peeeq.wurstscript.jassIm.ImFunction;
+import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * An optimizer pass which can be restricted to some functions of the program
+ * and which reports the functions it changed.
+ * <p>
+ * This is used by {@link ImOptimizer#localOptimizations()} to only revisit
+ * functions which changed in the previous round.
+ */
+public interface FunctionOptimizerPass extends OptimizerPass {
+
+    /**
+     * Optimizes the given functions.
+     *
+     * @param functions        the functions to optimize
+     * @param changedFunctions all functions changed by this pass are added to this set.
+     *                         Passes working on global state (like inlining global variables)
+     *                         can also change functions which were not given.
+     * @return the number of changes
+     */
+    int optimizeFunctions(ImTranslator trans, Collection<ImFunction> functions, Set<ImFunction> changedFunctions);
+}
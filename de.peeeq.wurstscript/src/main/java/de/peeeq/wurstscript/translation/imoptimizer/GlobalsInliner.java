@@ -8,14 +8,25 @@ import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.utils.Utils;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class GlobalsInliner implements OptimizerPass {
+public class GlobalsInliner implements FunctionOptimizerPass {
 
     public int optimize(ImTranslator trans) {
+        return optimizeFunctions(trans, ImHelper.calculateFunctionsOfProg(trans.getImProg()), new HashSet<>());
+    }
+
+    /**
+     * Inlines global variables into all functions of the program, not only into the given functions.
+     * The changed functions are the functions reading or writing an inlined variable.
+     */
+    @Override
+    public int optimizeFunctions(ImTranslator trans, Collection<ImFunction> functions, Set<ImFunction> changedFunctions) {
         int obsoleteCount = 0;
         ImProg prog = trans.getImProg();
         prog.clearAttributes(); // TODO only clear read/write attributes
@@ -48,9 +59,12 @@ public class GlobalsInliner implements OptimizerPass {
                     continue;
                 }
 
+                ImFunction writeFunc = obs.getNearestFunc();
                 ImExpr replacement = findReplacement(right, obs);
                 if (replacement != null) {
+                    changedFunctions.add(writeFunc);
                     for (ImVarRead v3 : v.attrReads()) {
+                        addNearestFunc(v3, changedFunctions);
                         v3.replaceBy(replacement.copy());
                     }
                 }
@@ -70,7 +84,9 @@ public class GlobalsInliner implements OptimizerPass {
                             boolean isDefault = defaultValue.structuralEquals(write);
                             if (isDefault) {
                                 // Assignment is default value and can be removed
-                                v.attrWrites().iterator().next().replaceBy(ImHelper.nullExpr());
+                                ImVarWrite defaultWrite = v.attrWrites().iterator().next();
+                                addNearestFunc(defaultWrite, changedFunctions);
+                                defaultWrite.replaceBy(ImHelper.nullExpr());
                             }
                         } catch (Exception e) {
                             throw new CompileError(write.attrTrace().attrErrorPos(),
@@ -88,6 +104,7 @@ public class GlobalsInliner implements OptimizerPass {
             if (i.attrWrites().size() > 0) {
                 ImVarWrite write = Utils.getFirstAndOnly(i.attrWrites());
                 if (write.getParent() != null) {
+                    addNearestFunc(write, changedFunctions);
                     write.replaceBy(write.getRight().copy());
                 }
             }
@@ -96,6 +113,13 @@ public class GlobalsInliner implements OptimizerPass {
         return obsoleteCount;
     }
 
+    private static void addNearestFunc(Element e, Set<ImFunction> functions) {
+        ImFunction f = e.getNearestFunc();
+        if (f != null) {
+            functions.add(f);
+        }
+    }
+
     @Nullable
     private ImExpr findReplacement(ImExpr right, ImVarWrite obs) {
         ImExpr replacement;
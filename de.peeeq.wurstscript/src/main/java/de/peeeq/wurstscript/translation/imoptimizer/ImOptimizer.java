@@ -8,22 +8,29 @@ import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.utils.Pair;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 
 public class ImOptimizer {
     private int totalFunctionsRemoved = 0;
     private int totalGlobalsRemoved = 0;
 
-    private static final ArrayList<OptimizerPass> localPasses = new ArrayList<>();
-    private static final HashMap<String, Integer> totalCount = new HashMap<>();
+    // the passes are created for each optimizer, because they keep state while optimizing
+    private final ArrayList<FunctionOptimizerPass> localPasses = new ArrayList<>();
+    private final HashMap<String, Integer> totalCount = new HashMap<>();
 
-    static {
+    {
         localPasses.add(new SimpleRewrites());
         localPasses.add(new ConstantAndCopyPropagation());
         localPasses.add(new UselessFunctionCallsRemover());
@@ -51,39 +58,187 @@ public class ImOptimizer {
 
     public void doInlining() {
         // remove garbage to reduce work for the inliner
-        removeGarbage();
+        timeTaker.measure("remove garbage", this::removeGarbage);
         GlobalsInliner globalsInliner = new GlobalsInliner();
-        globalsInliner.optimize(trans);
+        timeTaker.measure(globalsInliner.getName(), () -> countChanges(globalsInliner.optimize(trans)));
         ImInliner inliner = new ImInliner(trans);
-        inliner.doInlining();
+        timeTaker.measure("inliner", inliner::doInlining);
         trans.assertProperties();
         // remove garbage, because inlined functions can be removed
-        removeGarbage();
+        timeTaker.measure("remove garbage", this::removeGarbage);
     }
 
-    private int optCount = 1;
-
+    /**
+     * Runs the local optimization passes until no more changes are found (at most 10 rounds).
+     * <p>
+     * The first round optimizes all functions. Later rounds only optimize the functions
+     * which changed in the previous round and the functions calling them
+     * (because the side effects of the called functions might have changed).
+     * <p>
+     * Passes implementing {@link FunctionLocalOptimizerPass} are run on several threads, if
+     * enabled with the optimizerThreads option. The other passes are run sequentially between them.
+     * The result does not depend on the number of threads.
+     */
     public void localOptimizations() {
+        int threads = trans.getRunArgs().getOptimizerThreads();
+        if (threads <= 1) {
+            localOptimizations(null);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("wurst-optimizer-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+        try {
+            localOptimizations(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param pool the pool for running function local passes in parallel or null to run them sequentially
+     */
+    private void localOptimizations(@Nullable ForkJoinPool pool) {
         totalCount.clear();
-        removeGarbage();
+        timeTaker.measure("remove garbage", this::removeGarbage);
 
+        Set<ImFunction> worklist = new LinkedHashSet<>(trans.getImProg().getFunctions());
+        for (ImClass c : trans.getImProg().getClasses()) {
+            worklist.addAll(c.getFunctions());
+        }
         int finalItr = 0;
-        for (int i = 1; i <= 10 && optCount > 0; i++) {
-            optCount = 0;
-            localPasses.forEach(pass -> {
-                int count = timeTaker.measure(pass.getName(), () -> pass.optimize(trans));
-                optCount += count;
-                totalCount.put(pass.getName(), totalCount.getOrDefault(pass.getName(), 0) + count);
-            });
-            trans.getImProg().flatten(trans);
-            removeGarbage();
+        for (int i = 1; i <= 10 && !worklist.isEmpty(); i++) {
+            Set<ImFunction> functions = worklist;
+            Set<ImFunction> changedFunctions = new LinkedHashSet<>();
+            int optCount = timeTaker.measure("optimization round " + i, () -> optimizationRound(pool, functions, changedFunctions));
             finalItr = i;
-            WLogger.info("=== Optimization pass: " + i + " opts: " + optCount + " ===");
+            WLogger.info("=== Optimization pass: " + i + " opts: " + optCount + " functions: " + functions.size() + " ===");
+            if (optCount == 0) {
+                break;
+            }
+            worklist = functionsToRevisit(changedFunctions);
         }
         WLogger.info("=== Local optimizations done! Ran " + finalItr + " passes. ===");
         totalCount.forEach((k, v) -> WLogger.info("== " + k + ":   " + v));
     }
 
+    /**
+     * runs all local passes on the given functions
+     *
+     * @param worklist         the functions to optimize, functions changed by a pass are added, so that later passes visit them as well
+     * @param changedFunctions collects all functions changed in this round
+     * @return the number of changes
+     */
+    private int optimizationRound(@Nullable ForkJoinPool pool, Set<ImFunction> worklist, Set<ImFunction> changedFunctions) {
+        timeTaker.addCount("functions", worklist.size());
+        int optCount = 0;
+        for (FunctionOptimizerPass pass : localPasses) {
+            List<ImFunction> functions = new ArrayList<>(worklist);
+            Set<ImFunction> changedByPass = new LinkedHashSet<>();
+            int count = timeTaker.measure(pass.getName(), () -> {
+                if (pool != null && pass instanceof FunctionLocalOptimizerPass) {
+                    return countChanges(optimizeInParallel(pool, (FunctionLocalOptimizerPass) pass, functions, changedByPass));
+                }
+                return countChanges(pass.optimizeFunctions(trans, functions, changedByPass));
+            });
+            optCount += count;
+            totalCount.put(pass.getName(), totalCount.getOrDefault(pass.getName(), 0) + count);
+            worklist.addAll(changedByPass);
+            changedFunctions.addAll(changedByPass);
+        }
+        if (optCount > 0) {
+            timeTaker.measure("flatten", () -> {
+                for (ImFunction f : changedFunctions) {
+                    f.flatten(trans);
+                }
+            });
+            // only the changed functions have to be analyzed again
+            timeTaker.measure("remove garbage", () -> removeGarbage(new HashSet<>(changedFunctions), changedFunctions));
+        }
+        timeTaker.addCount("changes", optCount);
+        return optCount;
+    }
+
+    /**
+     * optimizes the functions in parallel, the changed functions are added in the order of the given functions
+     */
+    private int optimizeInParallel(ForkJoinPool pool, FunctionLocalOptimizerPass pass, List<ImFunction> functions, Set<ImFunction> changedFunctions) {
+        pass.prepare(trans);
+        int[] changes = new int[functions.size()];
+        pool.invoke(new OptimizeFunctionsTask(pass, functions, changes, 0, functions.size()));
+        int total = 0;
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i] > 0) {
+                total += changes[i];
+                changedFunctions.add(functions.get(i));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * optimizes the functions in the given index range, by splitting the range until a single function is left
+     */
+    private class OptimizeFunctionsTask extends RecursiveAction {
+        private final FunctionLocalOptimizerPass pass;
+        private final List<ImFunction> functions;
+        private final int[] changes;
+        private final int start;
+        private final int end;
+
+        OptimizeFunctionsTask(FunctionLocalOptimizerPass pass, List<ImFunction> functions, int[] changes, int start, int end) {
+            this.pass = pass;
+            this.functions = functions;
+            this.changes = changes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                for (int i = start; i < end; i++) {
+                    changes[i] = pass.optimizeFunction(trans, functions.get(i));
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new OptimizeFunctionsTask(pass, functions, changes, start, mid),
+                    new OptimizeFunctionsTask(pass, functions, changes, mid, end));
+        }
+    }
+
+    /**
+     * calculates the functions to optimize in the next round:
+     * the changed functions, which are still used, and the functions calling them
+     */
+    private Set<ImFunction> functionsToRevisit(Set<ImFunction> changedFunctions) {
+        Set<ImFunction> usedFunctions = trans.getUsedFunctions();
+        Set<ImFunction> result = new LinkedHashSet<>();
+        for (ImFunction f : changedFunctions) {
+            if (usedFunctions.contains(f)) {
+                result.add(f);
+            }
+        }
+        trans.getCalledFunctions().forEach((caller, called) -> {
+            if (changedFunctions.contains(called) && usedFunctions.contains(caller)) {
+                result.add(caller);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * reports the number of changes done by an optimization pass to the time taker
+     */
+    private int countChanges(int changes) {
+        timeTaker.addCount("changes", changes);
+        return changes;
+    }
+
     public void doNullsetting() {
         NullSetter ns = new NullSetter(trans);
         ns.optimize();
@@ -91,11 +246,33 @@ public class ImOptimizer {
     }
 
     public void removeGarbage() {
+        removeGarbage(null, new HashSet<>());
+    }
+
+    /**
+     * removes unused functions and variables
+     * <p>
+     * After the first iteration, only the functions changed in the previous iteration are analyzed again
+     * and only the functions changed or using a variable which is no longer read are searched for
+     * assignments to remove.
+     *
+     * @param dirtyFunctions   the functions changed since the last calculation of the call relations,
+     *                         or null if all functions have to be analyzed
+     * @param changedFunctions functions changed by removing assignments or locals are added to this set
+     */
+    private void removeGarbage(@Nullable Set<ImFunction> dirtyFunctions, Set<ImFunction> changedFunctions) {
         boolean changes = true;
         int iterations = 0;
+        Set<ImFunction> dirty = dirtyFunctions;
         while (changes && iterations++ < 10) {
             ImProg prog = trans.imProg();
-            trans.calculateCallRelationsAndUsedVariables();
+            Set<ImVar> readBefore = null;
+            if (dirty == null) {
+                trans.calculateCallRelationsAndUsedVariables();
+            } else {
+                readBefore = new HashSet<>(trans.getReadVariables());
+                trans.updateCallRelationsAndUsedVariables(dirty);
+            }
 
             // keep only used variables
             int globalsBefore = prog.getGlobals().size();
@@ -118,7 +295,12 @@ public class ImOptimizer {
                 totalFunctionsRemoved += classFunctionsBefore - classFunctionsAfter;
                 allFunctions.addAll(c.getFunctions());
             }
-            for (ImFunction f : allFunctions) {
+            Collection<ImFunction> functionsToClean = allFunctions;
+            if (dirty != null) {
+                functionsToClean = functionsToClean(allFunctions, dirty, readBefore);
+            }
+            dirty = new HashSet<>();
+            for (ImFunction f : functionsToClean) {
                 // remove set statements to unread variables
                 final List<Pair<ImStmt, List<ImExpr>>> replacements = Lists.newArrayList();
                 f.accept(new ImFunction.DefaultVisitor() {
@@ -142,6 +324,10 @@ public class ImOptimizer {
                     }
 
                 });
+                if (!replacements.isEmpty()) {
+                    dirty.add(f);
+                    changedFunctions.add(f);
+                }
                 for (Pair<ImStmt, List<ImExpr>> pair : replacements) {
                     changes = true;
                     ImExpr r;
@@ -159,9 +345,37 @@ public class ImOptimizer {
                 }
 
                 // keep only read local variables
-                changes |= f.getLocals().retainAll(trans.getReadVariables());
+                if (f.getLocals().retainAll(trans.getReadVariables())) {
+                    changes = true;
+                    dirty.add(f);
+                    changedFunctions.add(f);
+                }
+            }
+        }
+        if (dirty != null && !dirty.isEmpty()) {
+            // stopped after the maximum number of iterations:
+            // the cached uses of the functions changed in the last iteration are outdated
+            trans.invalidateFunctionUses(dirty);
+        }
+    }
+
+    /**
+     * Calculates the functions which can contain assignments to variables which are not read:
+     * the changed functions and the functions using a variable which was read before the last calculation.
+     * The other functions were already cleaned before.
+     */
+    private Collection<ImFunction> functionsToClean(Set<ImFunction> allFunctions, Set<ImFunction> dirty, Set<ImVar> readBefore) {
+        Set<ImVar> noLongerRead = new HashSet<>(readBefore);
+        noLongerRead.removeAll(trans.getReadVariables());
+        Set<ImFunction> result = new HashSet<>();
+        for (ImFunction f : allFunctions) {
+            if (dirty.contains(f)) {
+                result.add(f);
+            } else if (!noLongerRead.isEmpty() && !Collections.disjoint(trans.getUsedVariables(f), noLongerRead)) {
+                result.add(f);
             }
         }
+        return result;
     }
 
 }
@@ -4,11 +4,14 @@ import de.peeeq.wurstscript.WurstOperator;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.translation.imtranslation.ImHelper;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
+import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
 /**
  * this optimization is supposed to remove useless calls like
@@ -17,7 +20,7 @@ import java.util.ListIterator;
  * <p>
  * when the result is not used
  */
-public class UselessFunctionCallsRemover implements OptimizerPass {
+public class UselessFunctionCallsRemover implements FunctionOptimizerPass {
     public int totalCallsRemoved = 0;
 
     public int optimize(ImTranslator trans) {
@@ -29,6 +32,20 @@ public class UselessFunctionCallsRemover implements OptimizerPass {
         return totalCallsRemoved;
     }
 
+    @Override
+    public int optimizeFunctions(ImTranslator trans, Collection<ImFunction> functions, Set<ImFunction> changedFunctions) {
+        totalCallsRemoved = 0;
+        for (ImFunction func : functions) {
+            int removedBefore = totalCallsRemoved;
+            optimizeStmts(func.getBody());
+            if (totalCallsRemoved > removedBefore) {
+                func.flatten(trans);
+                changedFunctions.add(func);
+            }
+        }
+        return totalCallsRemoved;
+    }
+
     @Override
     public String getName() {
         return "Useless function calls removed";
@@ -111,7 +128,7 @@ public class UselessFunctionCallsRemover implements OptimizerPass {
         return func.isNative() && isFunctionWithoutSideEffect(func.getName());
     }
 
-    private static List<String> functionsWithoutSideEffects;
+    private static volatile @Nullable List<String> functionsWithoutSideEffects;
 
     /**
      * checks if the jass-function with the given name can have no side effects.
@@ -119,14 +136,15 @@ public class UselessFunctionCallsRemover implements OptimizerPass {
      * on external state, but they never change it.
      */
     public static boolean isFunctionWithoutSideEffect(String funcName) {
-        initFunctionsWithoutSideEffects();
-        int res = Collections.binarySearch(functionsWithoutSideEffects, funcName);
+        int res = Collections.binarySearch(getFunctionsWithoutSideEffects(), funcName);
         return res >= 0;
     }
 
-    private static void initFunctionsWithoutSideEffects() {
-        if (functionsWithoutSideEffects == null) {
-            functionsWithoutSideEffects = Arrays.asList("AbilityId", "AbilityId2String", "Acos", "And", "Asin", "Atan",
+    private static List<String> getFunctionsWithoutSideEffects() {
+        List<String> functions = functionsWithoutSideEffects;
+        if (functions == null) {
+            // optimizer passes run on several threads, so the list is only published when it is complete
+            functions = Arrays.asList("AbilityId", "AbilityId2String", "Acos", "And", "Asin", "Atan",
                     "Atan2", "ConvertAIDifficulty", "ConvertAllianceType", "ConvertAttackType", "ConvertBlendMode",
                     "ConvertCameraField", "ConvertDamageType", "ConvertDialogEvent", "ConvertEffectType",
                     "ConvertFGameState", "ConvertFogState", "ConvertGameDifficulty", "ConvertGameEvent",
@@ -224,8 +242,10 @@ public class UselessFunctionCallsRemover implements OptimizerPass {
                     "StringLength", "SubString", "Tan", "TimerGetElapsed", "TimerGetRemaining", "TimerGetTimeout",
                     "VersionGet", "WaygateGetDestinationX", "WaygateGetDestinationY", "WaygateIsActive");
             // just to be sure, sort it again
-            Collections.sort(functionsWithoutSideEffects);
+            Collections.sort(functions);
+            functionsWithoutSideEffects = functions;
         }
+        return functions;
     }
 
 }
@@ -20,11 +20,29 @@ public class VariableUses {
         public void addRead(ImVar v, ImVarRead r) {
             reads.put(v, r);
         }
+
+        /**
+         * the reads of the given variable, changes to the returned collection are written through
+         */
+        public Collection<ImVarRead> getReads(ImVar v) {
+            return reads.get(v);
+        }
+
+        public Collection<ImVarWrite> getWrites(ImVar v) {
+            return writes.get(v);
+        }
     }
 
     public static Uses calcVarUses(ImProg imProg) {
+        return calcVarUses((Element) imProg);
+    }
+
+    /**
+     * calculates the uses of variables in the given element, for example in a single function
+     */
+    public static Uses calcVarUses(Element elem) {
         final Uses result = new Uses();
-        imProg.accept(new ImProg.DefaultVisitor() {
+        elem.accept(new Element.DefaultVisitor() {
             @Override
             public void visit(ImSet imSet) {
                 Element.DefaultVisitor thiz = this;
@@ -1,17 +1,26 @@
 package de.peeeq.wurstscript.translation.imtojass;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import de.peeeq.wurstscript.jassIm.*;
 import de.peeeq.wurstscript.types.*;
+import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 public class ImAttrType {
 
-    static ImType wurstClassType = TypesHelper.imInt();
+    // programs which are translated to Lua, where objects are not represented by integers
+    private static final Set<ImProg> luaProgs = Collections.synchronizedSet(Sets.newIdentityHashSet());
 
-    public static void setWurstClassType(ImType newType) {
-        wurstClassType = newType;
+    public static void setTranslatingToLua(ImProg prog, boolean translatingToLua) {
+        if (translatingToLua) {
+            luaProgs.add(prog);
+        } else {
+            luaProgs.remove(prog);
+        }
     }
 
     public static ImType getType(ImBoolVal e) {
@@ -189,11 +198,26 @@ public class ImAttrType {
     }
 
     public static ImType getType(ImAlloc imAlloc) {
-        if(wurstClassType != null) {
-            return wurstClassType;
-        } else {
+        if (isTranslatingToLua(imAlloc.getClazz().getClassDef())) {
             return imAlloc.getClazz();
+        } else {
+            return TypesHelper.imInt();
+        }
+    }
+
+    private static boolean isTranslatingToLua(Element elem) {
+        if (luaProgs.isEmpty()) {
+            return false;
         }
+        // the class stays attached to the program, even when the allocation is not
+        @Nullable Element e = elem;
+        while (e != null) {
+            if (e instanceof ImProg) {
+                return luaProgs.contains(e);
+            }
+            e = e.getParent();
+        }
+        return false;
     }
 
     public static ImType getType(ImDealloc imDealloc) {
@@ -65,6 +65,8 @@ public class ImTranslator {
     private @Nullable Set<ImVar> usedVariables = null;
     private @Nullable Set<ImVar> readVariables = null;
     private @Nullable Set<ImFunction> usedFunctions = null;
+    // the variables and functions used by each function, cached between calculations of the call relations
+    private final Map<ImFunction, FunctionUses> functionUses = new HashMap<>();
 
     private @Nullable ImFunction debugPrintFunction;
 
@@ -1031,13 +1033,41 @@ public class ImTranslator {
         return callRelations;
     }
 
+    /**
+     * Calculates the call relations and used variables by analyzing all functions reachable from main and config.
+     */
     public void calculateCallRelationsAndUsedVariables() {
+        functionUses.clear();
+        recalculateCallRelationsAndUsedVariables();
+    }
+
+    /**
+     * Like {@link #calculateCallRelationsAndUsedVariables()}, but only analyzes the given functions again.
+     * For the other functions, the results of the previous calculation are used,
+     * so all functions changed since the previous calculation must be given.
+     */
+    public void updateCallRelationsAndUsedVariables(Collection<ImFunction> changedFunctions) {
+        functionUses.keySet().removeAll(changedFunctions);
+        recalculateCallRelationsAndUsedVariables();
+    }
+
+    /**
+     * Forgets the analysis results of the given functions, so that the next update of the call relations
+     * analyzes them again, even if they are not given to {@link #updateCallRelationsAndUsedVariables(Collection)}.
+     */
+    public void invalidateFunctionUses(Collection<ImFunction> changedFunctions) {
+        functionUses.keySet().removeAll(changedFunctions);
+    }
+
+    private void recalculateCallRelationsAndUsedVariables() {
         callRelations = HashMultimap.create();
         usedVariables = Sets.newLinkedHashSet();
         readVariables = Sets.newLinkedHashSet();
         usedFunctions = Sets.newLinkedHashSet();
         calculateCallRelations(getMainFunc());
         calculateCallRelations(getConfFunc());
+        // forget removed functions
+        functionUses.keySet().retainAll(usedFunctions);
 
 //		WLogger.info("USED FUNCS:");
 //		for (ImFunction f : usedFunctions) {
@@ -1051,11 +1081,11 @@ public class ImTranslator {
         }
         getUsedFunctions().add(f);
 
-        getUsedVariables().addAll(f.calcUsedVariables());
-        getReadVariables().addAll(f.calcReadVariables());
+        FunctionUses uses = functionUses.computeIfAbsent(f, FunctionUses::new);
+        getUsedVariables().addAll(uses.usedVariables);
+        getReadVariables().addAll(uses.readVariables);
 
-        Set<ImFunction> calledFuncs = f.calcUsedFunctions();
-        for (ImFunction called : calledFuncs) {
+        for (ImFunction called : uses.usedFunctions) {
             if (f != called) { // ignore reflexive call relations
                 getCallRelations().put(f, called);
             }
@@ -1068,6 +1098,27 @@ public class ImTranslator {
         return callRelations;
     }
 
+    /**
+     * The variables used by a function as calculated by the last calculation of the call relations.
+     * Returns an empty set for functions not reachable from main or config.
+     */
+    public Set<ImVar> getUsedVariables(ImFunction f) {
+        FunctionUses uses = functionUses.get(f);
+        return uses == null ? Collections.emptySet() : uses.usedVariables;
+    }
+
+    private static class FunctionUses {
+        private final Set<ImVar> usedVariables;
+        private final Set<ImVar> readVariables;
+        private final Set<ImFunction> usedFunctions;
+
+        FunctionUses(ImFunction f) {
+            this.usedVariables = f.calcUsedVariables();
+            this.readVariables = f.calcReadVariables();
+            this.usedFunctions = f.calcUsedFunctions();
+        }
+    }
+
 
     public ImFunction getMainFunc() {
         return mainFunc;
@@ -1,5 +1,7 @@
 package de.peeeq.wurstscript.utils;
 
+import java.util.Arrays;
+
 public class LineOffsets {
     int[] offsets = new int[128];
     int maxLine = 0;
@@ -56,6 +58,21 @@ public class LineOffsets {
         return min;
     }
 
+    /**
+     * returns the offsets of all lines, the inverse of {@link #fromArray(int[])}
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(offsets, maxLine + 1);
+    }
+
+    public static LineOffsets fromArray(int[] lineOffsets) {
+        LineOffsets result = new LineOffsets();
+        for (int line = 0; line < lineOffsets.length; line++) {
+            result.set(line, lineOffsets[line]);
+        }
+        return result;
+    }
+
     public int getColumn(int offset) {
         int line = getLine(offset);
         return offset - get(line - 1);
@@ -11,7 +11,7 @@ public enum TempDir {
     ;
     private static File tempDir;
 
-    public static File get() {
+    public static synchronized File get() {
         if (tempDir == null) {
             try {
                 Path path = Paths.get(System.getProperty("java.io.tmpdir") + "wurst");
@@ -0,0 +1,122 @@
+package tests.wurstscript.tests;
+
+import org.testng.annotations.Test;
+
+/**
+ * Runs programs with the closure compiling interpreter.
+ * All other tests use the tree walking interpreter, unless the system property wurst.closureInterpreter is set.
+ */
+public class ClosureInterpreterTests extends WurstScriptTest {
+
+    @Test
+    public void loops() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "init",
+                "    var sum = 0",
+                "    for i = 1 to 10",
+                "        if i == 8",
+                "            break",
+                "        sum += i",
+                "    var j = 0",
+                "    while true",
+                "        j++",
+                "        if j > 5",
+                "            break",
+                "    if sum == 28 and j == 6",
+                "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void returnFromNestedLoop() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "function find(int x) returns int",
+                "    for i = 0 to 10",
+                "        for j = 0 to 10",
+                "            if i * j == x",
+                "                return i + j",
+                "    return -1",
+                "init",
+                "    if find(12) == 8 and find(1000) == -1",
+                "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void recursion() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "function fib(int n) returns int",
+                "    if n <= 1",
+                "        return n",
+                "    return fib(n - 1) + fib(n - 2)",
+                "init",
+                "    if fib(15) == 610",
+                "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void classesAndArrays() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "int array values",
+                "class A",
+                "    int x",
+                "    construct(int x)",
+                "        this.x = x",
+                "    function get() returns int",
+                "        return x",
+                "class B extends A",
+                "    construct(int x)",
+                "        super(x * 2)",
+                "    override function get() returns int",
+                "        return super.get() + 1",
+                "init",
+                "    for i = 0 to 4",
+                "        values[i] = i * i",
+                "    A a = new B(values[3])",
+                "    if a.get() == 19",
+                "        testSuccess()",
+                "    destroy a"
+        );
+    }
+
+    @Test
+    public void tuplesAndStrings() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "tuple pair(int a, string b)",
+                "function swap(pair p) returns pair",
+                "    return pair(p.a + 1, p.b + \"!\")",
+                "init",
+                "    let p = swap(pair(1, \"x\"))",
+                "    if p.a == 2 and p.b == \"x!\"",
+                "        testSuccess()"
+        );
+    }
+
+    @Test
+    public void closures() {
+        test().withClosureInterpreter().executeProg().lines(
+                "package test",
+                "native testSuccess()",
+                "interface F",
+                "    function apply(int x) returns int",
+                "function twice(F f, int x) returns int",
+                "    return f.apply(f.apply(x))",
+                "init",
+                "    let y = 3",
+                "    if twice(x -> x + y, 1) == 7",
+                "        testSuccess()"
+        );
+    }
+
+}
@@ -155,6 +155,51 @@ public class CompiletimeTests extends WurstScriptTest {
                         "        testSuccess()");
     }
 
+    @Test
+    public void testCompiletimeHashtableSlots() {
+        test().executeProg(true)
+                .runCompiletimeFunctions(true)
+                .executeProgOnlyAfterTransforms()
+                .lines("type agent extends handle",
+                        "type hashtable extends agent",
+                        "package Test",
+                        "native testSuccess()",
+                        "@extern native InitHashtable() returns hashtable",
+                        "@extern native LoadInteger(hashtable h, int p, int c) returns int",
+                        "@extern native SaveInteger(hashtable h, int p, int c, int i)",
+                        "@extern native LoadReal(hashtable h, int p, int c) returns real",
+                        "@extern native SaveReal(hashtable h, int p, int c, real i)",
+                        "@extern native HaveSavedInteger(hashtable h, int p, int c) returns bool",
+                        "@extern native HaveSavedReal(hashtable h, int p, int c) returns bool",
+                        "@extern native RemoveSavedInteger(hashtable h, int p, int c)",
+                        "@extern native FlushChildHashtable(hashtable h, int p)",
+                        "function compiletime(hashtable h) returns hashtable",
+                        "    return h",
+                        "let h = compiletime(InitHashtable())",
+                        "@compiletime",
+                        "function foo()",
+                        "    for i = 1 to 200",
+                        "        SaveInteger(h, i, -i, i * i)",
+                        "    for i = 1 to 200 step 2",
+                        "        RemoveSavedInteger(h, i, -i)",
+                        "    SaveInteger(h, 7, 8, 1)",
+                        "    SaveReal(h, 7, 8, 2.5)",
+                        "    RemoveSavedInteger(h, 7, 8)",
+                        "    SaveInteger(h, 9, 1, 1)",
+                        "    SaveInteger(h, 9, 2, 2)",
+                        "    FlushChildHashtable(h, 9)",
+                        "init",
+                        "    var ok = true",
+                        "    for i = 1 to 200",
+                        "        ok = ok and HaveSavedInteger(h, i, -i) == (i mod 2 == 0)",
+                        "        if i mod 2 == 0",
+                        "            ok = ok and LoadInteger(h, i, -i) == i * i",
+                        "    ok = ok and not HaveSavedInteger(h, 7, 8) and HaveSavedReal(h, 7, 8) and LoadReal(h, 7, 8) == 2.5",
+                        "    ok = ok and not HaveSavedInteger(h, 9, 1) and LoadInteger(h, 9, 2) == 0",
+                        "    if ok",
+                        "        testSuccess()");
+    }
+
     @Test
     public void testPersistCompiletimeClass() {
         test().executeProg(true)
@@ -0,0 +1,84 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.languageserver.requests.RunTests;
+import de.peeeq.wurstscript.RunArgs;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class InterpreterProfilerTests extends WurstScriptTest {
+
+    private final List<CU> units = Collections.singletonList(compilationUnit("test.wurst",
+            "package test",
+            "native testFail(string msg)",
+            "class A",
+            "function fib(int n) returns int",
+            "    if n < 2",
+            "        return n",
+            "    return fib(n - 1) + fib(n - 2)",
+            "function allocate()",
+            "    for i = 1 to 10",
+            "        destroy new A",
+            "@test function profiled()",
+            "    allocate()",
+            "    if fib(15) != 610",
+            "        testFail(\"fib\")",
+            "@test function profiledAgain()",
+            "    if fib(15) != 610",
+            "        testFail(\"fib again\")"));
+
+    @Test
+    public void collapsedStacks() throws IOException {
+        File output = runProfiled(1);
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.stream().anyMatch(l -> l.matches(".*profiled \\(test.wurst:\\d+\\);\\w*fib .* \\d+")), lines.toString());
+        for (String line : lines) {
+            assertTrue(line.matches("[^;]+(;[^;]+)* \\d+"), line);
+        }
+    }
+
+    @Test
+    public void report() throws IOException {
+        File output = runProfiled(1);
+        String report = new String(Files.readAllBytes(new File(output.getPath() + ".report.txt").toPath()), StandardCharsets.UTF_8);
+        assertTrue(report.matches("(?s).* 3946 +0 +\\w*fib \\(test.wurst:\\d+\\).*"), report);
+        // the objects are allocated in the function created for the constructor
+        assertTrue(report.matches("(?s).* 10  \\w+ \\(test.wurst:\\d+\\).*"), report);
+    }
+
+    @Test
+    public void parallelTestsAreMerged() throws IOException {
+        File output = runProfiled(2);
+        String report = new String(Files.readAllBytes(new File(output.getPath() + ".report.txt").toPath()), StandardCharsets.UTF_8);
+        assertTrue(report.matches("(?s).* 3946 +0 +\\w*fib \\(test.wurst:\\d+\\).*"), report);
+    }
+
+    @Test
+    public void testProfileDoesNotOverwriteCompiletimeProfile() {
+        // -profileInterpreter is also used for the profile of the compiletime functions
+        assertEquals(RunTests.testProfileFile("build/profile.collapsed"), new File("build", "profile.tests.collapsed"));
+        assertEquals(RunTests.testProfileFile("profile"), new File("profile.tests"));
+    }
+
+    private File runProfiled(int threads) throws IOException {
+        WurstCompilerJassImpl compiler = translateToIm(units, new RunArgs("-runcompiletimefunctions"));
+        File output = File.createTempFile("interpreter-profile", ".collapsed");
+        output.deleteOnExit();
+        new File(output.getPath() + ".report.txt").deleteOnExit();
+        RunTests runTests = quietRunTests(threads);
+        runTests.setProfileOutput(output);
+        RunTests.TestResult result = runTests.runTests(compiler.getImTranslator(), compiler.getImProg(), Optional.empty(), Optional.empty());
+        assertEquals(result.getPassedTests(), 2);
+        return output;
+    }
+}
@@ -0,0 +1,41 @@
+package tests.wurstscript.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class JassPrinterTests extends WurstScriptTest {
+
+    @Test
+    public void printToWriter() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("package test");
+        lines.add("native print(string s)");
+        for (int i = 0; i < 2000; i++) {
+            lines.add("string s" + i + " = \"value " + i + "\"");
+            lines.add("function f" + i + "()");
+            lines.add("    print(s" + i + ")");
+        }
+        lines.add("init");
+        for (int i = 0; i < 2000; i++) {
+            lines.add("    f" + i + "()");
+        }
+        // the test writes the script with JassPrinter.printProg(Writer) and checks it with pjass
+        test().lines(lines.toArray(new String[0]));
+
+        String output = Files.toString(new File("./test-output/JassPrinterTests_printToWriter.j"), Charsets.UTF_8);
+        // the script must be larger than the chunks written to the writer
+        assertTrue(output.length() > 100000);
+        assertTrue(output.split("\nendfunction").length > 2000);
+        // the last chunk must be written as well
+        assertEquals(output.trim().substring(output.trim().lastIndexOf('\n') + 1), "endfunction");
+    }
+}
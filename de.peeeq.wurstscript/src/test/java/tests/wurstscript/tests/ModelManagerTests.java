@@ -1,13 +1,20 @@
 package tests.wurstscript.tests;
 
 import com.google.common.collect.ImmutableSet;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
 import de.peeeq.wurstio.languageserver.BufferManager;
 import de.peeeq.wurstio.languageserver.ModelManagerImpl;
+import de.peeeq.wurstio.languageserver.ModelSnapshot;
 import de.peeeq.wurstio.languageserver.WFile;
+import de.peeeq.wurstio.languageserver.requests.MapRequest;
 import de.peeeq.wurstio.utils.FileUtils;
+import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.FuncDef;
 import de.peeeq.wurstscript.ast.FunctionCall;
 import de.peeeq.wurstscript.ast.FunctionDefinition;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
 import de.peeeq.wurstscript.utils.Utils;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
@@ -21,12 +28,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 public class ModelManagerTests {
 
@@ -112,6 +123,167 @@ public class ModelManagerTests {
 
     }
 
+    @Test
+    public void publicImportChain() throws IOException {
+        File projectFolder = new File("./temp/testProject3/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA = string(
+                "package A",
+                "import B",
+                "init",
+                "    c()"
+        );
+
+        String packageB = string(
+                "package B",
+                "import public C"
+        );
+
+        String packageC = string(
+                "package C",
+                "public function c_old()"
+        );
+
+        String packageD = string(
+                "package D",
+                "import C",
+                "init",
+                "    c()"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileC = WFile.create(new File(wurstFolder, "C.wurst"));
+        WFile fileD = WFile.create(new File(wurstFolder, "D.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+
+        writeFile(fileA, packageA);
+        writeFile(fileB, packageB);
+        writeFile(fileC, packageC);
+        writeFile(fileD, packageD);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+
+        assertThat(results.get(fileA), containsString("Reference to function c could not be resolved"));
+        assertThat(results.get(fileD), containsString("Reference to function c could not be resolved"));
+
+        // changing C must recheck the packages importing C directly or through the public import in B
+        results.clear();
+        manager.syncCompilationUnitContent(fileC, packageC.replace("c_old", "c"));
+        assertEquals(ImmutableSet.of(fileA, fileB, fileC, fileD), results.keySet());
+        assertThat(results.get(fileA), new IsNot<>(containsString("Reference to function c could not be resolved")));
+        assertThat(results.get(fileD), new IsNot<>(containsString("Reference to function c could not be resolved")));
+
+        // after removing the public import, changes to C no longer affect A
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, "package B\n");
+        results.clear();
+        manager.syncCompilationUnitContent(fileC, packageC);
+        assertEquals(ImmutableSet.of(fileC, fileD), results.keySet());
+    }
+
+    @Test
+    public void bodyChangeDoesNotRecheckImporters() throws IOException {
+        File projectFolder = new File("./temp/testProject4/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA = string(
+                "package A",
+                "import B",
+                "init",
+                "    b(undefinedVar)"
+        );
+
+        String packageB = string(
+                "package B",
+                "public function b(int x) returns int",
+                "    return x + 1"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+
+        writeFile(fileA, packageA);
+        writeFile(fileB, packageB);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+        assertThat(results.get(fileA), containsString("undefinedVar"));
+
+        // changing only the body of b does not affect A
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, packageB.replace("x + 1", "x + 1.5"));
+        assertEquals(ImmutableSet.of(fileB), results.keySet());
+        assertThat(results.get(fileB), containsString("Cannot return real"));
+
+        // changing the signature of b rechecks A
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, packageB.replace("int x", "real x"));
+        assertEquals(ImmutableSet.of(fileA, fileB), results.keySet());
+        assertThat(results.get(fileA), containsString("undefinedVar"));
+    }
+
+    @Test
+    public void bodyChangeWithOtherUsagesRechecksImporters() throws IOException {
+        File projectFolder = new File("./temp/testProject5/");
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+
+        String packageA = string(
+                "package A",
+                "import B",
+                "class X",
+                "    use M",
+                "init",
+                "    b(undefinedVar)"
+        );
+
+        String packageB = string(
+                "package B",
+                "int y = 1",
+                "public function b(int x) returns int",
+                "    return x",
+                "public module M",
+                "    function foo() returns int",
+                "        return 1"
+        );
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+
+        writeFile(fileA, packageA);
+        writeFile(fileB, packageB);
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+        assertThat(results.get(fileA), containsString("undefinedVar"));
+
+        // using another variable in the body of b can change the checks of packages calling b during init
+        results.clear();
+        String packageB2 = packageB.replace("return x", "return x + y");
+        manager.syncCompilationUnitContent(fileB, packageB2);
+        assertEquals(ImmutableSet.of(fileA, fileB), results.keySet());
+        assertThat(results.get(fileA), containsString("undefinedVar"));
+
+        // module bodies are expanded into the classes using the module
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, packageB2.replace("return 1", "return 2"));
+        assertEquals(ImmutableSet.of(fileA, fileB), results.keySet());
+        assertThat(results.get(fileA), containsString("undefinedVar"));
+    }
+
     @Test
     public void movingFiles() throws IOException { // #712
         File projectFolder = new File("./temp/testProject2/");
@@ -235,6 +407,187 @@ public class ModelManagerTests {
 
     }
 
+    @Test
+    public void checkedModelUpToDate() throws IOException {
+        File projectFolder = new File("./temp/testProject6/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+        assertTrue(manager.isCheckedModelUpToDate());
+
+        // syncing the content from disk keeps the model up to date
+        WFile fileA = WFile.create(new File(projectFolder, "wurst/A.wurst"));
+        manager.syncCompilationUnitContent(fileA, new String(Files.readAllBytes(fileA.getFile().toPath()), UTF_8));
+        assertTrue(manager.isCheckedModelUpToDate());
+    }
+
+    @Test
+    public void checkedModelWithUnsavedBuffer() throws IOException {
+        File projectFolder = new File("./temp/testProject6/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+
+        // the editor content differs from the file on disk
+        WFile fileA = WFile.create(new File(projectFolder, "wurst/A.wurst"));
+        manager.syncCompilationUnitContent(fileA, string(
+                "package A",
+                "import B",
+                "init",
+                "    b(2)"
+        ));
+        assertFalse(manager.isCheckedModelUpToDate());
+    }
+
+    @Test
+    public void checkedModelWithChangedDependencies() throws IOException {
+        File projectFolder = new File("./temp/testProject6/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+
+        FileUtils.write("", new File(projectFolder, "wurst.dependencies"));
+        assertFalse(manager.isCheckedModelUpToDate());
+    }
+
+    @Test
+    public void checkedModelWithNewFile() throws IOException {
+        File projectFolder = new File("./temp/testProject6/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+
+        writeFile(WFile.create(new File(projectFolder, "wurst/C.wurst")), "package C\n");
+        assertFalse(manager.isCheckedModelUpToDate());
+    }
+
+    @Test
+    public void checkedModelWithUncheckedFile() throws IOException {
+        File projectFolder = new File("./temp/testProject6/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+
+        // the file is parsed again, but not type checked
+        WFile fileB = WFile.create(new File(projectFolder, "wurst/B.wurst"));
+        String packageB = string(
+                "package B",
+                "public function b(int x) returns int",
+                "    return x + 2"
+        );
+        writeFile(fileB, packageB);
+        manager.replaceCompilationUnitContent(fileB, packageB, false);
+        assertFalse(manager.isCheckedModelUpToDate());
+    }
+
+    @Test
+    public void partialCheckAfterCompilingSnapshot() throws IOException {
+        File projectFolder = new File("./temp/testProject7/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        WFile fileA = WFile.create(new File(projectFolder, "wurst/A.wurst"));
+        WFile fileB = WFile.create(new File(projectFolder, "wurst/B.wurst"));
+        int compilationUnits = manager.getModel().size();
+
+        // compile the map script like a map request does
+        try (ModelSnapshot snapshot = manager.snapshot()) {
+            WurstGui gui = new WurstGuiCliImpl();
+            WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(projectFolder, gui, null, new RunArgs());
+            MapRequest.purgeUnimportedFiles(snapshot.getModel(), WFile.create(projectFolder));
+            compiler.checkProg(snapshot.getModel());
+            compiler.translateProgToIm(snapshot.getModel());
+            assertNotNull(compiler.transformProgToJass());
+            assertEquals(gui.getErrorList().toString(), "[]");
+        }
+        assertEquals(manager.getModel().size(), compilationUnits);
+
+        // a partial check on the restored model reports the errors of the changed file and its importers
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, string(
+                "package B",
+                "public function b(real x) returns int",
+                "    return x + 1"
+        ));
+        assertEquals(ImmutableSet.of(fileA, fileB), results.keySet());
+        assertEquals(results.get(fileA), "");
+        assertThat(results.get(fileB), containsString("Cannot return real"));
+
+        results.clear();
+        manager.syncCompilationUnitContent(fileB, string(
+                "package B",
+                "public function b_old(int x) returns int",
+                "    return x + 1"
+        ));
+        assertThat(results.get(fileA), containsString("Reference to function b could not be resolved"));
+        assertEquals(results.get(fileB), "");
+
+        // navigation uses the restored model
+        CompilationUnit cu = manager.getCompilationUnit(fileA);
+        assertEquals(cu.getParent(), manager.getModel());
+    }
+
+    @Test
+    public void syncWithDisk() throws IOException {
+        File projectFolder = new File("./temp/testProject8/");
+        ModelManagerImpl manager = buildCheckedProject(projectFolder);
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        WFile fileA = WFile.create(new File(projectFolder, "wurst/A.wurst"));
+        WFile fileB = WFile.create(new File(projectFolder, "wurst/B.wurst"));
+        WFile fileC = WFile.create(new File(projectFolder, "wurst/C.wurst"));
+
+        // change B, delete A and add C
+        writeFile(fileB, string(
+                "package B",
+                "public function b2(int x) returns int",
+                "    return x + 2"
+        ));
+        assertTrue(fileA.getFile().delete());
+        writeFile(fileC, string(
+                "package C",
+                "import B",
+                "init",
+                "    b(3)"
+        ));
+        results.clear();
+        manager.syncWithDisk();
+
+        assertEquals(manager.getCompilationUnit(fileA), null);
+        assertEquals(functionNames(manager.getCompilationUnit(fileB)), ImmutableSet.of("b2"));
+        assertEquals(manager.getCompilationUnit(fileC).getPackages().get(0).getName(), "C");
+        // the files are only parsed, type checking (which would not find b) is left to the compilation
+        assertThat(String.join("", results.values()), IsNot.not(containsString("could not be resolved")));
+        assertFalse(manager.isCheckedModelUpToDate());
+    }
+
+    private Set<String> functionNames(CompilationUnit cu) {
+        return cu.getPackages().get(0).getElements().stream()
+                .filter(e -> e instanceof FuncDef)
+                .map(e -> ((FuncDef) e).getName())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Creates a project with the packages A and B without errors and builds it.
+     */
+    private ModelManagerImpl buildCheckedProject(File projectFolder) throws IOException {
+        File wurstFolder = new File(projectFolder, "wurst");
+        newCleanFolder(wurstFolder);
+        new File(projectFolder, "wurst.dependencies").delete();
+
+        WFile fileA = WFile.create(new File(wurstFolder, "A.wurst"));
+        WFile fileB = WFile.create(new File(wurstFolder, "B.wurst"));
+        WFile fileWurst = WFile.create(new File(wurstFolder, "Wurst.wurst"));
+        writeFile(fileA, string(
+                "package A",
+                "import B",
+                "init",
+                "    b(1)"
+        ));
+        writeFile(fileB, string(
+                "package B",
+                "public function b(int x) returns int",
+                "    return x + 1"
+        ));
+        writeFile(fileWurst, "package Wurst\n");
+
+        ModelManagerImpl manager = new ModelManagerImpl(projectFolder, new BufferManager());
+        Map<WFile, String> results = keepErrorsInMap(manager);
+        manager.buildProject();
+        assertEquals(results.get(fileA), "");
+        assertEquals(results.get(fileB), "");
+        return manager;
+    }
+
     @NotNull
     private Map<WFile, String> keepErrorsInMap(ModelManagerImpl manager) {
         // keep error messages in a map:
@@ -3,13 +3,18 @@ package tests.wurstscript.tests;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import de.peeeq.wurstio.UtilsIO;
+import de.peeeq.wurstio.WurstCompilerJassImpl;
 import de.peeeq.wurstscript.RunArgs;
 import de.peeeq.wurstscript.ast.Ast;
 import de.peeeq.wurstscript.ast.Element;
 import de.peeeq.wurstscript.ast.WurstModel;
 import de.peeeq.wurstscript.intermediatelang.optimizer.FunctionSplitter;
 import de.peeeq.wurstscript.intermediatelang.optimizer.LocalMerger;
+import de.peeeq.wurstscript.intermediatelang.optimizer.SimpleRewrites;
+import de.peeeq.wurstscript.jassAst.JassProg;
 import de.peeeq.wurstscript.jassIm.*;
+import de.peeeq.wurstscript.jassprinter.JassPrinter;
+import de.peeeq.wurstscript.translation.imtranslation.CallType;
 import de.peeeq.wurstscript.translation.imtranslation.ImTranslator;
 import de.peeeq.wurstscript.types.TypesHelper;
 import de.peeeq.wurstscript.utils.Utils;
@@ -20,8 +25,11 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -599,6 +607,26 @@ public class OptimizerTests extends WurstScriptTest {
         assertFalse("testSuccess should be removed", compiledAndOptimized.contains("testSuccess"));
     }
 
+    @Test
+    public void test_inlinedGlobalRevisited() throws IOException {
+        // the function is changed by the globals inliner and has to be revisited to remove the dead branch
+        test().executeProg().lines(
+                "package test",
+                "	native testSuccess()",
+                "	native testFail(string msg)",
+                "	int limit = 3",
+                "	function check(int x)",
+                "		if limit > 2",
+                "			testSuccess()",
+                "		else",
+                "			testFail(\"dead branch\")",
+                "	init",
+                "		check(1)",
+                "endpackage");
+        String compiledAndOptimized = Files.toString(new File("test-output/OptimizerTests_test_inlinedGlobalRevisited_opt.j"), Charsets.UTF_8);
+        assertFalse("dead branch should be removed", compiledAndOptimized.contains("dead branch"));
+    }
+
     @Test
     public void controlFlowMergeNoSideEffect() throws IOException {
         test().lines(
@@ -1083,4 +1111,116 @@ public class OptimizerTests extends WurstScriptTest {
 
 
     }
+
+    @Test
+    public void parallelLocalOptimizationsSameAsSequential() {
+        List<CU> units = Collections.singletonList(compilationUnit("test.wurst",
+                "package test",
+                "native testSuccess()",
+                "native readInt() returns int",
+                "int limit = 5",
+                "function sum(int n) returns int",
+                "    var s = 0",
+                "    var t = n * 2",
+                "    for i = 0 to t",
+                "        let x = i * 3",
+                "        if x > limit",
+                "            s += x",
+                "        else",
+                "            s += x",
+                "    return s",
+                "function choose(int a) returns int",
+                "    let b = a + 0",
+                "    let c = b",
+                "    if c > 3 and true",
+                "        return c * 1",
+                "    return 2 + 3",
+                "function nested(int a) returns int",
+                "    var r = readInt()",
+                "    let unused = r + 1",
+                "    r = choose(a) + sum(a)",
+                "    return r",
+                "init",
+                "    if nested(readInt()) > choose(1)",
+                "        testSuccess()"));
+        String sequential = compileWithOptimizerThreads(units, 1);
+        String parallel = compileWithOptimizerThreads(units, 4);
+        assertEquals(sequential, parallel);
+    }
+
+    private String compileWithOptimizerThreads(List<CU> units, int threads) {
+        RunArgs runArgs = new RunArgs().with("-localOptimizations", "-optimizerThreads", String.valueOf(threads));
+        WurstCompilerJassImpl compiler = translateToIm(units, runArgs);
+        JassProg prog = compiler.transformProgToJass();
+        assertEquals(compiler.getErrorHandler().getGui().getErrorList().toString(), "[]");
+        return new JassPrinter(true, prog).printProg();
+    }
+
+    @Test
+    public void incrementalCallRelations() {
+        WurstModel model = Ast.WurstModel();
+        ImTranslator tr = new ImTranslator(model, false, new RunArgs());
+        ImProg prog = tr.getImProg();
+        ImVar g1 = JassIm.ImVar(model, TypesHelper.imInt(), "g1", false);
+        ImVar g2 = JassIm.ImVar(model, TypesHelper.imInt(), "g2", false);
+        prog.getGlobals().add(g1);
+        prog.getGlobals().add(g2);
+        ImFunction main = newFunction(prog, "main");
+        ImFunction config = newFunction(prog, "config");
+        ImFunction a = newFunction(prog, "a");
+        ImFunction b = newFunction(prog, "b");
+        tr.setMainFunc(main);
+        tr.setConfigFunc(config);
+        main.getBody().add(JassIm.ImSet(model, JassIm.ImVarAccess(g1), JassIm.ImIntVal(1)));
+        main.getBody().add(call(model, a));
+        a.getBody().add(call(model, b));
+        a.getBody().add(JassIm.ImSet(model, JassIm.ImVarAccess(g2), JassIm.ImVarAccess(g1)));
+
+        tr.calculateCallRelationsAndUsedVariables();
+        assertEquals(Arrays.asList(main, a, b, config), new ArrayList<>(tr.getUsedFunctions()));
+        assertTrue(tr.getReadVariables().contains(g1));
+
+        // remove the call to b and the read of g1 from a
+        a.getBody().clear();
+        tr.updateCallRelationsAndUsedVariables(Collections.singletonList(a));
+        java.util.Set<ImFunction> usedFunctions = new LinkedHashSet<>(tr.getUsedFunctions());
+        java.util.Set<ImVar> readVariables = new LinkedHashSet<>(tr.getReadVariables());
+        java.util.Set<ImVar> usedVariables = new LinkedHashSet<>(tr.getUsedVariables());
+        assertFalse(usedFunctions.contains(b));
+        assertFalse(readVariables.contains(g1));
+        assertTrue(tr.getUsedVariables(main).contains(g1));
+
+        // same result as calculating everything again
+        tr.calculateCallRelationsAndUsedVariables();
+        assertEquals(tr.getUsedFunctions(), usedFunctions);
+        assertEquals(tr.getReadVariables(), readVariables);
+        assertEquals(tr.getUsedVariables(), usedVariables);
+    }
+
+    @Test
+    public void removedUnreachableCodeIsAChange() {
+        WurstModel model = Ast.WurstModel();
+        ImTranslator tr = new ImTranslator(model, false, new RunArgs());
+        ImProg prog = tr.getImProg();
+        ImFunction main = newFunction(prog, "main");
+        ImFunction a = newFunction(prog, "a");
+        main.getBody().add(JassIm.ImReturn(model, JassIm.ImNoExpr()));
+        main.getBody().add(call(model, a));
+
+        java.util.Set<ImFunction> changed = new LinkedHashSet<>();
+        int changes = new SimpleRewrites().optimizeFunctions(tr, Arrays.asList(main, a), changed);
+        assertEquals(1, changes);
+        assertEquals(Collections.singleton(main), changed);
+        assertEquals(1, main.getBody().size());
+    }
+
+    private ImFunction newFunction(ImProg prog, String name) {
+        ImFunction f = JassIm.ImFunction(prog.getTrace(), name, JassIm.ImTypeVars(), JassIm.ImVars(), JassIm.ImVoid(), JassIm.ImVars(), JassIm.ImStmts(), Collections.emptyList());
+        prog.getFunctions().add(f);
+        return f;
+    }
+
+    private ImFunctionCall call(Element trace, ImFunction f) {
+        return JassIm.ImFunctionCall(trace, f, JassIm.ImTypeArguments(), JassIm.ImExprs(), false, CallType.NORMAL);
+    }
 }
@@ -0,0 +1,112 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.WurstModel;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Parsing with several threads must report the same errors and
+ * produce the compilation units in the same order as parsing on one thread.
+ */
+public class ParallelParserTests extends WurstScriptTest {
+
+    @Test
+    public void sameErrors() throws IOException {
+        File libDir = writeLib(
+                "LibOk.wurst", "package LibOk\nimport LibBroken\npublic function ok() returns int\n    return 1\n",
+                "LibBroken.wurst", "package LibBroken\npublic function broken(\n    return\n");
+        List<CU> units = Arrays.asList(
+                new CU("A.wurst", "package A\nimport LibOk\nfunction a() returns int\n    return 1 +\n"),
+                new CU("B.wurst", "package B\nfunction b()\n    skip\n"),
+                new CU("C.wurst", "package C\nfunction c(int x\n    skip\n"),
+                new CU("D.wurst", "package D\ninit\n    let s = \"unterminated\n"),
+                new CU("E.wurst", "package E\nclass E\n    int x = \n"));
+
+        String sequential = parse(units, libDir, 1).errors;
+        for (String file : Arrays.asList("A.wurst", "C.wurst", "E.wurst")) {
+            assertTrue(sequential.contains("File " + file), sequential);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(parse(units, libDir, 4).errors, sequential);
+        }
+    }
+
+    @Test
+    public void sameCompilationUnitOrder() throws IOException {
+        File libDir = writeLib(
+                "LibA.wurst", "package LibA\nimport LibB\nimport LibC\npublic function a() returns int\n    return b() + c()\n",
+                "LibB.wurst", "package LibB\nimport LibC\npublic function b() returns int\n    return c()\n",
+                "LibC.wurst", "package LibC\npublic function c() returns int\n    return 1\n",
+                "LibD.wurst", "package LibD\npublic function d() returns int\n    return 2\n");
+        List<CU> units = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String imp = i % 2 == 0 ? "LibA" : "LibD";
+            units.add(new CU("Unit" + i + ".wurst", "package Unit" + i + "\nimport " + imp + "\ninit\n    skip\n"));
+        }
+
+        Parsed sequential = parse(units, libDir, 1);
+        assertEquals(sequential.errors, "[]");
+        List<String> expectedFiles = new ArrayList<>(Arrays.asList("LibA.wurst", "LibB.wurst", "LibC.wurst", "LibD.wurst"));
+        for (CU unit : units) {
+            expectedFiles.add(unit.name);
+        }
+        assertTrue(sequential.files.containsAll(expectedFiles), sequential.files.toString());
+        for (int i = 0; i < 3; i++) {
+            Parsed parallel = parse(units, libDir, 4);
+            assertEquals(parallel.errors, "[]");
+            assertEquals(parallel.files, sequential.files);
+        }
+    }
+
+    private static class Parsed {
+        final String errors;
+        final List<String> files;
+
+        Parsed(String errors, List<String> files) {
+            this.errors = errors;
+            this.files = files;
+        }
+    }
+
+    private Parsed parse(List<CU> units, File libDir, int threads) {
+        RunArgs runArgs = new RunArgs("-noParseCache", "-lib", libDir.getPath(), "-parseThreads", String.valueOf(threads));
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, new WurstGuiCliImpl(), null, runArgs);
+        WurstModel model = parseFiles(null, units, false, compiler);
+        WurstGui gui = compiler.getErrorHandler().getGui();
+        List<String> files = new ArrayList<>();
+        if (gui.getErrorCount() == 0) {
+            assertNotNull(model);
+            for (CompilationUnit cu : model) {
+                files.add(new File(cu.getCuInfo().getFile()).getName());
+            }
+        }
+        return new Parsed(gui.getErrorList().toString(), files);
+    }
+
+    private static File writeLib(String... namesAndContents) throws IOException {
+        File dir = Files.createTempDirectory("parallelParser").toFile();
+        dir.deleteOnExit();
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            File f = new File(dir, namesAndContents[i]);
+            Files.write(f.toPath(), namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+            f.deleteOnExit();
+        }
+        return dir;
+    }
+}
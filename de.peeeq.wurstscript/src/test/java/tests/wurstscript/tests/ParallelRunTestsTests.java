@@ -0,0 +1,166 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.intermediateLang.interpreter.CompiletimeNatives;
+import de.peeeq.wurstio.intermediateLang.interpreter.ProgramStateIO;
+import de.peeeq.wurstio.languageserver.requests.RunTests;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.intermediatelang.interpreter.NativesProvider;
+import de.peeeq.wurstscript.intermediatelang.interpreter.ProgramState;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelRunTestsTests extends WurstScriptTest {
+
+    private final List<CU> units = Collections.singletonList(compilationUnit("test.wurst",
+            "package test",
+            "native testFail(string msg)",
+            "class Counter",
+            "    int count = 0",
+            "int total = 0",
+            "int array values",
+            "function check(boolean b, string msg)",
+            "    if not b",
+            "        testFail(msg)",
+            "@test function incrementGlobal()",
+            "    total += 1",
+            "    check(total == 1, \"total\")",
+            "@test function incrementGlobalAgain()",
+            "    total += 1",
+            "    check(total == 1, \"total again\")",
+            "@test function useObject()",
+            "    let c = new Counter",
+            "    c.count += 2",
+            "    check(c.count == 2, \"count\")",
+            "@test function failing()",
+            "    check(false, \"expected failure\")",
+            "@test function useArray()",
+            "    values[3] += 7",
+            "    check(values[3] + values[4] == 7, \"array\")",
+            "@test function failingArithmetic()",
+            "    check(1 + 1 == 3, \"arithmetic\")",
+            "@test function loop()",
+            "    var s = 0",
+            "    for i = 1 to 100",
+            "        s += i",
+            "    check(s == 5050, \"loop\")"));
+
+    private final List<CU> unitsWithHandles = Arrays.asList(
+            compilationUnit("handles.wurst",
+                    "type trigger extends handle",
+                    "type timer extends handle",
+                    "package handles",
+                    "@extern native CreateTrigger() returns trigger",
+                    "@extern native TriggerAddAction(trigger t, code c)",
+                    "@extern native TriggerEvaluate(trigger t) returns boolean",
+                    "@extern native CreateTimer() returns timer",
+                    "@extern native TimerStart(timer t, real timeout, boolean periodic, code c)"),
+            compilationUnit("test.wurst",
+                    "package test",
+                    "import handles",
+                    "native testFail(string msg)",
+                    "trigger trig = null",
+                    "timer tim = null",
+                    "int actions = 0",
+                    "@compiletime function createHandles()",
+                    "    trig = CreateTrigger()",
+                    "    tim = CreateTimer()",
+                    "function check(boolean b, string msg)",
+                    "    if not b",
+                    "        testFail(msg)",
+                    "function onTrigger()",
+                    "    actions += 1",
+                    "function onTimer()",
+                    "@test function triggerAction()",
+                    "    TriggerAddAction(trig, function onTrigger)",
+                    "    TriggerEvaluate(trig)",
+                    "    check(actions == 1, \"trigger action\")",
+                    "@test function triggerActionAgain()",
+                    "    TriggerAddAction(trig, function onTrigger)",
+                    "    TriggerEvaluate(trig)",
+                    "    check(actions == 1, \"trigger action again\")",
+                    "@test function startTimer()",
+                    "    TimerStart(tim, 1., false, function onTimer)",
+                    "@test function startTimerAgain()",
+                    "    TimerStart(tim, 1., false, function onTimer)",
+                    "    check(false, \"expected failure\")"));
+
+    @Test
+    public void sameResultsAsSequential() {
+        RunTests sequential = runTests(1);
+        RunTests parallel = runTests(4);
+        assertEquals(failedTests(sequential).size(), 2);
+        assertEquals(failedTests(parallel), failedTests(sequential));
+    }
+
+    @Test
+    public void testsDoNotSeeEachOthersChanges() {
+        // incrementGlobal and incrementGlobalAgain only pass when each test starts from the initial globals
+        assertEquals(failedTests(runTests(1)).size(), 2);
+        assertEquals(failedTests(runTests(3)).size(), 2);
+    }
+
+    @Test
+    public void resultsAreDeterministic() {
+        List<String> first = failedTests(runTests(4));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(failedTests(runTests(4)), first);
+        }
+    }
+
+    @Test
+    public void handlesCreatedAtInit() {
+        // the trigger actions added by one test must not be visible in other tests,
+        // the timer is bound to the interpreter that created it, so these tests run sequentially
+        RunTests sequential = runTests(unitsWithHandles, 1, 4, 3);
+        RunTests parallel = runTests(unitsWithHandles, 4, 4, 3);
+        assertEquals(failedTests(sequential), Collections.singletonList("startTimerAgain"));
+        assertEquals(failedTests(parallel), failedTests(sequential));
+    }
+
+    @Test
+    public void forkRebindsNatives() {
+        WurstGui gui = new WurstGuiCliImpl();
+        ProgramStateIO state = new ProgramStateIO(Optional.empty(), null, gui, translateToIm(units, new RunArgs("-runcompiletimefunctions")).getImProg(), true);
+        CompiletimeNatives natives = new CompiletimeNatives(state);
+        state.addNativeProvider(natives);
+
+        ProgramState fork = state.fork(state);
+        // compiletime natives expect a ProgramStateIO and must work on the fork instead of the snapshot
+        assertTrue(fork instanceof ProgramStateIO);
+        NativesProvider forkNatives = fork.getNativeProviders().iterator().next();
+        assertTrue(forkNatives instanceof CompiletimeNatives);
+        assertNotSame(forkNatives, natives);
+    }
+
+    private RunTests runTests(int threads) {
+        return runTests(units, threads, 7, 5);
+    }
+
+    private RunTests runTests(List<CU> units, int threads, int totalTests, int passedTests) {
+        WurstCompilerJassImpl compiler = translateToIm(units, new RunArgs("-runcompiletimefunctions"));
+        RunTests runTests = quietRunTests(threads);
+        RunTests.TestResult result = runTests.runTests(compiler.getImTranslator(), compiler.getImProg(), Optional.empty(), Optional.empty());
+        assertEquals(result.getTotalTests(), totalTests);
+        assertEquals(result.getPassedTests(), passedTests);
+        return runTests;
+    }
+
+    private List<String> failedTests(RunTests runTests) {
+        return runTests.getFailTests().stream()
+                .map(f -> f.getFunction().getName())
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,95 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.parsecache.ParseCache;
+import de.peeeq.wurstscript.RunArgs;
+import de.peeeq.wurstscript.ast.CompilationUnit;
+import de.peeeq.wurstscript.ast.FuncDef;
+import de.peeeq.wurstscript.gui.WurstGui;
+import de.peeeq.wurstscript.gui.WurstGuiCliImpl;
+import de.peeeq.wurstscript.utils.Utils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class ParseCacheTests {
+
+    private static final String FILE = "Test.wurst";
+
+    @Test
+    public void loadedCompilationUnitIsEqual() throws IOException {
+        ParseCache cache = new ParseCache(Files.createTempDirectory("parsecache").toFile());
+        String input = string(
+                "package Test",
+                "import public Other",
+                "/** doc */",
+                "public function foo(int x) returns int",
+                "    let s = \"a\" + x.toString()",
+                "    if x > 3 and not x == 7",
+                "        return -x",
+                "    return x mod 2",
+                "class C",
+                "    static real r = 1.5",
+                "    construct()",
+                "        skip",
+                "init",
+                "    foo(1)"
+        );
+
+        CompilationUnit parsed = parse(cache, input, null);
+        CompilationUnit loaded = parse(cache, input, () -> {
+            fail("compilation unit should be loaded from cache");
+            return null;
+        });
+
+        assertEquals(loaded.toString(), parsed.toString());
+        assertEquals(loaded.getCuInfo().getFile(), parsed.getCuInfo().getFile());
+        FuncDef parsedFunc = (FuncDef) parsed.getPackages().get(0).getElements().get(0);
+        FuncDef loadedFunc = (FuncDef) loaded.getPackages().get(0).getElements().get(0);
+        assertEquals(loadedFunc.getSource().getLine(), parsedFunc.getSource().getLine());
+        assertEquals(loadedFunc.getSource().getStartColumn(), parsedFunc.getSource().getStartColumn());
+        assertEquals(loadedFunc.getSource().getRightPos(), parsedFunc.getSource().getRightPos());
+    }
+
+    @Test
+    public void filesWithErrorsAreNotCached() throws IOException {
+        ParseCache cache = new ParseCache(Files.createTempDirectory("parsecache").toFile());
+        String input = string(
+                "package Test",
+                "init",
+                "    foo(("
+        );
+        parse(cache, input, null);
+        boolean[] parsedAgain = {false};
+        parse(cache, input, () -> {
+            parsedAgain[0] = true;
+            return null;
+        });
+        assertEquals(parsedAgain[0], true);
+    }
+
+    private CompilationUnit parse(ParseCache cache, String input, Supplier<CompilationUnit> parse) {
+        WurstGui gui = new WurstGuiCliImpl();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, new RunArgs());
+        return cache.parse(FILE, input, false, compiler.getErrorHandler(), () -> {
+            if (parse != null) {
+                return parse.get();
+            }
+            CompilationUnit cu = compiler.parse(FILE, new StringReader(input));
+            cu.getCuInfo().setFile(FILE);
+            return cu;
+        });
+    }
+
+    private String string(String... lines) {
+        return Utils.join(lines, "\n");
+    }
+
+}
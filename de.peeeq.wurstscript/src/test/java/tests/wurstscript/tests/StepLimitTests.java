@@ -0,0 +1,65 @@
+package tests.wurstscript.tests;
+
+import de.peeeq.wurstio.WurstCompilerJassImpl;
+import de.peeeq.wurstio.languageserver.requests.RunTests;
+import de.peeeq.wurstscript.RunArgs;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class StepLimitTests extends WurstScriptTest {
+
+    private final List<CU> units = Collections.singletonList(compilationUnit("test.wurst",
+            "package test",
+            "native testFail(string msg)",
+            "function spin()",
+            "    var i = 0",
+            "    while true",
+            "        i++",
+            "int ticks = 0",
+            "function tick()",
+            "    ticks++",
+            "@test function endlessLoop()",
+            "    spin()",
+            "@test function endlessCalls()",
+            "    while true",
+            "        tick()",
+            "@test function finishes()",
+            "    var s = 0",
+            "    for i = 1 to 1000",
+            "        s += i",
+            "    if s != 500500",
+            "        testFail(\"sum\")"));
+
+    @Test
+    public void runawayTestsAreStopped() {
+        RunTests runTests = runTests(1, "-stepLimit", "100000");
+        assertEquals(runTests.getFailTests().size(), 2);
+        for (RunTests.TestFailure failure : runTests.getFailTests()) {
+            assertTrue(failure.getMessage().contains("Execution stopped after 100000 steps"), failure.getMessage());
+        }
+        assertTrue(runTests.getFailTests().get(0).getMessage().contains("spin"));
+    }
+
+    @Test
+    public void limitIsDeterministic() {
+        String first = runTests(1, "-stepLimit", "5000").getFailTests().get(0).getMessage();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(runTests(2, "-stepLimit", "5000").getFailTests().get(0).getMessage(), first);
+        }
+    }
+
+    private RunTests runTests(int threads, String... args) {
+        WurstCompilerJassImpl compiler = translateToIm(units, new RunArgs(args));
+        RunTests runTests = quietRunTests(threads);
+        RunTests.TestResult result = runTests.runTests(compiler.getImTranslator(), compiler.getImProg(), Optional.empty(), Optional.empty());
+        assertEquals(result.getTotalTests(), 3);
+        assertEquals(result.getPassedTests(), 1);
+        return runTests;
+    }
+}
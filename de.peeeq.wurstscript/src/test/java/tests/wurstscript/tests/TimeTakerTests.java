@@ -0,0 +1,51 @@
+package tests.wurstscript.tests;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import de.peeeq.wurstio.TimeTaker;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TimeTakerTests {
+
+    @Test
+    public void chromeTrace() throws IOException {
+        TimeTaker.Recording timeTaker = new TimeTaker.Recording();
+        timeTaker.beginPhase("phase 1");
+        timeTaker.measure("pass", () -> {
+            timeTaker.addCount("changes", 3);
+            timeTaker.addCount("changes", 4);
+        });
+        timeTaker.beginPhase("phase 2");
+        timeTaker.endPhase();
+
+        StringWriter out = new StringWriter();
+        timeTaker.writeChromeTrace(out);
+        JsonArray events = new JsonParser().parse(out.toString()).getAsJsonObject().getAsJsonArray("traceEvents");
+
+        assertEquals(events.size(), 3);
+        JsonObject phase1 = events.get(0).getAsJsonObject();
+        JsonObject pass = events.get(1).getAsJsonObject();
+        JsonObject phase2 = events.get(2).getAsJsonObject();
+        assertEquals(phase1.get("name").getAsString(), "phase 1");
+        assertEquals(pass.get("name").getAsString(), "pass");
+        assertEquals(phase2.get("name").getAsString(), "phase 2");
+        assertEquals(pass.get("ph").getAsString(), "X");
+        assertEquals(pass.getAsJsonObject("args").get("changes").getAsLong(), 7);
+
+        // the pass is nested in phase 1 (with a tolerance for rounding errors)
+        double eps = 0.001;
+        double phase1Start = phase1.get("ts").getAsDouble();
+        double passStart = pass.get("ts").getAsDouble();
+        assertTrue(phase1Start <= passStart + eps);
+        assertTrue(passStart + pass.get("dur").getAsDouble() <= phase1Start + phase1.get("dur").getAsDouble() + eps);
+        assertTrue(phase1Start + phase1.get("dur").getAsDouble() <= phase2.get("ts").getAsDouble() + eps);
+    }
+
+}
@@ -33,12 +33,19 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.fail;
 
 public class WurstScriptTest {
 
     private static final String TEST_OUTPUT_PATH = "./test-output/";
 
+    /**
+     * when set to true, all programs are run with the closure compiling interpreter
+     * instead of the tree walking interpreter
+     */
+    private static final boolean CLOSURE_INTERPRETER = Boolean.getBoolean("wurst.closureInterpreter");
+
     protected boolean testOptimizer() {
         return true;
     }
@@ -59,6 +66,7 @@ public class WurstScriptTest {
         private boolean stopOnFirstError = true;
         private boolean runCompiletimeFunctions;
         private boolean testLua = false;
+        private boolean closureInterpreter = CLOSURE_INTERPRETER;
 
         TestConfig(String name) {
             this.name = name;
@@ -97,6 +105,14 @@ public class WurstScriptTest {
             return this;
         }
 
+        /**
+         * runs the program, tests and compiletime functions with the closure compiling interpreter
+         */
+        TestConfig withClosureInterpreter() {
+            this.closureInterpreter = true;
+            return this;
+        }
+
         public TestConfig executeProgOnlyAfterTransforms() {
             this.executeProgOnlyAfterTransforms = true;
             return this;
@@ -160,6 +176,9 @@ public class WurstScriptTest {
             if (runCompiletimeFunctions) {
                 runArgs = runArgs.with("-runcompiletimefunctions");
             }
+            if (closureInterpreter) {
+                runArgs = runArgs.with("-closureInterpreter");
+            }
 
             WurstGui gui = new WurstGuiCliImpl();
             WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
@@ -472,7 +491,7 @@ public class WurstScriptTest {
                 executeTests(gui, compiler.getImTranslator(), imProg);
             }
             if (executeProg) {
-                executeImProg(gui, imProg);
+                executeImProg(gui, imProg, compiler.getImTranslator().getRunArgs().isClosureInterpreter());
             }
         }
 
@@ -487,7 +506,7 @@ public class WurstScriptTest {
             executeTests(gui, compiler.getImTranslator(), imProg);
         }
         if (executeProg) {
-            executeImProg(gui, imProg);
+            executeImProg(gui, imProg, compiler.getImTranslator().getRunArgs().isClosureInterpreter());
         }
 
 
@@ -542,6 +561,32 @@ public class WurstScriptTest {
     }
 
 
+    /**
+     * parses, checks and translates the given compilation units to the intermediate language,
+     * failing if there are any errors
+     */
+    WurstCompilerJassImpl translateToIm(List<CU> units, RunArgs runArgs) {
+        WurstGui gui = new WurstGuiCliImpl();
+        WurstCompilerJassImpl compiler = new WurstCompilerJassImpl(null, gui, null, runArgs);
+        WurstModel model = parseFiles(null, units, false, compiler);
+        compiler.checkProg(model);
+        compiler.translateProgToIm(model);
+        assertEquals(gui.getErrorList().toString(), "[]");
+        return compiler;
+    }
+
+    /**
+     * a test runner with the given number of threads, which does not print the test output
+     */
+    RunTests quietRunTests(int threads) {
+        return new RunTests(Optional.empty(), 0, 0, Optional.empty(), 20, threads) {
+            @Override
+            protected void print(String message) {
+                // tests only check the results
+            }
+        };
+    }
+
     private void runPjass(File outputFile) throws Error {
         Result pJassResult = Pjass.runPjass(outputFile);
         WLogger.info(pJassResult.getMessage());
@@ -550,10 +595,11 @@ public class WurstScriptTest {
         }
     }
 
-    private void executeImProg(WurstGui gui, ImProg imProg) throws TestFailException {
+    private void executeImProg(WurstGui gui, ImProg imProg, boolean useClosureCompiler) throws TestFailException {
         try {
             // run the interpreter on the intermediate language
             ILInterpreter interpreter = new ILInterpreter(imProg, gui, Optional.empty(), false);
+            interpreter.getGlobalState().setUseClosureCompiler(useClosureCompiler);
             interpreter.addNativeProvider(new ReflectionNativeProvider(interpreter));
             interpreter.executeFunction("main", null);
         } catch (TestSuccessException e) {
@@ -592,10 +638,9 @@ public class WurstScriptTest {
         File outputFile = new File(TEST_OUTPUT_PATH + name + ".j");
         new File(TEST_OUTPUT_PATH).mkdirs();
         try {
-            StringBuilder sb = new StringBuilder();
-            new JassPrinter(true, prog).printProg(sb);
-
-            FileUtils.write(sb, outputFile);
+            try (Writer w = Files.newWriter(outputFile, Charsets.UTF_8)) {
+                new JassPrinter(true, prog).printProg(w);
+            }
         } catch (IOException e) {
             throw new Error("IOException, could not write jass file " + outputFile + "\n" + gui.getErrors());
         }